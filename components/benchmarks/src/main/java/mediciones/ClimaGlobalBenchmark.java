@@ -0,0 +1,166 @@
+package mediciones;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import util.ClimaGlobal;
+import util.EstadoClima;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara la fotografía inmutable de {@link ClimaGlobal} con el mapa de estado
+ * que usaba antes el controlador.
+ *
+ * <p>Cada grupo corre tres lectores, que hacen lo mismo que una parcela al
+ * evaluarse (leer temperatura, radiación y lluvia), contra un escritor que hace
+ * lo mismo que un receptor de temperatura (publicar una lectura nueva y
+ * notificar el cambio). Los métodos {@code lectura*} miden además la lectura
+ * sola, sin escritores.</p>
+ *
+ * <p>Ejecución: {@code java -jar components/benchmarks/benchmarks.jar ClimaGlobalBenchmark}</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Group)
+public class ClimaGlobalBenchmark {
+
+    private ClimaGlobal clima;
+    private MapaEstado mapa;
+
+    /**
+     * Solo lo modifica el único escritor de cada grupo.
+     */
+    private int contador;
+
+    @Setup
+    public void preparar() {
+        clima = new ClimaGlobal();
+        mapa = new MapaEstado();
+        // Mismo trabajo de notificación en ambos casos
+        clima.setNotificador(ClimaGlobalBenchmark::notificar);
+        clima.actualizarTemperatura(20.0);
+        clima.actualizarRadiacion(500.0);
+        mapa.actualizarTemperatura(20.0);
+        mapa.actualizarRadiacion(500.0);
+    }
+
+    @Benchmark
+    @Group("fotografia")
+    @GroupThreads(3)
+    public void fotografiaLectores(Blackhole bh) {
+        EstadoClima actual = clima.actual();
+        bh.consume(actual.temperatura());
+        bh.consume(actual.radiacion());
+        bh.consume(actual.lluvia());
+    }
+
+    @Benchmark
+    @Group("fotografia")
+    @GroupThreads(1)
+    public void fotografiaEscritor() {
+        clima.actualizarTemperatura(siguienteTemperatura());
+    }
+
+    @Benchmark
+    @Group("mapa")
+    @GroupThreads(3)
+    public void mapaLectores(Blackhole bh) {
+        bh.consume(mapa.temperatura());
+        bh.consume(mapa.radiacion());
+        bh.consume(mapa.lluvia());
+    }
+
+    @Benchmark
+    @Group("mapa")
+    @GroupThreads(1)
+    public void mapaEscritor() {
+        mapa.actualizarTemperatura(siguienteTemperatura());
+    }
+
+    @Benchmark
+    public void lecturaFotografia(Blackhole bh) {
+        EstadoClima actual = clima.actual();
+        bh.consume(actual.temperatura());
+        bh.consume(actual.radiacion());
+        bh.consume(actual.lluvia());
+    }
+
+    @Benchmark
+    public void lecturaMapa(Blackhole bh) {
+        bh.consume(mapa.temperatura());
+        bh.consume(mapa.radiacion());
+        bh.consume(mapa.lluvia());
+    }
+
+    /**
+     * Reemplaza la reevaluación de las parcelas con un trabajo fijo y breve.
+     */
+    static void notificar() {
+        Blackhole.consumeCPU(16);
+    }
+
+    /**
+     * Siempre distinta de la anterior, para que cada escritura publique y notifique.
+     */
+    private double siguienteTemperatura() {
+        contador = (contador + 1) & 1023;
+        return 10.0 + contador * 0.03;
+    }
+
+    /**
+     * Estado global como lo llevaba el controlador antes de {@link ClimaGlobal}: un
+     * {@link ConcurrentHashMap} con valores en caja, leídos por clave y convertidos
+     * con un cast, y un notificador que se dispara cuando {@code put} devuelve un
+     * valor distinto.
+     */
+    static final class MapaEstado {
+
+        private final ConcurrentHashMap<String, Object> estado = new ConcurrentHashMap<>();
+        private final Runnable notificador = ClimaGlobalBenchmark::notificar;
+
+        MapaEstado() {
+            estado.put("temperatura", 0.0);
+            estado.put("radiacion", 0.0);
+            estado.put("lluvia", false);
+        }
+
+        double temperatura() {
+            return (double) estado.get("temperatura");
+        }
+
+        double radiacion() {
+            return (double) estado.get("radiacion");
+        }
+
+        boolean lluvia() {
+            return (boolean) estado.get("lluvia");
+        }
+
+        void actualizarTemperatura(double temperatura) {
+            if (!Double.valueOf(temperatura).equals(estado.put("temperatura", temperatura))) {
+                notificador.run();
+            }
+        }
+
+        void actualizarRadiacion(double radiacion) {
+            if (!Double.valueOf(radiacion).equals(estado.put("radiacion", radiacion))) {
+                notificador.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package mediciones;
+
+import util.Ejecutor;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mide la memoria y los cambios de contexto del controlador según el modo de
+ * {@link Ejecutor}, con una cantidad dada de parcelas.
+ *
+ * <p>Cada parcela lanza por el {@link Ejecutor} dos tareas que se comportan como sus
+ * receptores de humedad y de temporizador: duermen el período de lectura, procesan un
+ * valor y vuelven a dormir. Una vez que todas están en marcha se toma una muestra de
+ * {@code /proc}, se deja correr la ventana de medición y se toma otra.</p>
+ *
+ * <p>Uso: {@code java -cp benchmarks.jar mediciones.HuellaHilos <plataforma|virtual> <parcelas> [segundos] [periodoMs]}.
+ * Imprime una línea con el modo, las parcelas, los hilos del proceso, la memoria
+ * residente y los cambios de contexto por segundo (voluntarios e involuntarios),
+ * sumados sobre todos los hilos del proceso. Solo funciona en Linux.</p>
+ */
+public class HuellaHilos {
+
+    private static final int TAREAS_POR_PARCELA = 2;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Uso: HuellaHilos <plataforma|virtual> <parcelas> [segundos] [periodoMs]");
+            System.exit(2);
+        }
+        Ejecutor.Modo modo = Ejecutor.Modo.desde(args[0]);
+        int parcelas = Integer.parseInt(args[1]);
+        int segundos = (args.length > 2) ? Integer.parseInt(args[2]) : 30;
+        long periodoMs = (args.length > 3) ? Long.parseLong(args[3]) : 1000;
+
+        Ejecutor.configurar(modo);
+        Muestra base = Muestra.tomar();
+
+        int tareas = parcelas * TAREAS_POR_PARCELA;
+        CountDownLatch iniciadas = new CountDownLatch(tareas);
+        LongAdder lecturas = new LongAdder();
+        long inicio = System.nanoTime();
+        for (int i = 0; i < tareas; i++) {
+            Ejecutor.ejecutar(new Receptor(periodoMs, iniciadas, lecturas));
+        }
+        iniciadas.await();
+        long arranqueMs = (System.nanoTime() - inicio) / 1_000_000;
+
+        // Un período completo para que los desfases iniciales se repartan
+        Thread.sleep(periodoMs);
+        System.gc();
+        Muestra antes = Muestra.tomar();
+        long lecturasAntes = lecturas.sum();
+        Thread.sleep(segundos * 1000L);
+        Muestra despues = Muestra.tomar();
+        long lecturasVentana = lecturas.sum() - lecturasAntes;
+
+        System.out.printf("modo=%s parcelas=%d tareas=%d arranque_ms=%d hilos=%d rss_base_kb=%d rss_kb=%d"
+                        + " rss_por_parcela_kb=%.1f ctxt_vol_s=%.0f ctxt_invol_s=%.0f lecturas_s=%.0f%n",
+                modo.name().toLowerCase(), parcelas, tareas, arranqueMs, despues.hilos, base.rssKb, despues.rssKb,
+                (despues.rssKb - base.rssKb) / (double) Math.max(1, parcelas),
+                (despues.voluntarios - antes.voluntarios) / (double) segundos,
+                (despues.involuntarios - antes.involuntarios) / (double) segundos,
+                lecturasVentana / (double) segundos);
+        System.exit(0);
+    }
+
+    /**
+     * Bucle de un receptor: espera la siguiente lectura y la procesa.
+     */
+    private static final class Receptor implements Runnable {
+
+        private final long periodoMs;
+        private final CountDownLatch iniciadas;
+        private final LongAdder lecturas;
+
+        Receptor(long periodoMs, CountDownLatch iniciadas, LongAdder lecturas) {
+            this.periodoMs = periodoMs;
+            this.iniciadas = iniciadas;
+            this.lecturas = lecturas;
+        }
+
+        @Override
+        public void run() {
+            iniciadas.countDown();
+            try {
+                // Las sondas reales no están sincronizadas entre sí
+                Thread.sleep(ThreadLocalRandom.current().nextLong(periodoMs));
+                while (true) {
+                    Double.parseDouble("42.5");
+                    lecturas.increment();
+                    Thread.sleep(periodoMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Estado del proceso leído de {@code /proc/self}.
+     */
+    private record Muestra(long rssKb, int hilos, long voluntarios, long involuntarios) {
+
+        static Muestra tomar() throws IOException {
+            long rss = campo(Files.readAllLines(Path.of("/proc/self/status")), "VmRSS:");
+            int hilos = 0;
+            long voluntarios = 0;
+            long involuntarios = 0;
+            // /proc/self/status solo cuenta los cambios del hilo principal
+            try (DirectoryStream<Path> tareas = Files.newDirectoryStream(Path.of("/proc/self/task"))) {
+                for (Path tarea : tareas) {
+                    List<String> lineas;
+                    try {
+                        lineas = Files.readAllLines(tarea.resolve("status"));
+                    } catch (IOException e) {
+                        continue; // El hilo terminó mientras se recorría
+                    }
+                    hilos++;
+                    voluntarios += campo(lineas, "voluntary_ctxt_switches:");
+                    involuntarios += campo(lineas, "nonvoluntary_ctxt_switches:");
+                }
+            }
+            return new Muestra(rss, hilos, voluntarios, involuntarios);
+        }
+
+        private static long campo(List<String> lineas, String nombre) {
+            for (String linea : lineas) {
+                if (linea.startsWith(nombre)) {
+                    return Long.parseLong(linea.substring(nombre.length()).trim().split("\\s+")[0]);
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package protocolo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Envía al controlador las lecturas de un sensor, en texto o en binario.
+ *
+ * <p>El protocolo se elige con la variable de entorno {@code PROTOCOLO}
+ * ({@code texto} o {@code binario}); por defecto se usa texto, que es lo que
+ * entienden todas las versiones del controlador. En texto el saludo es la línea
+ * con el tipo (y el id en los sensores de parcela) y cada lectura es una línea.
+ * En binario el saludo es {@link TramaBinaria#MAGICO} más la versión, y cada
+ * lectura es una {@link TramaBinaria} con tipo, id, secuencia y timestamp.</p>
+ *
+ * <p>Con {@code LOTE_TAMANO} mayor que 1 las lecturas se acumulan y se envían
+ * juntas, en una sola escritura, al juntar esa cantidad o al cumplirse
+ * {@code LOTE_ESPERA_MS} desde la primera lectura pendiente, lo que ocurra
+ * primero. En texto un lote es una {@link LineaTexto} con las lecturas separadas por
+ * {@link LineaTexto#SEPARADOR}, cada una con su desfase respecto del envío; en binario,
+ * una trama de versión 2, con el instante de cada lectura.</p>
+ *
+ * <p>Con {@code LATENCIA_MEDIR=true} cada línea de texto termina en
+ * {@link LineaTexto#EMISION} seguido del instante en que se tomó la lectura más reciente,
+ * para que el controlador mida cuánto tarda en llegar. Sólo la entienden los
+ * controladores que miden latencias; las tramas binarias llevan siempre el instante.</p>
+ */
+public class EmisorLecturas {
+
+    private final PrintWriter pw;
+    private final DataOutputStream salida;
+    private final int tipo;
+    private final int id;
+    private long secuencia = 0;
+    private final boolean conEmision = Boolean.parseBoolean(System.getenv("LATENCIA_MEDIR"));
+
+    private final int tamanoLote;
+    private final long esperaMaximaMs;
+    private final List<TramaBinaria> pendientes = new ArrayList<>();
+    private ScheduledExecutorService plazos;
+    private ScheduledFuture<?> vencimiento;
+
+    private EmisorLecturas(PrintWriter pw, DataOutputStream salida, int tipo, int id) {
+        this.pw = pw;
+        this.salida = salida;
+        this.tipo = tipo;
+        this.id = id;
+
+        String envTamano = System.getenv("LOTE_TAMANO");
+        this.tamanoLote = (envTamano != null)
+                ? Math.max(1, Math.min(TramaBinaria.MAX_LOTE, Integer.parseInt(envTamano)))
+                : 1;
+        String envEspera = System.getenv("LOTE_ESPERA_MS");
+        this.esperaMaximaMs = (envEspera != null) ? Long.parseLong(envEspera) : 5000;
+        if (tamanoLote > 1) {
+            this.plazos = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread hilo = new Thread(r, "emisor-lotes");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+        }
+    }
+
+    /**
+     * Envía el saludo por la conexión y devuelve el emisor listo para enviar lecturas.
+     *
+     * @param socket          conexión con el controlador.
+     * @param tipoDispositivo nombre del tipo ({@code "humedad"}, {@code "temperatura"}, ...).
+     * @param id              id de la parcela, o {@code null} en los sensores globales.
+     * @return el emisor.
+     * @throws IOException si falla el envío del saludo.
+     */
+    public static EmisorLecturas abrir(Socket socket, String tipoDispositivo, String id) throws IOException {
+        int codigo = TramaBinaria.codigoTipo(tipoDispositivo);
+        if ("binario".equalsIgnoreCase(System.getenv("PROTOCOLO"))) {
+            DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            TramaBinaria.escribirSaludo(salida);
+            return new EmisorLecturas(null, salida, codigo, (id != null) ? Integer.parseInt(id) : 0);
+        }
+
+        // Flujo de salida con autoflush activado para enviar datos
+        PrintWriter pw = new PrintWriter(socket.getOutputStream(), true);
+        pw.println(tipoDispositivo);
+        if (id != null) {
+            pw.println(id);
+        }
+        return new EmisorLecturas(pw, null, codigo, 0);
+    }
+
+    /**
+     * Indica si el emisor usa el protocolo binario.
+     *
+     * @return {@code true} si es binario.
+     */
+    public boolean esBinario() {
+        return salida != null;
+    }
+
+    /**
+     * Envía una lectura, o la deja pendiente si hay lotes activados.
+     *
+     * @param valor valor leído.
+     * @throws UncheckedIOException si falla la escritura binaria.
+     */
+    public synchronized void enviar(double valor) {
+        TramaBinaria lectura = new TramaBinaria(tipo, id, secuencia++, System.currentTimeMillis(), valor);
+        if (tamanoLote <= 1) {
+            escribir(List.of(lectura));
+            return;
+        }
+
+        pendientes.add(lectura);
+        if (pendientes.size() >= tamanoLote) {
+            vaciar();
+        } else if (pendientes.size() == 1) {
+            vencimiento = plazos.schedule(this::vaciarPorPlazo, esperaMaximaMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Envía de inmediato las lecturas pendientes.
+     *
+     * @throws UncheckedIOException si falla la escritura binaria.
+     */
+    public synchronized void vaciar() {
+        if (vencimiento != null) {
+            vencimiento.cancel(false);
+            vencimiento = null;
+        }
+        if (pendientes.isEmpty()) {
+            return;
+        }
+        try {
+            escribir(pendientes);
+        } finally {
+            pendientes.clear();
+        }
+    }
+
+    private void vaciarPorPlazo() {
+        try {
+            vaciar();
+        } catch (UncheckedIOException e) {
+            System.err.println("No se pudo enviar el lote de lecturas: " + e.getCause().getMessage());
+        }
+    }
+
+    private void escribir(List<TramaBinaria> lecturas) {
+        if (pw != null) {
+            pw.println(LineaTexto.armar(lecturas, conEmision, System.currentTimeMillis()));
+            return;
+        }
+        try {
+            if (lecturas.size() == 1) {
+                lecturas.get(0).escribir(salida);
+            } else {
+                TramaBinaria.escribirLote(salida, lecturas);
+            }
+            salida.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
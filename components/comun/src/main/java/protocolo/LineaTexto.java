@@ -0,0 +1,121 @@
+package protocolo;
+
+import java.util.List;
+
+/**
+ * Formato de las líneas de lecturas del protocolo de texto.
+ *
+ * <p>Un sensor sin lotes envía una lectura por línea. Con lotes activados
+ * ({@code LOTE_TAMANO} mayor que 1 en el sensor) una línea lleva varias lecturas
+ * consecutivas separadas por {@link #SEPARADOR}, de la más antigua a la más nueva.</p>
+ *
+ * <p>Cada lectura que no se toma en el momento de enviar la línea va seguida de
+ * {@link #DESFASE} y de cuántos milisegundos antes del envío se tomó
+ * ({@code 41.2:9000;41.5:4000;41.9}). El controlador le resta ese desfase al instante
+ * de recepción, de modo que cada lectura de un lote conserva su propio instante sin
+ * comparar relojes de máquinas distintas. Una lectura sin desfase se tomó al enviar.</p>
+ *
+ * <p>Con {@code LATENCIA_MEDIR=true} en el sensor, la línea termina en {@link #EMISION}
+ * seguido del instante en que se tomó la lectura más reciente (ms desde la época).</p>
+ */
+public final class LineaTexto {
+
+    /** Separador de las lecturas de un lote. */
+    public static final char SEPARADOR = ';';
+
+    /** Marca que precede al desfase de una lectura. */
+    public static final char DESFASE = ':';
+
+    /** Marca que precede al instante de emisión, al final de la línea. */
+    public static final char EMISION = '@';
+
+    /**
+     * Lecturas de una línea.
+     *
+     * @param valores   lecturas en el orden en que se enviaron; la última es la más reciente.
+     * @param instantes instante de cada lectura (ms desde la época), en el reloj de quien recibe.
+     */
+    public record Lote(double[] valores, long[] instantes) {
+
+        /**
+         * @return la lectura más reciente.
+         */
+        public double ultimo() {
+            return valores[valores.length - 1];
+        }
+    }
+
+    private LineaTexto() {
+    }
+
+    /**
+     * Arma la línea con un lote de lecturas.
+     *
+     * @param lecturas   lecturas a enviar, de la más antigua a la más nueva.
+     * @param conEmision si se agrega el instante de la lectura más reciente.
+     * @param ahoraMs    instante del envío, del que se descuentan los desfases.
+     * @return la línea, sin el fin de línea.
+     */
+    public static String armar(List<TramaBinaria> lecturas, boolean conEmision, long ahoraMs) {
+        StringBuilder linea = new StringBuilder();
+        for (TramaBinaria lectura : lecturas) {
+            if (linea.length() > 0) {
+                linea.append(SEPARADOR);
+            }
+            linea.append(lectura.valor());
+            long desfase = ahoraMs - lectura.timestamp();
+            if (desfase > 0) {
+                linea.append(DESFASE).append(desfase);
+            }
+        }
+        if (conEmision) {
+            linea.append(EMISION).append(lecturas.get(lecturas.size() - 1).timestamp());
+        }
+        return linea.toString();
+    }
+
+    /**
+     * Interpreta una línea recibida.
+     *
+     * @param linea      línea recibida, con una o más lecturas.
+     * @param recibidaMs instante de recepción, del que se descuentan los desfases.
+     * @return las lecturas con su instante.
+     * @throws NumberFormatException si alguna lectura o desfase no es un número.
+     */
+    public static Lote leer(String linea, long recibidaMs) {
+        int emision = linea.indexOf(EMISION);
+        if (emision >= 0) {
+            linea = linea.substring(0, emision);
+        }
+        String[] partes = (linea.indexOf(SEPARADOR) < 0)
+                ? new String[]{linea}
+                : linea.split(String.valueOf(SEPARADOR));
+        double[] valores = new double[partes.length];
+        long[] instantes = new long[partes.length];
+        for (int i = 0; i < partes.length; i++) {
+            String parte = partes[i];
+            int desfase = parte.indexOf(DESFASE);
+            if (desfase < 0) {
+                valores[i] = Double.parseDouble(parte);
+                instantes[i] = recibidaMs;
+            } else {
+                valores[i] = Double.parseDouble(parte.substring(0, desfase));
+                instantes[i] = recibidaMs - Long.parseLong(parte.substring(desfase + 1));
+            }
+        }
+        return new Lote(valores, instantes);
+    }
+
+    /**
+     * Devuelve el instante de emisión informado al final de la línea.
+     *
+     * @param linea línea recibida.
+     * @return el instante en que se tomó la lectura más reciente (ms desde la época), o
+     * {@code -1} si la línea no lo trae.
+     * @throws NumberFormatException si el instante no es un número.
+     */
+    public static long emision(String linea) {
+        int emision = linea.indexOf(EMISION);
+        return (emision >= 0) ? Long.parseLong(linea.substring(emision + 1)) : -1;
+    }
+}
@@ -0,0 +1,267 @@
+package protocolo;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lectura de un sensor en el protocolo binario entre sensores y controlador.
+ *
+ * <p>El protocolo binario es opcional; el de texto sigue siendo el predeterminado.
+ * Un sensor que lo usa abre la conexión con el byte {@link #MAGICO} seguido del
+ * byte de versión, en lugar de la línea con su tipo. Como {@code MAGICO} no es un
+ * carácter ASCII, el controlador distingue ambos protocolos por el primer byte.
+ * Esta clase está en el módulo {@code comun}, del que dependen el controlador, los
+ * sensores y el generador de carga, para que todos codifiquen las tramas igual.</p>
+ *
+ * <p>A continuación las lecturas viajan en tramas con prefijo de largo. Una trama
+ * de versión 1 lleva una sola lectura:</p>
+ * <pre>
+ *   int    largo      bytes que siguen (30)
+ *   byte   version    1
+ *   byte   tipo       HUMEDAD, TEMPERATURA, LLUVIA o ILUMINACION
+ *   int    id         id de la parcela (0 en los sensores globales)
+ *   long   secuencia  crece en uno con cada lectura del sensor
+ *   long   timestamp  instante de la lectura (ms desde la época)
+ *   double valor
+ * </pre>
+ *
+ * <p>Una trama de versión 2 agrupa un lote de lecturas consecutivas del mismo sensor:</p>
+ * <pre>
+ *   int    largo      bytes que siguen (16 + 16 * cantidad)
+ *   byte   version    2
+ *   byte   tipo
+ *   int    id
+ *   long   secuencia  secuencia de la primera lectura; las demás siguen en orden
+ *   short  cantidad   entre 1 y {@link #MAX_LOTE}
+ *   cantidad veces:
+ *     long   timestamp
+ *     double valor
+ * </pre>
+ *
+ * <p>Los enteros van en orden de red (big-endian), igual que en
+ * {@link DataOutputStream}. Esta clase se repite sin cambios en el controlador
+ * y en cada sensor, como las interfaces del paquete {@code rmi}.</p>
+ *
+ * @param tipo      código del tipo de dispositivo.
+ * @param id        id de la parcela, o {@code 0}.
+ * @param secuencia número de lectura.
+ * @param timestamp instante de la lectura (ms desde la época).
+ * @param valor     valor leído.
+ */
+public record TramaBinaria(int tipo, int id, long secuencia, long timestamp, double valor) {
+
+    /** Primer byte de una conexión binaria. */
+    public static final int MAGICO = 0xB1;
+    /** Mayor versión del protocolo que se acepta; es la que se anuncia en el saludo. */
+    public static final int VERSION = 2;
+    /** Versión de las tramas con una sola lectura. */
+    public static final int VERSION_LECTURA = 1;
+    /** Versión de las tramas con un lote de lecturas. */
+    public static final int VERSION_LOTE = 2;
+
+    public static final int HUMEDAD = 1;
+    public static final int TEMPERATURA = 2;
+    public static final int LLUVIA = 3;
+    public static final int ILUMINACION = 4;
+
+    /** Largo del cuerpo de una trama de versión 1, sin el prefijo de largo. */
+    public static final int LARGO_CUERPO = 1 + 1 + Integer.BYTES + Long.BYTES + Long.BYTES + Double.BYTES;
+    /** Largo de la cabecera de una trama de versión 2, sin el prefijo de largo. */
+    public static final int LARGO_CABECERA_LOTE = 1 + 1 + Integer.BYTES + Long.BYTES + Short.BYTES;
+    /** Largo de cada lectura dentro de un lote. */
+    public static final int LARGO_MUESTRA = Long.BYTES + Double.BYTES;
+    /** Largo máximo aceptado, para descartar conexiones corruptas. */
+    public static final int LARGO_MAXIMO = 1024;
+    /** Máxima cantidad de lecturas que entran en una trama de lote. */
+    public static final int MAX_LOTE = (LARGO_MAXIMO - LARGO_CABECERA_LOTE) / LARGO_MUESTRA;
+
+    /**
+     * Escribe el saludo que identifica una conexión binaria.
+     *
+     * @param salida flujo de la conexión.
+     * @throws IOException si falla la escritura.
+     */
+    public static void escribirSaludo(DataOutputStream salida) throws IOException {
+        salida.writeByte(MAGICO);
+        salida.writeByte(VERSION);
+        salida.flush();
+    }
+
+    /**
+     * Lee y valida el saludo de una conexión binaria.
+     *
+     * @param entrada flujo de la conexión.
+     * @return versión anunciada por el sensor.
+     * @throws IOException si el saludo no es válido o la versión no está soportada.
+     */
+    public static int leerSaludo(DataInputStream entrada) throws IOException {
+        if (entrada.readUnsignedByte() != MAGICO) {
+            throw new IOException("Saludo binario inválido");
+        }
+        return validarVersion(entrada.readUnsignedByte());
+    }
+
+    /**
+     * Escribe la lectura en una trama de versión 1, sin vaciar el flujo.
+     *
+     * @param salida flujo de la conexión.
+     * @throws IOException si falla la escritura.
+     */
+    public void escribir(DataOutputStream salida) throws IOException {
+        salida.writeInt(LARGO_CUERPO);
+        salida.writeByte(VERSION_LECTURA);
+        salida.writeByte(tipo);
+        salida.writeInt(id);
+        salida.writeLong(secuencia);
+        salida.writeLong(timestamp);
+        salida.writeDouble(valor);
+    }
+
+    /**
+     * Escribe un lote de lecturas consecutivas del mismo sensor en una trama de
+     * versión 2, sin vaciar el flujo. El tipo, el id y la secuencia inicial se
+     * toman de la primera lectura.
+     *
+     * @param salida   flujo de la conexión.
+     * @param lecturas lecturas a enviar, entre 1 y {@link #MAX_LOTE}.
+     * @throws IOException si falla la escritura.
+     * @throws IllegalArgumentException si la cantidad de lecturas está fuera de rango.
+     */
+    public static void escribirLote(DataOutputStream salida, List<TramaBinaria> lecturas) throws IOException {
+        if (lecturas.isEmpty() || lecturas.size() > MAX_LOTE) {
+            throw new IllegalArgumentException("Cantidad de lecturas fuera de rango: " + lecturas.size());
+        }
+        TramaBinaria primera = lecturas.get(0);
+        salida.writeInt(LARGO_CABECERA_LOTE + lecturas.size() * LARGO_MUESTRA);
+        salida.writeByte(VERSION_LOTE);
+        salida.writeByte(primera.tipo);
+        salida.writeInt(primera.id);
+        salida.writeLong(primera.secuencia);
+        salida.writeShort(lecturas.size());
+        for (TramaBinaria lectura : lecturas) {
+            salida.writeLong(lectura.timestamp);
+            salida.writeDouble(lectura.valor);
+        }
+    }
+
+    /**
+     * Lee una trama completa, bloqueando hasta que llegue.
+     *
+     * @param entrada flujo de la conexión.
+     * @return las lecturas de la trama, en orden de secuencia.
+     * @throws IOException si la trama no es válida o se cierra la conexión.
+     */
+    public static List<TramaBinaria> leer(DataInputStream entrada) throws IOException {
+        int largo = validarLargo(entrada.readInt());
+        byte[] cuerpo = new byte[largo];
+        entrada.readFully(cuerpo);
+        return decodificar(ByteBuffer.wrap(cuerpo));
+    }
+
+    /**
+     * Decodifica una trama del buffer si ya llegó completa.
+     *
+     * @param buffer buffer en modo lectura.
+     * @return las lecturas de la trama, o {@code null} si faltan bytes (en ese caso no consume nada).
+     * @throws IOException si la trama no es válida.
+     */
+    public static List<TramaBinaria> leer(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < Integer.BYTES) {
+            return null;
+        }
+        int inicio = buffer.position();
+        int largo = validarLargo(buffer.getInt(inicio));
+        if (buffer.remaining() < Integer.BYTES + largo) {
+            return null;
+        }
+        List<TramaBinaria> lecturas = decodificar(buffer.slice(inicio + Integer.BYTES, largo));
+        buffer.position(inicio + Integer.BYTES + largo);
+        return lecturas;
+    }
+
+    private static List<TramaBinaria> decodificar(ByteBuffer cuerpo) throws IOException {
+        int version = validarVersion(cuerpo.get() & 0xFF);
+        int tipo = cuerpo.get() & 0xFF;
+        int id = cuerpo.getInt();
+        long secuencia = cuerpo.getLong();
+
+        if (version == VERSION_LECTURA) {
+            if (cuerpo.capacity() < LARGO_CUERPO) {
+                throw new IOException("Trama incompleta: " + cuerpo.capacity() + " bytes");
+            }
+            return List.of(new TramaBinaria(tipo, id, secuencia, cuerpo.getLong(), cuerpo.getDouble()));
+        }
+
+        int cantidad = cuerpo.getShort() & 0xFFFF;
+        if (cantidad == 0 || cuerpo.capacity() < LARGO_CABECERA_LOTE + cantidad * LARGO_MUESTRA) {
+            throw new IOException("Lote inválido: " + cantidad + " lecturas en " + cuerpo.capacity() + " bytes");
+        }
+        List<TramaBinaria> lecturas = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            lecturas.add(new TramaBinaria(tipo, id, secuencia + i, cuerpo.getLong(), cuerpo.getDouble()));
+        }
+        return lecturas;
+    }
+
+    /**
+     * Devuelve el nombre del tipo, igual al que se envía en el protocolo de texto.
+     *
+     * @param tipo código del tipo.
+     * @return {@code "humedad"}, {@code "temperatura"}, {@code "lluvia"} o {@code "iluminacion"}.
+     * @throws IllegalArgumentException si el código no corresponde a ningún tipo.
+     */
+    public static String nombreTipo(int tipo) {
+        switch (tipo) {
+            case HUMEDAD:
+                return "humedad";
+            case TEMPERATURA:
+                return "temperatura";
+            case LLUVIA:
+                return "lluvia";
+            case ILUMINACION:
+                return "iluminacion";
+            default:
+                throw new IllegalArgumentException("Tipo de dispositivo desconocido: " + tipo);
+        }
+    }
+
+    /**
+     * Devuelve el código de un tipo a partir de su nombre en el protocolo de texto.
+     *
+     * @param nombre nombre del tipo.
+     * @return código del tipo.
+     * @throws IllegalArgumentException si el nombre no corresponde a ningún tipo.
+     */
+    public static int codigoTipo(String nombre) {
+        switch (nombre) {
+            case "humedad":
+                return HUMEDAD;
+            case "temperatura":
+                return TEMPERATURA;
+            case "lluvia":
+                return LLUVIA;
+            case "iluminacion":
+                return ILUMINACION;
+            default:
+                throw new IllegalArgumentException("Tipo de dispositivo desconocido: " + nombre);
+        }
+    }
+
+    private static int validarLargo(int largo) throws IOException {
+        if (largo < LARGO_CABECERA_LOTE || largo > LARGO_MAXIMO) {
+            throw new IOException("Largo de trama inválido: " + largo);
+        }
+        return largo;
+    }
+
+    private static int validarVersion(int version) throws IOException {
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Versión de protocolo no soportada: " + version);
+        }
+        return version;
+    }
+}
@@ -0,0 +1,312 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rueda jerárquica de temporizadores: un solo hilo atiende cualquier cantidad de
+ * cuentas regresivas del proceso. La usan el temporizador, para las cuentas que le
+ * piden sus clientes, y el controlador, para los temporizadores embebidos de las parcelas.
+ *
+ * <p>El tiempo se cuenta en ticks de {@code tickMs}. Hay {@link #NIVELES} niveles de
+ * {@link #RANURAS} ranuras; cada ranura es una lista doblemente enlazada, así que
+ * programar y cancelar son O(1). Una tarea que vence en el tick {@code d} se guarda en el
+ * nivel del grupo de 6 bits más alto en que {@code d} difiere del tick actual, en la
+ * ranura que indica ese grupo de {@code d}. Cuando el tick actual llega al comienzo de
+ * esa ranura, sus tareas se reparten en los niveles inferiores (cascada) y, en el nivel
+ * 0, vencen. Las que vencen más allá de los cuatro niveles (más de 2^24 ticks, unas 46
+ * horas con ticks de 10 ms) esperan en una lista aparte hasta que se acercan.</p>
+ *
+ * <p>El hilo no avanza tick por tick: cada nivel lleva un mapa de bits de sus ranuras
+ * ocupadas y con él se calcula en O(1) el próximo tick en que hay algo que hacer. El
+ * hilo duerme hasta ese instante, o hasta que se programe una tarea anterior. Sin tareas
+ * no se despierta nunca.</p>
+ *
+ * <p>Una tarea nunca vence antes de su plazo; vence a lo sumo un tick después, más la
+ * demora del planificador del sistema. Las acciones corren en el hilo de la rueda, de a
+ * una, y deben ser breves.</p>
+ */
+public class RuedaTemporizadores {
+
+    private static final int BITS = 6;
+    private static final int RANURAS = 1 << BITS;
+    private static final int NIVELES = 4;
+    private static final long MASCARA = RANURAS - 1;
+
+    /**
+     * Tarea programada. Es a la vez el nodo de la lista de su ranura.
+     */
+    public static final class Tarea {
+
+        private final Runnable accion;
+        private final long vencimiento;
+        private final RuedaTemporizadores rueda;
+
+        // Con el lock de la rueda
+        private Tarea anterior;
+        private Tarea siguiente;
+        private Ranura ranura;
+        private boolean pendiente = true;
+
+        private Tarea(RuedaTemporizadores rueda, long vencimiento, Runnable accion) {
+            this.rueda = rueda;
+            this.vencimiento = vencimiento;
+            this.accion = accion;
+        }
+
+        /**
+         * Cancela la tarea si todavía no venció.
+         *
+         * @return {@code true} si se canceló; {@code false} si ya había vencido o se había cancelado.
+         */
+        public boolean cancelar() {
+            return rueda.cancelar(this);
+        }
+
+        /**
+         * @return milisegundos que faltan para el vencimiento; 0 si ya venció.
+         */
+        public long restanteMs() {
+            return Math.max(0, rueda.msHasta(vencimiento));
+        }
+    }
+
+    /**
+     * Lista doblemente enlazada de las tareas de una ranura.
+     */
+    private static final class Ranura {
+        private final int nivel;
+        private final int indice;
+        private Tarea primera;
+
+        private Ranura(int nivel, int indice) {
+            this.nivel = nivel;
+            this.indice = indice;
+        }
+    }
+
+    private final long tickNanos;
+    private final long inicio = System.nanoTime();
+
+    // Estado de la rueda, con su lock
+    private final Ranura[][] ranuras = new Ranura[NIVELES][RANURAS];
+    private final long[] ocupadas = new long[NIVELES];
+    private final Ranura desborde = new Ranura(NIVELES, 0);
+    private long actual;
+    private int cantidad;
+
+    /**
+     * Crea la rueda e inicia su hilo.
+     *
+     * @param tickMs resolución de la rueda en milisegundos.
+     * @param nombre nombre del hilo.
+     */
+    public RuedaTemporizadores(long tickMs, String nombre) {
+        if (tickMs < 1) {
+            throw new IllegalArgumentException("Tick inválido: " + tickMs);
+        }
+        this.tickNanos = tickMs * 1_000_000L;
+        for (int nivel = 0; nivel < NIVELES; nivel++) {
+            for (int i = 0; i < RANURAS; i++) {
+                ranuras[nivel][i] = new Ranura(nivel, i);
+            }
+        }
+        Thread hilo = new Thread(this::ejecutar, nombre);
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Programa una acción para dentro de {@code retardoMs} milisegundos.
+     *
+     * @param retardoMs espera antes de ejecutar la acción.
+     * @param accion    acción a ejecutar en el hilo de la rueda.
+     * @return la tarea, para cancelarla.
+     */
+    public Tarea programar(long retardoMs, Runnable accion) {
+        long plazo = System.nanoTime() - inicio + Math.max(0, retardoMs) * 1_000_000L;
+        long tick = (plazo + tickNanos - 1) / tickNanos; // Redondeo hacia arriba: nunca antes
+        synchronized (this) {
+            Tarea tarea = new Tarea(this, Math.max(tick, actual + 1), accion);
+            long proximoAntes = proximoEvento();
+            insertar(tarea);
+            cantidad++;
+            if (proximoEvento() < proximoAntes) {
+                notifyAll(); // El hilo dormía hasta un evento posterior
+            }
+            return tarea;
+        }
+    }
+
+    /**
+     * @return cantidad de tareas pendientes.
+     */
+    public synchronized int pendientes() {
+        return cantidad;
+    }
+
+    private synchronized boolean cancelar(Tarea tarea) {
+        if (!tarea.pendiente) {
+            return false;
+        }
+        quitar(tarea);
+        tarea.pendiente = false;
+        cantidad--;
+        return true;
+    }
+
+    private long msHasta(long tick) {
+        return (tick * tickNanos - (System.nanoTime() - inicio)) / 1_000_000L;
+    }
+
+    /**
+     * Guarda la tarea en la ranura que le corresponde según el tick actual.
+     */
+    private void insertar(Tarea tarea) {
+        long diferencia = tarea.vencimiento ^ actual;
+        int nivel = (63 - Long.numberOfLeadingZeros(diferencia)) / BITS;
+        Ranura ranura;
+        if (nivel >= NIVELES) {
+            ranura = desborde;
+        } else {
+            int indice = (int) ((tarea.vencimiento >>> (BITS * nivel)) & MASCARA);
+            ranura = ranuras[nivel][indice];
+            ocupadas[nivel] |= 1L << indice;
+        }
+        tarea.ranura = ranura;
+        tarea.anterior = null;
+        tarea.siguiente = ranura.primera;
+        if (ranura.primera != null) {
+            ranura.primera.anterior = tarea;
+        }
+        ranura.primera = tarea;
+    }
+
+    private void quitar(Tarea tarea) {
+        Ranura ranura = tarea.ranura;
+        if (tarea.anterior != null) {
+            tarea.anterior.siguiente = tarea.siguiente;
+        } else {
+            ranura.primera = tarea.siguiente;
+        }
+        if (tarea.siguiente != null) {
+            tarea.siguiente.anterior = tarea.anterior;
+        }
+        tarea.anterior = null;
+        tarea.siguiente = null;
+        tarea.ranura = null;
+        if (ranura.primera == null && ranura.nivel < NIVELES) {
+            ocupadas[ranura.nivel] &= ~(1L << ranura.indice);
+        }
+    }
+
+    /**
+     * Vacía una ranura y devuelve sus tareas como lista enlazada.
+     */
+    private Tarea vaciar(Ranura ranura) {
+        Tarea primera = ranura.primera;
+        ranura.primera = null;
+        if (ranura.nivel < NIVELES) {
+            ocupadas[ranura.nivel] &= ~(1L << ranura.indice);
+        }
+        return primera;
+    }
+
+    /**
+     * Próximo tick en que hay que vencer tareas o hacer una cascada, o
+     * {@link Long#MAX_VALUE} si no hay tareas. Cada tarea está en una ranura posterior a
+     * la del tick actual en su nivel, así que basta buscar el primer bit ocupado después
+     * del índice actual.
+     */
+    private long proximoEvento() {
+        long proximo = Long.MAX_VALUE;
+        for (int nivel = 0; nivel < NIVELES; nivel++) {
+            int desplazamiento = BITS * nivel;
+            int indiceActual = (int) ((actual >>> desplazamiento) & MASCARA);
+            long siguientes = ocupadas[nivel] & (-2L << indiceActual);
+            if (siguientes != 0) {
+                long base = actual & ~((1L << (desplazamiento + BITS)) - 1);
+                proximo = Math.min(proximo, base | ((long) Long.numberOfTrailingZeros(siguientes) << desplazamiento));
+            }
+        }
+        if (desborde.primera != null) {
+            long vuelta = 1L << (BITS * NIVELES);
+            proximo = Math.min(proximo, (actual & ~(vuelta - 1)) + vuelta);
+        }
+        return proximo;
+    }
+
+    /**
+     * Avanza al tick indicado: reparte las ranuras que empiezan en él, de arriba hacia
+     * abajo, y junta las tareas vencidas.
+     */
+    private void avanzar(long tick, List<Tarea> vencidas) {
+        actual = tick;
+        if ((tick & ((1L << (BITS * NIVELES)) - 1)) == 0) {
+            repartir(vaciar(desborde), vencidas);
+        }
+        for (int nivel = NIVELES - 1; nivel >= 1; nivel--) {
+            if ((tick & ((1L << (BITS * nivel)) - 1)) == 0) {
+                int indice = (int) ((tick >>> (BITS * nivel)) & MASCARA);
+                repartir(vaciar(ranuras[nivel][indice]), vencidas);
+            }
+        }
+        repartir(vaciar(ranuras[0][(int) (tick & MASCARA)]), vencidas);
+    }
+
+    private void repartir(Tarea tarea, List<Tarea> vencidas) {
+        while (tarea != null) {
+            Tarea siguiente = tarea.siguiente;
+            if (tarea.vencimiento <= actual) {
+                tarea.pendiente = false;
+                tarea.ranura = null;
+                tarea.anterior = null;
+                tarea.siguiente = null;
+                cantidad--;
+                vencidas.add(tarea);
+            } else {
+                insertar(tarea);
+            }
+            tarea = siguiente;
+        }
+    }
+
+    private void ejecutar() {
+        List<Tarea> vencidas = new ArrayList<>();
+        while (true) {
+            synchronized (this) {
+                try {
+                    while (true) {
+                        long proximo = proximoEvento();
+                        if (proximo == Long.MAX_VALUE) {
+                            wait();
+                            continue;
+                        }
+                        long esperaNanos = proximo * tickNanos - (System.nanoTime() - inicio);
+                        if (esperaNanos <= 0) {
+                            break;
+                        }
+                        wait(esperaNanos / 1_000_000L, (int) (esperaNanos % 1_000_000L));
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                // Se procesan todos los eventos ya alcanzados, sin volver a dormir
+                long ahora = (System.nanoTime() - inicio) / tickNanos;
+                long proximo;
+                while ((proximo = proximoEvento()) <= ahora) {
+                    avanzar(proximo, vencidas);
+                }
+                actual = Math.max(actual, ahora);
+            }
+            for (Tarea tarea : vencidas) {
+                try {
+                    tarea.accion.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Error en una tarea de la rueda de temporizadores: " + e);
+                }
+            }
+            vencidas.clear();
+        }
+    }
+}
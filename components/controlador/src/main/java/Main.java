@@ -1,8 +1,34 @@
+import historial.AlmacenSeries;
+import historial.Historial;
+import latencia.Latencias;
 import net.ServerTCP;
+import util.Ejecutor;
 
 public class Main {
 
+    /**
+     * Inicia el controlador.
+     *
+     * @param args opcionalmente, el modo de los hilos: {@code plataforma} (por defecto)
+     *             o {@code virtual}. Si se omite se usa la variable {@code CONTROLADOR_HILOS}.
+     */
     public static void main(String[] args) {
+        if (args.length > 0) {
+            Ejecutor.configurar(Ejecutor.Modo.desde(args[0]));
+        }
+        System.out.println("Modo de hilos: " + Ejecutor.getModo());
+
+        // Historial de lecturas y eventos de válvulas en disco
+        AlmacenSeries almacen = AlmacenSeries.desdeEntorno();
+        Historial.setDestino(almacen);
+        Runtime.getRuntime().addShutdownHook(new Thread(almacen::cerrar));
+
+        // Latencias por etapa (LATENCIA_MEDIR); el reporte final sale al detener el proceso
+        if (Latencias.activa()) {
+            System.out.println("Medición de latencias activada");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.print(Latencias.reporte())));
+        }
+
         ServerTCP serverTCP = new ServerTCP();
         serverTCP.start();
     }
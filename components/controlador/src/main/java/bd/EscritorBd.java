@@ -0,0 +1,222 @@
+package bd;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Escritura diferida del estado de las parcelas en la base de datos.
+ *
+ * <p>El bucle de control y las parcelas sólo encolan un {@link RegistroParcela};
+ * nunca esperan a la base de datos. Un hilo propio toma de la cola todo lo
+ * acumulado (hasta {@code BD_LOTE_MAX} filas) y lo inserta en un único
+ * {@code executeBatch}, por lo que una base de datos lenta sólo hace crecer la cola.</p>
+ *
+ * <p>La cola es acotada ({@code BD_COLA_CAPACIDAD}). Si se llena se descarta la
+ * fila más antigua: para el monitoreo importan más los datos recientes. Las
+ * métricas de profundidad de la cola, filas descartadas y latencia de los lotes
+ * se consultan con {@link #metricas()}.</p>
+ *
+ * <p>Las conexiones se piden al {@link PoolConexiones}. Mientras la base de datos no
+ * responde, el lote en curso se conserva y se reintenta; la cola sigue recibiendo filas
+ * y descartando las más antiguas, de modo que al reconectar se escribe lo más reciente.
+ * Lo mismo pasa si la conexión se corta durante el lote ({@link #esErrorDeConexion}); si
+ * se corta después de que la base aplicó parte del lote, esas filas se repiten. Sólo un
+ * error de los datos o de la sentencia descarta el lote, porque reintentarlo fallaría
+ * igual.</p>
+ */
+public class EscritorBd {
+
+    static final String CREAR_TABLA = "CREATE TABLE IF NOT EXISTS estado_parcelas ("
+            + "momento TIMESTAMP NOT NULL, "
+            + "parcela INT NOT NULL, "
+            + "humedad DOUBLE, "
+            + "inr DOUBLE, "
+            + "valvula BOOLEAN, "
+            + "temporizador INT)";
+    static final String INSERTAR = "INSERT INTO estado_parcelas "
+            + "(momento, parcela, humedad, inr, valvula, temporizador) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final long ESPERA_CONEXION_MS = 5000;
+
+    private final PoolConexiones pool;
+    private final BlockingQueue<RegistroParcela> cola;
+    private final int loteMaximo;
+
+    private final AtomicLong descartados = new AtomicLong();
+    private final AtomicLong escritos = new AtomicLong();
+    private final AtomicLong lotes = new AtomicLong();
+    private volatile long ultimaLatenciaMs;
+    private volatile long maximaLatenciaMs;
+    private boolean tablaCreada;
+
+    /**
+     * Crea el escritor e inicia su hilo. Si no hay base de datos, las filas se descartan.
+     *
+     * @param pool       pool de conexiones a la base de datos, o {@code null}.
+     * @param capacidad  cantidad máxima de filas en espera.
+     * @param loteMaximo cantidad máxima de filas por lote.
+     */
+    public EscritorBd(PoolConexiones pool, int capacidad, int loteMaximo) {
+        this.pool = pool;
+        this.cola = new ArrayBlockingQueue<>(capacidad);
+        this.loteMaximo = loteMaximo;
+        if (pool != null) {
+            Thread.ofPlatform().name("escritor-bd").daemon().start(this::escribir);
+        }
+    }
+
+    /**
+     * Crea el escritor con la configuración de las variables de entorno
+     * {@code BD_COLA_CAPACIDAD} (por defecto 10000) y {@code BD_LOTE_MAX} (por defecto 500).
+     *
+     * @param pool pool de conexiones a la base de datos, o {@code null}.
+     * @return el escritor.
+     */
+    public static EscritorBd desdeEntorno(PoolConexiones pool) {
+        String capacidad = System.getenv("BD_COLA_CAPACIDAD");
+        String lote = System.getenv("BD_LOTE_MAX");
+        return new EscritorBd(pool,
+                (capacidad != null) ? Integer.parseInt(capacidad) : 10000,
+                (lote != null) ? Integer.parseInt(lote) : 500);
+    }
+
+    /**
+     * Encola una fila sin bloquear. Si la cola está llena descarta la más antigua.
+     *
+     * @param registro fila a escribir.
+     */
+    public void encolar(RegistroParcela registro) {
+        if (pool == null) {
+            descartados.incrementAndGet();
+            return;
+        }
+        while (!cola.offer(registro)) {
+            if (cola.poll() != null) {
+                descartados.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Devuelve las métricas del escritor en una línea, para mostrar por consola.
+     *
+     * @return profundidad de la cola, filas escritas y descartadas, lotes y latencias.
+     */
+    public String metricas() {
+        return String.format("cola=%d escritas=%d descartadas=%d lotes=%d latencia=%dms (máx %dms) %s",
+                cola.size(), escritos.get(), descartados.get(), lotes.get(), ultimaLatenciaMs, maximaLatenciaMs,
+                (pool != null) ? pool.estado() : "sin base de datos");
+    }
+
+    public int profundidadCola() {
+        return cola.size();
+    }
+
+    public long getDescartados() {
+        return descartados.get();
+    }
+
+    public long getUltimaLatenciaMs() {
+        return ultimaLatenciaMs;
+    }
+
+    private void escribir() {
+        List<RegistroParcela> lote = new ArrayList<>(loteMaximo);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (lote.isEmpty()) {
+                    lote.add(cola.take());
+                }
+                cola.drainTo(lote, loteMaximo - lote.size());
+                if (!escribirLote(lote)) {
+                    Thread.sleep(ESPERA_CONEXION_MS); // Sin base de datos: se reintenta el mismo lote
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Inserta el lote con una conexión del pool.
+     *
+     * @return {@code false} si no se obtuvo conexión o se cortó, y el lote queda pendiente.
+     */
+    private boolean escribirLote(List<RegistroParcela> lote) {
+        Connection conn;
+        try {
+            conn = pool.tomar(ESPERA_CONEXION_MS);
+        } catch (SQLException e) {
+            return false;
+        }
+
+        long inicio = System.nanoTime();
+        try {
+            if (!tablaCreada) {
+                try (Statement st = conn.createStatement()) {
+                    st.execute(CREAR_TABLA);
+                }
+                tablaCreada = true;
+            }
+            try (PreparedStatement ps = conn.prepareStatement(INSERTAR)) {
+                for (RegistroParcela r : lote) {
+                    ps.setTimestamp(1, new Timestamp(r.timestamp()));
+                    ps.setInt(2, r.parcela());
+                    ps.setDouble(3, r.humedad());
+                    ps.setDouble(4, r.inr());
+                    ps.setBoolean(5, r.valvula());
+                    ps.setInt(6, r.temporizador());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            escritos.addAndGet(lote.size());
+            pool.devolver(conn);
+        } catch (SQLException e) {
+            pool.descartar(conn);
+            if (esErrorDeConexion(e)) {
+                System.err.println("Se perdió la conexión al escribir " + lote.size()
+                        + " filas en estado_parcelas: " + e.getMessage() + ". Se reintentará el lote.");
+                return false;
+            }
+            descartados.addAndGet(lote.size());
+            System.err.println("Error al escribir " + lote.size() + " filas en estado_parcelas: " + e.getMessage());
+        }
+        long latencia = (System.nanoTime() - inicio) / 1_000_000;
+        ultimaLatenciaMs = latencia;
+        maximaLatenciaMs = Math.max(maximaLatenciaMs, latencia);
+        lotes.incrementAndGet();
+        lote.clear();
+        return true;
+    }
+
+    /**
+     * Indica si el error es de la conexión y no de los datos: una excepción de conexión
+     * de JDBC o un SQLState de clase {@code 08} ("connection exception"), en el error o
+     * en alguna de sus causas (un {@code BatchUpdateException} suele envolverlo).
+     */
+    static boolean esErrorDeConexion(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientConnectionException || t instanceof SQLNonTransientConnectionException
+                    || t instanceof SQLRecoverableException) {
+                return true;
+            }
+            if (t instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("08")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
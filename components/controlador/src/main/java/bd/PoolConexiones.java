@@ -0,0 +1,230 @@
+package bd;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool de conexiones JDBC compartido por todos los que escriben o consultan la base de datos.
+ *
+ * <p>Mantiene hasta {@code tamano} conexiones abiertas. Cada conexión se valida con
+ * {@link Connection#isValid(int)} al prestarla; si está rota se cierra y se abre otra.
+ * Un hilo de fondo revisa periódicamente las conexiones libres y vuelve a abrir las que
+ * falten, de modo que tras un reinicio de la base de datos el registro se recupera solo.</p>
+ *
+ * <p>La URL se toma de {@code DATABASE_URL}; si no está definida se arma la de MySQL con
+ * {@code DATABASE_HOST}. Con {@code DATABASE_URL} se puede usar cualquier base SQL con
+ * driver JDBC en el classpath, por ejemplo una base embebida en memoria para pruebas.</p>
+ *
+ * <p>Las conexiones prestadas con {@link #tomar(long)} se devuelven con {@link #devolver(Connection)},
+ * o con {@link #descartar(Connection)} si dieron un error.</p>
+ */
+public class PoolConexiones {
+
+    private static final int SEGUNDOS_VALIDACION = 2;
+
+    private final String url;
+    private final int tamano;
+    private final BlockingQueue<Connection> libres = new LinkedBlockingQueue<>();
+    private final AtomicInteger abiertas = new AtomicInteger();
+    private final ScheduledExecutorService revision = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("pool-bd").daemon().factory());
+
+    private volatile boolean disponible;
+    private boolean estadoInformado;
+
+    /**
+     * Crea el pool e inicia la revisión periódica de las conexiones.
+     *
+     * @param url              URL JDBC de la base de datos.
+     * @param tamano           cantidad máxima de conexiones abiertas.
+     * @param periodoRevisionMs período de la revisión y reconexión en segundo plano.
+     */
+    public PoolConexiones(String url, int tamano, long periodoRevisionMs) {
+        this.url = url;
+        this.tamano = tamano;
+        revision.scheduleWithFixedDelay(this::revisar, 0, periodoRevisionMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Crea el pool con la configuración de las variables de entorno {@code DATABASE_URL}
+     * (o {@code DATABASE_HOST}), {@code BD_POOL_TAMANO} (por defecto 4) y
+     * {@code BD_REVISION_MS} (por defecto 5000).
+     *
+     * @return el pool, o {@code null} si no hay ninguna base de datos configurada.
+     */
+    public static PoolConexiones desdeEntorno() {
+        String url = System.getenv("DATABASE_URL");
+        if (url == null) {
+            String bdHost = System.getenv("DATABASE_HOST");
+            if (bdHost == null) {
+                System.out.println("Sin base de datos: DATABASE_URL y DATABASE_HOST no están definidas");
+                return null;
+            }
+            url = "jdbc:mysql://" + bdHost + "?" + "user=admin&password=sod";
+        }
+        String tamano = System.getenv("BD_POOL_TAMANO");
+        String periodo = System.getenv("BD_REVISION_MS");
+        return new PoolConexiones(url,
+                (tamano != null) ? Integer.parseInt(tamano) : 4,
+                (periodo != null) ? Long.parseLong(periodo) : 5000);
+    }
+
+    /**
+     * Presta una conexión válida, abriendo una nueva si hace falta y hay lugar.
+     *
+     * @param esperaMs tiempo máximo de espera si todas las conexiones están prestadas.
+     * @return una conexión validada.
+     * @throws SQLException si no se pudo abrir una conexión o no se liberó ninguna a tiempo.
+     */
+    public Connection tomar(long esperaMs) throws SQLException {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMs);
+        while (true) {
+            Connection conn = libres.poll();
+            if (conn == null) {
+                conn = abrirSiHayLugar();
+            }
+            if (conn == null) {
+                try {
+                    conn = libres.poll(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrumpido esperando una conexión", e);
+                }
+                if (conn == null) {
+                    throw new SQLException("No hay conexiones libres tras " + esperaMs + " ms");
+                }
+            }
+            if (esValida(conn)) {
+                return conn;
+            }
+            descartar(conn);
+        }
+    }
+
+    /**
+     * Devuelve al pool una conexión prestada que sigue en buen estado.
+     *
+     * @param conn conexión obtenida con {@link #tomar(long)}.
+     */
+    public void devolver(Connection conn) {
+        libres.offer(conn);
+    }
+
+    /**
+     * Cierra una conexión prestada que dio un error, dejando su lugar para una nueva.
+     *
+     * @param conn conexión obtenida con {@link #tomar(long)}.
+     */
+    public void descartar(Connection conn) {
+        abiertas.decrementAndGet();
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /**
+     * @return {@code true} si la última revisión o apertura de una conexión tuvo éxito.
+     */
+    public boolean estaDisponible() {
+        return disponible;
+    }
+
+    /**
+     * Devuelve el estado del pool en una línea, para mostrar por consola.
+     *
+     * @return si la base de datos está disponible y las conexiones abiertas y libres.
+     */
+    public String estado() {
+        return String.format("%s abiertas=%d libres=%d",
+                disponible ? "conectada" : "desconectada", abiertas.get(), libres.size());
+    }
+
+    /**
+     * Detiene la revisión y cierra las conexiones libres.
+     */
+    public void cerrar() {
+        revision.shutdownNow();
+        Connection conn;
+        while ((conn = libres.poll()) != null) {
+            descartar(conn);
+        }
+    }
+
+    private Connection abrirSiHayLugar() throws SQLException {
+        int actuales;
+        do {
+            actuales = abiertas.get();
+            if (actuales >= tamano) {
+                return null;
+            }
+        } while (!abiertas.compareAndSet(actuales, actuales + 1));
+        try {
+            Connection conn = DriverManager.getConnection(url);
+            marcarDisponible(true, null);
+            return conn;
+        } catch (SQLException e) {
+            abiertas.decrementAndGet();
+            marcarDisponible(false, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Valida las conexiones libres y, si no queda ninguna, intenta abrir una para
+     * detectar cuanto antes que la base de datos volvió.
+     */
+    private void revisar() {
+        for (int i = libres.size(); i > 0; i--) {
+            Connection conn = libres.poll();
+            if (conn == null) {
+                break;
+            }
+            if (esValida(conn)) {
+                libres.offer(conn);
+            } else {
+                descartar(conn);
+            }
+        }
+        if (libres.isEmpty()) {
+            try {
+                Connection conn = abrirSiHayLugar();
+                if (conn != null) {
+                    libres.offer(conn);
+                }
+            } catch (SQLException ignored) {
+                // Ya se informó en marcarDisponible; se reintenta en la próxima revisión
+            }
+        }
+    }
+
+    private boolean esValida(Connection conn) {
+        try {
+            return conn.isValid(SEGUNDOS_VALIDACION);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private synchronized void marcarDisponible(boolean ahora, SQLException causa) {
+        if (estadoInformado && ahora == disponible) {
+            return; // Sólo se informan los cambios
+        }
+        estadoInformado = true;
+        disponible = ahora;
+        if (ahora) {
+            System.out.println("Conexión con la base de datos establecida: " + url.replaceAll("\\?.*", ""));
+        } else {
+            System.out.println("SQLException: " + causa.getMessage());
+            System.out.println("SQLState: " + causa.getSQLState());
+            System.out.println("VendorError: " + causa.getErrorCode());
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package bd;
+
+/**
+ * Fila de la tabla {@code estado_parcelas}: el estado de una parcela en un instante.
+ *
+ * @param timestamp    instante del registro (ms desde la época).
+ * @param parcela      id de la parcela.
+ * @param humedad      última humedad informada por su sensor.
+ * @param inr          índice de necesidad de riego calculado.
+ * @param valvula      {@code true} si la electroválvula está abierta.
+ * @param temporizador último estado informado por el temporizador.
+ */
+public record RegistroParcela(long timestamp, int parcela, double humedad, double inr,
+                              boolean valvula, int temporizador) {
+}
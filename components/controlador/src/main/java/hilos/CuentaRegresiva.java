@@ -0,0 +1,74 @@
+package hilos;
+
+import protocolo.EventoTemporizador;
+
+/**
+ * Último estado conocido del temporizador de una parcela, armado con los eventos que
+ * envía ({@link EventoTemporizador}). Lo comparten los dos receptores de temporizador
+ * ({@link HiloReceptorTiempo} y la conexión NIO) y el temporizador embebido.
+ *
+ * <p>Al enviar un comando el estado se adelanta al que va a confirmar el temporizador,
+ * para que una evaluación de la parcela que llegue antes del evento {@code INICIADO} no
+ * tome la cuenta recién pedida como terminada. Cada comando recibe un número y se
+ * descartan los eventos de comandos anteriores al último: un {@code VENCIDO} o
+ * {@code CANCELADO} de la cuenta reemplazada que se cruza con el comando nuevo no pisa
+ * su estado.</p>
+ */
+public class CuentaRegresiva {
+
+    // Iniciar en parado por si no llega el primer evento
+    private volatile int estado = 1;
+    private volatile int restantes;
+    private volatile long desde = System.currentTimeMillis();
+
+    // Con el lock de la cuenta
+    private long ultimoComando;
+
+    /**
+     * Aplica un evento recibido del temporizador, salvo que responda a un comando
+     * anterior al último enviado.
+     *
+     * @param evento evento recibido.
+     * @return {@code true} si se aplicó; {@code false} si se descartó por viejo.
+     */
+    public synchronized boolean aplicar(EventoTemporizador evento) {
+        if (evento.comando() != EventoTemporizador.SIN_COMANDO && evento.comando() < ultimoComando) {
+            return false;
+        }
+        restantes = evento.restantes();
+        desde = System.currentTimeMillis();
+        estado = evento.estado();
+        return true;
+    }
+
+    /**
+     * Registra un comando enviado al temporizador.
+     *
+     * @param segundos duración de la cuenta pedida; {@code 0} la detiene.
+     * @return número del comando, que se envía con él ({@link EventoTemporizador#comando}).
+     */
+    public synchronized long comandoEnviado(int segundos) {
+        long numero = ++ultimoComando;
+        aplicar(new EventoTemporizador(segundos > 0 ? EventoTemporizador.Tipo.INICIADO
+                : EventoTemporizador.Tipo.CANCELADO, segundos, numero));
+        return numero;
+    }
+
+    /**
+     * @return {@code 0} si está contando, {@code 1} si está listo.
+     */
+    public int estado() {
+        return estado;
+    }
+
+    /**
+     * @return segundos que faltan según el último evento; 0 si no está contando.
+     */
+    public int segundosRestantes() {
+        if (estado != 0) {
+            return 0;
+        }
+        long transcurridos = (System.currentTimeMillis() - desde) / 1000;
+        return (int) Math.max(0, restantes - transcurridos);
+    }
+}
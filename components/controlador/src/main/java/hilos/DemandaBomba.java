@@ -0,0 +1,132 @@
+package hilos;
+
+/**
+ * Agrega la demanda de agua de las parcelas y decide cuándo tener el token de la bomba.
+ *
+ * <p>Pedir el token apenas una parcela necesita agua y devolverlo apenas ninguna la
+ * necesita hace que el token, la Válvula Maestra y el servidor de exclusión mutua
+ * cambien de estado cada vez que una parcela cruza el umbral de INR. En cambio, el
+ * riego se organiza en rondas:</p>
+ * <ul>
+ *     <li>Agrupación: con menos de {@code parcelasParaPedir} parcelas con demanda se
+ *     espera hasta {@code esperaAgruparMs} antes de pedir, para que las parcelas que
+ *     cruzan el umbral casi juntas entren en la misma ronda.</li>
+ *     <li>Tiempo mínimo: una vez concedido, el token se conserva al menos
+ *     {@code minimoEncendidoMs}.</li>
+ *     <li>Histéresis: se devuelve recién cuando no hubo demanda durante
+ *     {@code liberarTrasMs} seguidos, y no apenas la demanda baja a cero.</li>
+ * </ul>
+ *
+ * <p>No tiene estado compartido ni toma el reloj por su cuenta: lo usa sólo el bucle de
+ * {@link HiloControlador}, que le pasa el instante en cada vuelta.</p>
+ */
+public class DemandaBomba {
+
+    private final long esperaAgruparMs;
+    private final long minimoEncendidoMs;
+    private final long liberarTrasMs;
+    private final int parcelasParaPedir;
+
+    /**
+     * Instante desde el que hay demanda sin token, o -1.
+     */
+    private long demandaDesde = -1;
+
+    /**
+     * Instante desde el que no hay demanda con el token, o -1.
+     */
+    private long sinDemandaDesde = -1;
+
+    /**
+     * Instante en que se obtuvo el token vigente.
+     */
+    private long encendidoDesde;
+
+    private boolean teniaBomba;
+
+    private long rondas;
+    private long rondasTotalMs;
+
+    /**
+     * @param esperaAgruparMs   espera máxima para juntar parcelas antes de pedir el token.
+     * @param minimoEncendidoMs tiempo mínimo que se conserva el token.
+     * @param liberarTrasMs     tiempo sin demanda tras el cual se devuelve el token.
+     * @param parcelasParaPedir parcelas con demanda a partir de las cuales se pide sin esperar.
+     */
+    public DemandaBomba(long esperaAgruparMs, long minimoEncendidoMs, long liberarTrasMs, int parcelasParaPedir) {
+        this.esperaAgruparMs = esperaAgruparMs;
+        this.minimoEncendidoMs = minimoEncendidoMs;
+        this.liberarTrasMs = liberarTrasMs;
+        this.parcelasParaPedir = Math.max(1, parcelasParaPedir);
+    }
+
+    /**
+     * Crea el agregador con los parámetros de entorno {@code BOMBA_ESPERA_AGRUPAR_MS}
+     * (por defecto 5000), {@code BOMBA_MINIMO_ENCENDIDO_MS} (60000),
+     * {@code BOMBA_LIBERAR_TRAS_MS} (60000) y {@code BOMBA_PARCELAS_PARA_PEDIR} (2).
+     *
+     * @return el agregador configurado.
+     */
+    public static DemandaBomba porDefecto() {
+        return new DemandaBomba(
+                leer("BOMBA_ESPERA_AGRUPAR_MS", 5000),
+                leer("BOMBA_MINIMO_ENCENDIDO_MS", 60000),
+                leer("BOMBA_LIBERAR_TRAS_MS", 60000),
+                (int) leer("BOMBA_PARCELAS_PARA_PEDIR", 2));
+    }
+
+    private static long leer(String variable, long porDefecto) {
+        String valor = System.getenv(variable);
+        return (valor != null) ? Long.parseLong(valor) : porDefecto;
+    }
+
+    /**
+     * Decide si el controlador debe tener el token de la bomba.
+     *
+     * @param parcelasConDemanda parcelas que necesitan agua en este momento.
+     * @param tieneBomba         si el controlador tiene hoy el token.
+     * @param ahora              instante actual en milisegundos.
+     * @return {@code true} si hay que pedir o conservar el token; {@code false} si hay que
+     * devolverlo o seguir sin él.
+     */
+    public boolean quiereBomba(int parcelasConDemanda, boolean tieneBomba, long ahora) {
+        if (tieneBomba && !teniaBomba) {
+            encendidoDesde = ahora;
+            rondas++;
+        } else if (!tieneBomba && teniaBomba) {
+            rondasTotalMs += ahora - encendidoDesde;
+        }
+        teniaBomba = tieneBomba;
+
+        if (!tieneBomba) {
+            sinDemandaDesde = -1;
+            if (parcelasConDemanda == 0) {
+                demandaDesde = -1;
+                return false;
+            }
+            if (demandaDesde < 0) {
+                demandaDesde = ahora;
+            }
+            return parcelasConDemanda >= parcelasParaPedir || ahora - demandaDesde >= esperaAgruparMs;
+        }
+
+        demandaDesde = -1;
+        if (parcelasConDemanda > 0) {
+            sinDemandaDesde = -1;
+            return true;
+        }
+        if (sinDemandaDesde < 0) {
+            sinDemandaDesde = ahora;
+        }
+        return ahora - encendidoDesde < minimoEncendidoMs || ahora - sinDemandaDesde < liberarTrasMs;
+    }
+
+    /**
+     * @return resumen de las rondas para mostrar por consola.
+     */
+    public String metricas() {
+        long terminadas = teniaBomba ? rondas - 1 : rondas;
+        return String.format("rondas=%d duración media=%ds", rondas,
+                (terminadas > 0) ? rondasTotalMs / terminadas / 1000 : 0);
+    }
+}
@@ -1,15 +1,15 @@
 package hilos;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.Socket;
-import java.util.concurrent.ConcurrentHashMap;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.SQLException;
-import java.sql.PreparedStatement;
-import java.util.Date;
+import protocolo.TramaBinaria;
+import util.ClimaGlobal;
+import util.Ejecutor;
 /**
  * Gestiona la conexión inicial de un dispositivo con el servidor y lo deriva
  * al hilo receptor correspondiente.
@@ -20,15 +20,15 @@ import java.util.Date;
  * enviada por el cliente para identificar su tipo (ej: {@code "humedad"},
  * {@code "temperatura"}, {@code "lluvia"}, etc.).</p>
  *
- * <p>Según el tipo de dispositivo, se crea y se inicia un hilo receptor
+ * <p>Según el tipo de dispositivo, se crea y se lanza en el {@link Ejecutor} un receptor
  * especializado para manejar la comunicación continua con ese dispositivo. Para los sensores
  * que pertenecen a una parcela específica (humedad y temporizador), este hilo
  * también los registra en el {@link HiloControlador} principal para que
- * sean asignados a su {@link HiloParcela} correspondiente.</p>
+ * sean asignados a su {@link Parcela} correspondiente.</p>
  *
  * @author Brunardo19
  */
-public class HiloConexionTCP extends Thread {
+public class HiloConexionTCP implements Runnable {
     /**
      * Socket de la conexión entrante del dispositivo.
      */
@@ -36,12 +36,10 @@ public class HiloConexionTCP extends Thread {
 
     String tipoDispositivo = "";
 
-    Connection conn = null;
-
     /**
-     * Mapa de estado global, compartido entre todos los hilos del sistema.
+     * Estado ambiental global, compartido entre todos los hilos del sistema.
      */
-    ConcurrentHashMap<String, Object> estado;
+    ClimaGlobal clima;
     /**
      * Referencia al hilo de control principal para registrar nuevos sensores.
      */
@@ -51,15 +49,14 @@ public class HiloConexionTCP extends Thread {
      * Construye un nuevo hilo para gestionar la conexión inicial de un dispositivo.
      *
      * @param s               el {@link Socket} de la conexión del cliente.
-     * @param estado          el mapa {@link ConcurrentHashMap} que contiene el estado global del sistema.
+     * @param clima           el estado ambiental global del sistema.
      * @param hiloControlador la instancia del hilo de control principal, necesaria
      *                        para registrar sensores específicos de parcela.
      */
-    public HiloConexionTCP(Socket s, ConcurrentHashMap<String, Object> estado, HiloControlador hiloControlador, Connection conn) {
+    public HiloConexionTCP(Socket s, ClimaGlobal clima, HiloControlador hiloControlador) {
         this.s = s;
-        this.estado = estado;
+        this.clima = clima;
         this.hiloControlador = hiloControlador;
-        this.conn = conn;
     }
 
     /**
@@ -67,7 +64,9 @@ public class HiloConexionTCP extends Thread {
      *
      * <p>Realiza los siguientes pasos:</p>
      * <ol>
-     *   <li>Lee el tipo de dispositivo desde el flujo de entrada del socket.</li>
+     *   <li>Observa el primer byte sin consumirlo: si es {@link TramaBinaria#MAGICO} el
+     *       sensor usa el protocolo binario y se lo deriva a un {@link HiloReceptorBinario}.</li>
+     *   <li>Si no, lee el tipo de dispositivo desde el flujo de entrada del socket.</li>
      *   <li>Para dispositivos de parcela, lee su identificador (ID).</li>
      *   <li>Utiliza una estructura {@code switch} para determinar el tipo de dispositivo:</li>
      *   <ul>
@@ -83,38 +82,56 @@ public class HiloConexionTCP extends Thread {
     @Override
     public void run() {
         try {
-            BufferedReader br = new BufferedReader(new InputStreamReader(s.getInputStream()));
+            InputStream entrada = new BufferedInputStream(s.getInputStream());
+            entrada.mark(1);
+            int primerByte = entrada.read();
+            entrada.reset();
+            if (primerByte == TramaBinaria.MAGICO) {
+                Ejecutor.ejecutar(new HiloReceptorBinario(s, new DataInputStream(entrada), clima, hiloControlador));
+                return;
+            }
+
+            // Los receptores de texto continúan con el mismo lector, para no perder lo ya leído
+            BufferedReader br = new BufferedReader(new InputStreamReader(entrada));
             tipoDispositivo = br.readLine();
+            if (tipoDispositivo == null) {
+                s.close(); // Se desconectó antes de identificarse
+                return;
+            }
             int id;
             switch (tipoDispositivo) {
                 case "humedad":
-                    id = Integer.parseInt(br.readLine()); // Leer id
+                    if ((id = leerId(br)) < 0) {
+                        break;
+                    }
                     System.out.printf("---Conectado sensor humedad %d---\n", id);
-                    HiloReceptorHumedad receptorHumedad = new HiloReceptorHumedad(s);
-                    receptorHumedad.start();
+                    HiloReceptorHumedad receptorHumedad = new HiloReceptorHumedad(s, br, id);
+                    Ejecutor.ejecutar(receptorHumedad);
                     hiloControlador.setSensorHumedad(receptorHumedad, id);
                     break;
                 case "temperatura":
                     System.out.println("---Conectado sensor temperatura---");
-                    HiloReceptorTemperatura receptorT = new HiloReceptorTemperatura(s, estado);
-                    receptorT.start();
+                    HiloReceptorTemperatura receptorT = new HiloReceptorTemperatura(s, br, clima);
+                    Ejecutor.ejecutar(receptorT);
                     break;
                 case "lluvia":
                     System.out.println("---Conectado sensor lluvia---");
-                    HiloReceptorLluvia receptorL = new HiloReceptorLluvia(s, estado);
-                    receptorL.start();
+                    HiloReceptorLluvia receptorL = new HiloReceptorLluvia(s, br, clima);
+                    Ejecutor.ejecutar(receptorL);
                     break;
                 case "temporizador":
-                    id = Integer.parseInt(br.readLine()); // Leer id
+                    if ((id = leerId(br)) < 0) {
+                        break;
+                    }
                     System.out.printf("---Conectado temporizador %d---\n", id);
-                    HiloReceptorTiempo receptorTiempo = new HiloReceptorTiempo(s);
-                    receptorTiempo.start();
+                    HiloReceptorTiempo receptorTiempo = new HiloReceptorTiempo(s, br);
+                    Ejecutor.ejecutar(receptorTiempo);
                     hiloControlador.setSensorTiempo(receptorTiempo, id);
                     break;
                 case "iluminacion":
                     System.out.println("---Conectado sensor iluminacion---");
-                    HiloReceptorIluminacion receptorIluminacion = new HiloReceptorIluminacion(s, estado);
-                    receptorIluminacion.start(); // Nota: se ejecuta en el mismo hilo
+                    HiloReceptorIluminacion receptorIluminacion = new HiloReceptorIluminacion(s, br, clima);
+                    Ejecutor.ejecutar(receptorIluminacion);
                     break;
                 default:
                     System.out.println("Disposivo no reconocido");
@@ -124,4 +141,17 @@ public class HiloConexionTCP extends Thread {
             throw new RuntimeException(e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Lee el id de un dispositivo de parcela y cierra la conexión si no es válido.
+     *
+     * @return el id, o {@code -1} si se rechazó.
+     */
+    private int leerId(BufferedReader br) throws IOException {
+        int id = hiloControlador.leerIdParcela(br.readLine(), tipoDispositivo);
+        if (id < 0) {
+            s.close();
+        }
+        return id;
+    }
+}
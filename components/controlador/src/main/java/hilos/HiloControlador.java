@@ -1,24 +1,28 @@
 package hilos;
 
+import bd.EscritorBd;
+import latencia.Latencias;
+import latencia.Latencias.Etapa;
 import rmi.IClienteEM;
-import rmi.IServerRMI;
 import rmi.IServicioExclusionMutua;
+import rmi.PermisosInvalidosException;
+import util.ClimaGlobal;
+import util.EstadoClima;
+import valvulas.RegistroValvulas;
+import valvulas.Valvula;
 
 import java.net.MalformedURLException;
 import java.rmi.Naming;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.io.IOException;
-import java.util.concurrent.Semaphore;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.SQLException;
-import java.sql.PreparedStatement;
-import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * <p>
@@ -33,7 +37,7 @@ import java.util.Date;
  * Funcionalidades principales:
  * <ul>
  *     <li>Conectarse a un servicio de exclusión mutua mediante RMI para controlar un recurso compartido (bomba de agua).</li>
- *     <li>Conectarse a la válvula maestra del sistema de riego mediante RMI.</li>
+ *     <li>Abrir y cerrar la válvula maestra del sistema de riego, conectada en segundo plano por {@link RegistroValvulas}.</li>
  *     <li>Supervisar periódicamente el estado de las parcelas y solicitar o liberar el acceso a la bomba según la demanda.</li>
  *     <li>Mostrar por consola el estado detallado de las parcelas y variables ambientales.</li>
  * </ul>
@@ -42,26 +46,64 @@ import java.util.Date;
  * <p>
  * Implementa la interfaz remota {@link rmi.IClienteEM}, lo que permite que el
  * servidor de exclusión mutua invoque de manera asíncrona el método
- * {@link #RecibirToken()} cuando este cliente obtiene acceso exclusivo al
+ * {@link #RecibirToken(String, long, long)} cuando este cliente obtiene acceso exclusivo al
  * recurso.
  * </p>
  */
 public class HiloControlador extends UnicastRemoteObject implements IClienteEM, Runnable {
 
-    private final Semaphore s;
+    /**
+     * Estado del pedido del token de la bomba. Lo cambia sólo el bucle de control.
+     */
+    private enum EstadoBomba {
+        /** No se tiene ni se pidió el token. */
+        SIN_TOKEN,
+        /** Se pidió el token y se espera {@code RecibirToken}, sin bloquear el bucle. */
+        ESPERANDO,
+        /** Se tiene el token; la Válvula Maestra debe estar abierta. */
+        CON_TOKEN,
+        /**
+         * Se tiene el token pero ya no hay demanda: la Válvula Maestra debe cerrarse, y el
+         * token se devuelve recién cuando la válvula confirma el cierre. Mientras tanto se
+         * sigue renovando el lease.
+         */
+        DEVOLVIENDO
+    }
+
+    // Concesión recibida por RecibirToken; recibidaNanos sólo sirve para medir latencias
+    private record Concesion(long idToken, long duracionLeaseMs, long recibidaNanos) {
+    }
+
+    /**
+     * Período máximo entre vueltas del bucle de control; un aviso lo despierta antes.
+     */
+    private static final long PERIODO_MS = 1000;
 
-    private Connection conn;
+    /**
+     * Cada cuánto se encola el estado de todas las parcelas en la base de datos.
+     */
+    private static final long PERIODO_BD_MS = 10000;
 
     /**
-     * Estructura compartida que almacena variables ambientales globales (temperatura, radiación y lluvia).
+     * Escritor diferido del estado de las parcelas en la base de datos.
      */
-    private final ConcurrentHashMap<String, Object> estado;
+    private final EscritorBd escritorBd;
 
     /**
-     * Lista de hilos que representan las parcelas del invernadero.
-     * Cada {@link HiloParcela} controla su propia humedad, INR y válvula.
+     * Estado compartido con las variables ambientales globales (temperatura, radiación y lluvia).
      */
-    private final List<HiloParcela> listaParcelas = new ArrayList<>();
+    private final ClimaGlobal clima;
+
+    /**
+     * Registro de las parcelas del invernadero, creadas a medida que se conectan sus dispositivos.
+     * Cada {@link Parcela} controla su propia humedad, INR y válvula.
+     */
+    private final RegistroParcelas parcelas;
+
+    /**
+     * Origen de los temporizadores de las parcelas: procesos remotos o embebidos.
+     */
+    private final ServicioTemporizadores temporizadores;
 
     /**
      * Temperatura actual del ambiente (°C).
@@ -77,24 +119,118 @@ public class HiloControlador extends UnicastRemoteObject implements IClienteEM,
      * Indica si está lloviendo en el entorno monitoreado.
      */
     private boolean lluvia;
-    
-    private int bdCounter = 10;
 
     /**
-     * Referencia al servicio remoto de exclusión mutua.
-     * Utilizado para solicitar y liberar el acceso a la bomba de agua.
+     * Instante en que toca volver a encolar el estado de las parcelas.
+     */
+    private long proximaEscrituraBd;
+
+    /**
+     * Instante en que se mostró el estado por última vez.
+     */
+    private long ultimoEstadoMostrado;
+
+    /**
+     * Referencia al servicio remoto de exclusión mutua, o {@code null} mientras no haya un
+     * líder conectado. La asigna el hilo de {@link #reconexion} y la borra el bucle de
+     * control cuando una llamada falla.
+     */
+    private volatile IServicioExclusionMutua exclusionService;
+
+    private static final long ESPERA_RECONEXION_MAX_MS = 30000;
+
+    /**
+     * Hilo que busca la réplica líder con backoff exponencial, para que el bucle de control
+     * nunca espere un {@code Naming.lookup}.
+     */
+    private final ScheduledExecutorService reconexion = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("exclusion").daemon().factory());
+
+    /**
+     * Si hay una búsqueda del líder en curso; evita lanzar dos a la vez.
+     */
+    private final AtomicBoolean reconectando = new AtomicBoolean();
+
+    /**
+     * Espera antes del próximo intento de conexión. Sólo la usa el hilo de {@link #reconexion}.
+     */
+    private long esperaReconexion = 1000;
+
+    /**
+     * Lo marca el hilo de {@link #reconexion} al conectar; el bucle lo consume para
+     * reiniciar lo que depende del líder anterior.
+     */
+    private volatile boolean reconectado;
+
+    /**
+     * Si hay que quitar del servidor un pedido abandonado ({@link #cancelarPedido}); se
+     * envía en cuanto haya conexión, antes de volver a pedir.
+     */
+    private boolean cancelacionPendiente;
+
+    /**
+     * Válvula maestra de riego. Su stub lo mantiene {@link RegistroValvulas}; si no está
+     * conectada, el bucle la ajusta cuando se conecte ({@link #ajustarValvulaMaestra}).
+     */
+    private final Valvula valvulaMaestraParcelas;
+
+    /**
+     * Estado del token que da acceso a la bomba de agua.
+     */
+    private volatile EstadoBomba estadoBomba = EstadoBomba.SIN_TOKEN;
+
+    /**
+     * Pedido en curso; lo completa {@link #RecibirToken} desde el hilo RMI.
+     */
+    private volatile CompletableFuture<Concesion> pedidoBomba;
+
+    /**
+     * Instante en que se hizo el pedido en curso.
+     */
+    private long pedidoDesde;
+
+    /**
+     * Instantes ({@link System#nanoTime()}) para las latencias del token: desde cuándo hay
+     * demanda sin pedido ({@code -1} si no hay o ya se pidió), cuándo se pidió y cuándo
+     * llegó el token que todavía no abrió la Válvula Maestra ({@code -1} si ninguno).
      */
-    private IServicioExclusionMutua exclusionService;
+    private long demandaDesdeNanos = -1;
+    private boolean demandaPedida;
+    private long pedidoNanos;
+    private long tokenSinMaestraNanos = -1;
 
     /**
-     * Referencia al servidor remoto que controla la válvula maestra de riego.
+     * Espera máxima por el token (variable {@code ESPERA_TOKEN_MS}, por defecto 60000).
+     * Al vencer se cancela el pedido y, si sigue la demanda, se vuelve a pedir.
      */
-    private IServerRMI valvulaMaestraParcelas;
+    private final long esperaTokenMs;
 
     /**
-     * Indica si actualmente el controlador posee el token que da acceso a la bomba de agua.
+     * Tokens que llegaron sin un pedido esperándolos (por ejemplo, de un pedido cancelado);
+     * el bucle los devuelve.
      */
-    private volatile boolean tieneAccesoBomba = false;
+    private final Queue<Concesion> tokensSobrantes = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Id de la concesión vigente del token de la bomba, necesario para renovarla y devolverla.
+     */
+    private long idTokenBomba;
+
+    /**
+     * Duración del lease de la concesión; se renueva cada un tercio de este tiempo.
+     */
+    private long leaseBombaMs;
+
+    /**
+     * Instante de la última concesión o renovación del lease.
+     */
+    private long ultimaRenovacion;
+
+    /**
+     * Aviso para despertar el bucle de control antes de {@link #PERIODO_MS}.
+     */
+    private final Object aviso = new Object();
+    private boolean avisado;
 
     /**
      * Nombre del recurso compartido que se administra mediante exclusión mutua.
@@ -102,212 +238,272 @@ public class HiloControlador extends UnicastRemoteObject implements IClienteEM,
     private static final String RECURSO_BOMBA = "BombaAgua";
 
     /**
-     * Construye el hilo controlador, inicializando variables globales, creando hilos de parcelas,
-     * y estableciendo conexiones RMI con los servicios de exclusión mutua y control de válvula.
+     * Permisos de la bomba que pide este controlador (variable {@code PERMISOS_BOMBA}).
+     * Si la bomba alimenta a varios consumidores a la vez, con menos permisos que su
+     * capacidad el riego se superpone con el de otros clientes en lugar de esperarlos.
+     */
+    private final int permisosBomba;
+
+    /**
+     * Si el servidor rechazó {@link #permisosBomba} por estar fuera de la capacidad de la
+     * bomba. Mientras tanto no se vuelve a pedir; se reintenta al reconectar, por si el
+     * nuevo líder tiene otra capacidad.
+     */
+    private boolean permisosRechazados;
+
+    /**
+     * Decide cuándo pedir y devolver el token, agrupando las parcelas en rondas de riego.
+     */
+    private final DemandaBomba demandaBomba = DemandaBomba.porDefecto();
+
+    /**
+     * Construye el hilo controlador, inicializando variables globales y los registros de
+     * parcelas y electroválvulas. Las electroválvulas y el servicio de exclusión mutua se
+     * conectan en segundo plano.
      *
-     * @param estado estructura compartida que mantiene variables globales.
-     * @param s      Semáforo para sincronizar la recepción del token.
+     * @param clima  estado compartido con las variables ambientales globales.
+     * @param escritorBd escritor diferido del estado de las parcelas.
      * @throws RemoteException si ocurre un error al exportar el objeto remoto.
      */
-    public HiloControlador(ConcurrentHashMap<String, Object> estado, Semaphore s, Connection conn) throws RemoteException {
+    public HiloControlador(ClimaGlobal clima, EscritorBd escritorBd) throws RemoteException {
         super();
-        this.estado = estado;
-        this.s = s;
-        this.conn = conn;
-
-        // Inicializar las parcelas
-        for (int i = 0; i < 5; i++) {
-            HiloParcela parcela = new HiloParcela(i, estado);
-            listaParcelas.add(parcela);
-            parcela.start();
-        }
+        this.clima = clima;
+        this.escritorBd = escritorBd;
+        String permisosEnv = System.getenv("PERMISOS_BOMBA");
+        this.permisosBomba = (permisosEnv != null) ? Integer.parseInt(permisosEnv) : 1;
+        String esperaEnv = System.getenv("ESPERA_TOKEN_MS");
+        this.esperaTokenMs = (esperaEnv != null) ? Long.parseLong(esperaEnv) : 60000;
+        RegistroValvulas valvulas = RegistroValvulas.desdeEntorno();
+        this.valvulaMaestraParcelas = valvulas.maestra();
+        this.valvulaMaestraParcelas.setAlConectar(this::avisar);
+        this.temporizadores = ServicioTemporizadores.desdeEntorno();
+        System.out.println("Temporizadores de las parcelas: " + temporizadores.getModo().name().toLowerCase());
+        this.parcelas = new RegistroParcelas(clima, new PlanificadorParcelas(PlanificadorParcelas.trabajadoresPorDefecto()),
+                escritorBd, valvulas, temporizadores, RegistroParcelas.maximoPorDefecto());
+        this.parcelas.setAlCambiarDemanda(this::avisar);
+        this.clima.setNotificador(this::notificarCambioGlobal);
+
+        reconectarExclusion();
+    }
 
-        this.valvulaMaestraParcelas = conectarValvulaMaestra();
-        if (this.valvulaMaestraParcelas == null) {
-            throw new RuntimeException("No se pudo establecer la conexión inicial con la Válvula Maestra.");
+    /**
+     * Lanza la búsqueda del líder en segundo plano, salvo que ya haya una en curso.
+     */
+    private void reconectarExclusion() {
+        if (reconectando.compareAndSet(false, true)) {
+            reconexion.execute(this::intentarConexion);
         }
+    }
 
-        this.exclusionService = conectarServicioExclusion();
-        if (this.exclusionService == null) {
-            throw new RuntimeException("No se pudo establecer la conexión inicial con el servicio de Exclusión Mutua.");
+    /**
+     * Intenta una vez conectar con el líder y, si no lo encuentra, se reprograma con
+     * backoff exponencial. Corre en el hilo de {@link #reconexion}.
+     */
+    private void intentarConexion() {
+        IServicioExclusionMutua lider = buscarLider();
+        if (lider == null) {
+            System.out.printf("Reintentando la conexión con el servicio de Exclusión Mutua en %d ms...%n", esperaReconexion);
+            reconexion.schedule(this::intentarConexion, esperaReconexion, TimeUnit.MILLISECONDS);
+            esperaReconexion = Math.min(esperaReconexion * 2, ESPERA_RECONEXION_MAX_MS); // Espera exponencial
+            return;
         }
+        esperaReconexion = 1000;
+        // Se libera antes de publicar el stub: un fallo con el nuevo stub debe poder relanzarla
+        reconectando.set(false);
+        reconectado = true;
+        exclusionService = lider;
+        avisar();
     }
 
     /**
-     * Intenta conectar con el servidor RMI de la Válvula Maestra.
-     * Implementa reintentos con backoff exponencial.
+     * Busca la réplica líder del servidor RMI de Exclusión Mutua, una vez por réplica.
+     * Las réplicas se toman de {@code EXCLUSION_REPLICAS} ({@code host:puerto,...}) o, si no
+     * está definida, de {@code EXCLUSION_HOST}/{@code EXCLUSION_PORT}.
      *
-     * @return Referencia al servidor RMI o null si falla la conexión.
+     * @return Referencia al servicio de Exclusión Mutua o null si ninguna réplica es líder.
      */
-    private IServerRMI conectarValvulaMaestra() {
-        int maxRetries = 10;
-        long delay = 1000;
-        IServerRMI tempValvulaMaestraParcelas = null;
+    private IServicioExclusionMutua buscarLider() {
+        String replicasEnv = System.getenv("EXCLUSION_REPLICAS");
+        if (replicasEnv == null || replicasEnv.isBlank()) {
+            String exclusionHost = System.getenv("EXCLUSION_HOST");
+            if (exclusionHost == null) exclusionHost = "localhost";
+            String portEnv = System.getenv("EXCLUSION_PORT");
+            int port = (portEnv != null) ? Integer.parseInt(portEnv) : 10000;
+            replicasEnv = exclusionHost + ":" + port;
+        }
 
-        for (int i = 0; i < maxRetries; i++) {
+        for (String replica : replicasEnv.split(",")) {
+            String url = "rmi://" + replica.trim() + "/servidorCentralEM";
             try {
-                String valvulaHost = System.getenv("VALVULA_MAESTRA_HOST");
-                if (valvulaHost == null) valvulaHost = "localhost";
-                String valvulaEnv = System.getenv("VALVULA_MAESTRA_PORT");
-                int valvulaPort = (valvulaEnv != null) ? Integer.parseInt(valvulaEnv) : 21005;
-
-                tempValvulaMaestraParcelas = (IServerRMI) Naming.lookup("rmi://" + valvulaHost + ":" + valvulaPort + "/ServerRMI");
-                System.out.println("Controlador conectado exitosamente a la Válvula Maestra de Parcelas.");
-                return tempValvulaMaestraParcelas; // Éxito
-            } catch (NotBoundException | MalformedURLException | RemoteException e) {
-                System.err.println("Error al conectar con la Válvula Maestra: " + e.getMessage());
-                if (i < maxRetries - 1) {
-                    try {
-                        System.out.printf("Reintentando en %d ms... (Intento %d/%d)%n", delay, i + 2, maxRetries);
-                        Thread.sleep(delay);
-                        delay *= 2; // Backoff exponencial
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                    }
+                System.out.println("Conectando al servidor de exclusión mutua en " + url);
+                IServicioExclusionMutua tempExclusionService = (IServicioExclusionMutua) Naming.lookup(url);
+                if (tempExclusionService.EsLider()) {
+                    System.out.println("Controlador conectado exitosamente al servicio de Exclusión Mutua.");
+                    return tempExclusionService; // Éxito
                 }
+                System.out.println("La réplica en " + url + " no es el líder");
+            } catch (NotBoundException | MalformedURLException | RemoteException e) {
+                System.err.println("Error al conectar con el servicio de Exclusión Mutua: " + e.getMessage());
             }
         }
-        System.err.println("Fallo al conectar con la Válvula Maestra después de " + maxRetries + " intentos.");
         return null; // Fallo
     }
 
+
     /**
-     * Intenta conectar con el servidor RMI de Exclusión Mutua.
-     * Implementa reintentos con backoff exponencial.
+     * Interpreta el id que un sensor de humedad o un temporizador envía al conectarse.
      *
-     * @return Referencia al servicio de Exclusión Mutua o null si falla la conexión.
+     * @param texto           línea recibida con el id; {@code null} si el dispositivo se desconectó.
+     * @param tipoDispositivo tipo anunciado por el dispositivo, para el aviso.
+     * @return el id, o {@code -1} si no es un número o está fuera del rango de parcelas.
      */
-    private IServicioExclusionMutua conectarServicioExclusion() {
-        int maxRetries = 10;
-        long delay = 1000;
-        IServicioExclusionMutua tempExclusionService = null;
-
-        for (int i = 0; i < maxRetries; i++) {
-            try {
-                String exclusionHost = System.getenv("EXCLUSION_HOST");
-                if (exclusionHost == null) exclusionHost = "localhost";
-                String portEnv = System.getenv("EXCLUSION_PORT");
-                int port = (portEnv != null) ? Integer.parseInt(portEnv) : 10000;
-                String url = "rmi://" + exclusionHost + ":" + port + "/servidorCentralEM";
-
-                System.out.println("Intento " + (i + 1) + ": Conectando al servidor de exclusión mutua en " + url);
-                tempExclusionService = (IServicioExclusionMutua) Naming.lookup(url);
-                System.out.println("Controlador conectado exitosamente al servicio de Exclusión Mutua.");
-                return tempExclusionService; // Éxito
-            } catch (NotBoundException | MalformedURLException | RemoteException e) {
-                System.err.println("Error al conectar con el servicio de Exclusión Mutua: " + e.getMessage());
-                if (i < maxRetries - 1) {
-                    try {
-                        System.out.printf("Reintentando en %d ms... (Intento %d/%d)%n", delay, i + 2, maxRetries);
-                        Thread.sleep(delay);
-                        delay *= 2; // Espera exponencial
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                    }
-                }
-            }
+    public int leerIdParcela(String texto, String tipoDispositivo) {
+        if (texto == null) {
+            return -1;
         }
-        System.err.println("Fallo al conectar con el servicio de Exclusión Mutua después de " + maxRetries + " intentos.");
-        return null; // Fallo
+        int id;
+        try {
+            id = Integer.parseInt(texto.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Id no numérico de " + tipoDispositivo + " rechazado: \"" + texto + "\"");
+            return -1;
+        }
+        return aceptarIdParcela(id, tipoDispositivo) ? id : -1;
     }
 
+    /**
+     * Indica si un id anunciado por un dispositivo corresponde a una parcela válida
+     * (entre 0 y {@code PARCELAS_MAX - 1} y sin la Válvula Maestra como electroválvula),
+     * y avisa si se rechaza.
+     *
+     * @param id              identificador anunciado.
+     * @param tipoDispositivo tipo anunciado por el dispositivo, para el aviso.
+     * @return {@code true} si el id es válido.
+     */
+    public boolean aceptarIdParcela(int id, String tipoDispositivo) {
+        String motivo = parcelas.motivoRechazo(id);
+        if (motivo == null) {
+            return true;
+        }
+        System.err.println("Id de " + tipoDispositivo + " rechazado: " + id + ", " + motivo);
+        return false;
+    }
 
     /**
-     * Asocia un hilo receptor de datos de humedad con una parcela específica.
+     * Asocia un hilo receptor de datos de humedad con una parcela específica,
+     * creando la parcela si es la primera vez que se anuncia su id.
      *
-     * @param hr la instancia de {@link HiloReceptorHumedad} que se va a asignar.
-     * @param id el identificador de la parcela (0-4) a la que se asignará el sensor.
+     * @param hr el receptor de humedad ({@link HiloReceptorHumedad} o conexión NIO) que se va a asignar.
+     * @param id el identificador de la parcela a la que se asignará el sensor.
      */
-    public void setSensorHumedad(HiloReceptorHumedad hr, int id) {
-        listaParcelas.get(id).setHiloHumedad(hr);
+    public void setSensorHumedad(IReceptorHumedad hr, int id) {
+        parcelas.obtenerOCrear(id).setHiloHumedad(hr);
     }
 
     /**
-     * Asocia un hilo receptor de datos de un temporizador con una parcela específica.
+     * Asocia un hilo receptor de datos de un temporizador con una parcela específica,
+     * creando la parcela si es la primera vez que se anuncia su id. En modo embebido
+     * ({@link ServicioTemporizadores}) la parcela ya tiene su temporizador y el remoto
+     * se ignora.
      *
-     * @param hr la instancia de {@link HiloReceptorTiempo} que se va a asignar.
-     * @param id el identificador de la parcela (0-4) a la que se asignará el temporizador.
-     * @throws IOException si ocurre un error al configurar el canal de comunicación con el temporizador.
+     * @param hr el canal del temporizador ({@link HiloReceptorTiempo} o conexión NIO) que se va a asignar.
+     * @param id el identificador de la parcela a la que se asignará el temporizador.
      */
-    public void setSensorTiempo(HiloReceptorTiempo hr, int id) throws IOException {
-        listaParcelas.get(id).setHiloTiempo(hr);
+    public void setSensorTiempo(IReceptorTiempo hr, int id) {
+        if (temporizadores.esEmbebido()) {
+            System.out.println("Temporizador remoto " + id + " ignorado: las parcelas usan temporizadores embebidos.");
+            return;
+        }
+        parcelas.obtenerOCrear(id).setHiloTiempo(hr);
     }
 
 
 
 
+    /**
+     * Avisa que cambió una variable global (temperatura, radiación o lluvia),
+     * para que todas las parcelas se reevalúen.
+     */
+    public void notificarCambioGlobal() {
+        parcelas.marcarTodas();
+    }
+
     /**
      * Método principal de ejecución del hilo controlador.
      * <p>
      * Se ejecuta en bucle continuo, verificando periódicamente si alguna parcela
-     * necesita agua. Si hay demanda y no se posee el token, se solicita al
-     * servidor de exclusión mutua. Si no hay demanda pero se posee el token, se
-     * libera el recurso. Además, actualiza las variables globales y muestra el
-     * estado de las parcelas y del sistema por consola.
+     * necesita agua. {@link DemandaBomba} decide con esa demanda cuándo solicitar el
+     * token al servidor de exclusión mutua y cuándo liberarlo, agrupando las parcelas
+     * en rondas de riego. El pedido del token no bloquea: mientras se espera, el bucle
+     * sigue supervisando y registrando ({@link #atenderBomba}); la reconexión con el
+     * servicio de exclusión la hace otro hilo, y mientras tanto se saltea la bomba. Además,
+     * actualiza las variables globales y muestra el estado de las parcelas y del
+     * sistema por consola.
+     * </p>
+     * <p>
+     * Entre vueltas espera hasta {@link #PERIODO_MS}, o menos si llega el token o cambia
+     * la demanda de las parcelas.
      * </p>
      */
     @Override
     public void run() {
         while (true) {
             try {
-                bdCounter -= 1;
-
-                if (bdCounter == 0 && this.conn != null){
-                    escribirBd();
-                    bdCounter = 10;
+                long ahora = System.currentTimeMillis();
+                if (ahora >= proximaEscrituraBd) {
+                    // Sólo encola; la escritura la hace el hilo del EscritorBd
+                    parcelas.paraCada(parcela -> escritorBd.encolar(parcela.aRegistro()));
+                    proximaEscrituraBd = ahora + PERIODO_BD_MS;
                 }
-                if (exclusionService == null) {
-                    System.err.println("La conexión con el servicio de exclusión se ha perdido. Intentando reconectar...");
-                    exclusionService = conectarServicioExclusion();
-                    if (exclusionService == null) {
-                        Thread.sleep(5000); // Esperar antes del próximo intento
-                        continue;
-                    }
+                boolean demandaActual = algunaParcelaNecesitaAgua();
+                if (!demandaActual) {
+                    demandaDesdeNanos = -1;
+                    demandaPedida = false;
+                } else if (demandaDesdeNanos < 0 && !demandaPedida) {
+                    demandaDesdeNanos = System.nanoTime();
                 }
-                if (valvulaMaestraParcelas == null) {
-                    System.err.println("La conexión con la Válvula Maestra se ha perdido. Intentando reconectar...");
-                    valvulaMaestraParcelas = conectarValvulaMaestra();
-                    if (valvulaMaestraParcelas == null) {
-                        Thread.sleep(5000);
-                        continue;
+                boolean quiereBomba = demandaBomba.quiereBomba(parcelas.parcelasConDemanda(),
+                        estadoBomba == EstadoBomba.CON_TOKEN, ahora);
+
+                if (exclusionService != null) {
+                    if (reconectado) {
+                        reconectado = false;
+                        permisosRechazados = false; // El nuevo líder puede tener otra capacidad
                     }
+                    enviarCancelacion();
+                    atenderBomba(quiereBomba, ahora);
+                    devolverSobrantes();
+                } else {
+                    vencerSinConexion(ahora);
                 }
-
-                boolean demandaActual = algunaParcelaNecesitaAgua();
-
-                if (demandaActual && !tieneAccesoBomba) {
-                    System.out.println("Pidiendo token de acceso a bomba de agua...");
-                    exclusionService.ObtenerRecurso(RECURSO_BOMBA, this);
-                    this.s.acquire();
-                } else if (!demandaActual && tieneAccesoBomba) {
-                    valvulaMaestraParcelas.cerrarValvula();
-                    exclusionService.DevolverRecurso(RECURSO_BOMBA);
-                    tieneAccesoBomba = false;
-                    System.out.println("Token devuelto");
+                ajustarValvulaMaestra();
+
+                EstadoClima actual = this.clima.actual();
+                this.temperatura = actual.temperatura();
+                this.radiacion = actual.radiacion();
+                this.lluvia = actual.lluvia();
+
+                // Los avisos pueden despertar el bucle varias veces por segundo
+                if (ahora - ultimoEstadoMostrado >= PERIODO_MS) {
+                    mostrarEstadoParcelas();
+                    mostrarEstadoGeneral(demandaActual);
+                    ultimoEstadoMostrado = ahora;
                 }
 
-                this.temperatura = (double) this.estado.get("temperatura");
-                this.radiacion = (double) this.estado.get("radiacion");
-                this.lluvia = (boolean) this.estado.get("lluvia");
-
-                mostrarEstadoParcelas();
-                mostrarEstadoGeneral(demandaActual);
-
             } catch (RemoteException e) {
                 System.err.println("Error RMI en HiloControlador: " + e.getMessage() + ". La conexión se intentará restablecer.");
                 this.exclusionService = null;
-                this.valvulaMaestraParcelas = null;
-                this.tieneAccesoBomba = false;
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                System.err.println("HiloControlador interrumpido");
-                break; // Salir del bucle si se interrumpe
+                reconectarExclusion();
+                // El token se conserva: la concesión está replicada y la próxima renovación,
+                // ya contra el líder vigente, dice si sigue siendo nuestra. Un pedido en
+                // curso puede haberse perdido: se cancela y se vuelve a pedir.
+                if (estadoBomba == EstadoBomba.ESPERANDO) {
+                    cancelarPedido("error de conexión");
+                }
             }
-            
-
 
             try {
-                Thread.sleep(1000);
+                esperarAviso(PERIODO_MS);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 System.err.println("HiloControlador interrumpido durante la espera");
@@ -316,50 +512,252 @@ public class HiloControlador extends UnicastRemoteObject implements IClienteEM,
         }
     }
 
-    private void escribirBd() {
-        String sql = "INSERT INTO log (info) VALUES (?)";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    /**
+     * Avanza la máquina de estados del token de la bomba, sin bloquear el bucle.
+     *
+     * @param quiereBomba si {@link DemandaBomba} quiere tener el token.
+     * @param ahora       instante actual.
+     * @throws RemoteException si ocurre un error durante la comunicación RMI.
+     */
+    private void atenderBomba(boolean quiereBomba, long ahora) throws RemoteException {
+        switch (estadoBomba) {
+            case SIN_TOKEN -> {
+                if (quiereBomba && !permisosRechazados) {
+                    System.out.println("Pidiendo token de acceso a bomba de agua...");
+                    // El pedido se registra antes: el token puede llegar antes de que vuelva la llamada
+                    pedidoBomba = new CompletableFuture<>();
+                    pedidoDesde = ahora;
+                    pedidoNanos = System.nanoTime();
+                    if (demandaDesdeNanos >= 0) {
+                        Latencias.registrarNanos(Etapa.DEMANDA_PEDIDO, pedidoNanos - demandaDesdeNanos);
+                        demandaDesdeNanos = -1;
+                        demandaPedida = true;
+                    }
+                    estadoBomba = EstadoBomba.ESPERANDO;
+                    try {
+                        exclusionService.ObtenerPermisos(RECURSO_BOMBA, permisosBomba, this);
+                    } catch (PermisosInvalidosException e) {
+                        // Error de configuración: la conexión está bien y reintentar no sirve
+                        System.err.println("PERMISOS_BOMBA=" + permisosBomba + " rechazado por el servicio de exclusión: "
+                                + e.getMessage() + ". No se pedirá la bomba hasta reconectar.");
+                        pedidoBomba = null;
+                        estadoBomba = EstadoBomba.SIN_TOKEN;
+                        permisosRechazados = true;
+                    }
+                }
+            }
+            case ESPERANDO -> {
+                Concesion concesion = pedidoBomba.getNow(null);
+                if (concesion != null) {
+                    pedidoBomba = null;
+                    idTokenBomba = concesion.idToken();
+                    leaseBombaMs = concesion.duracionLeaseMs();
+                    ultimaRenovacion = ahora;
+                    Latencias.registrarNanos(Etapa.PEDIDO_TOKEN, concesion.recibidaNanos() - pedidoNanos);
+                    tokenSinMaestraNanos = concesion.recibidaNanos();
+                    estadoBomba = EstadoBomba.CON_TOKEN; // La válvula la abre ajustarValvulaMaestra
+                } else if (!quiereBomba) {
+                    cancelarPedido("ya no hay demanda");
+                } else if (ahora - pedidoDesde >= esperaTokenMs) {
+                    // Si el pedido se perdió (por ejemplo, en un cambio de líder) se repite
+                    cancelarPedido("sin respuesta en " + esperaTokenMs / 1000 + " segundos");
+                }
+            }
+            case CON_TOKEN -> {
+                if (!quiereBomba) {
+                    estadoBomba = EstadoBomba.DEVOLVIENDO;
+                    devolverToken();
+                } else {
+                    renovarLease();
+                }
+            }
+            case DEVOLVIENDO -> {
+                if (quiereBomba) {
+                    estadoBomba = EstadoBomba.CON_TOKEN; // Volvió la demanda: se reabre con el mismo token
+                    renovarLease();
+                } else {
+                    devolverToken();
+                }
+            }
+        }
+    }
 
-            // Create a descriptive log message with a timestamp
-            String logMessage = new Date() + " Estado:\n" + this.estado.toString();
+    /**
+     * Cierra la Válvula Maestra y, sólo si el cierre se confirmó, devuelve el token. Si la
+     * válvula no está conectada o el comando falla, se conserva el token (renovando el
+     * lease) y se reintenta en la próxima vuelta: devolverlo con la válvula quizás abierta
+     * dejaría a otro cliente usar la bomba a la vez.
+     *
+     * @throws RemoteException si ocurre un error durante la comunicación RMI.
+     */
+    private void devolverToken() throws RemoteException {
+        if (!ajustarValvulaMaestra()) {
+            renovarLease();
+            return;
+        }
+        estadoBomba = EstadoBomba.SIN_TOKEN;
+        exclusionService.DevolverRecurso(RECURSO_BOMBA, idTokenBomba);
+        System.out.println("Token devuelto");
+    }
 
-            // Set the value for the first placeholder (?)
-            pstmt.setString(1, logMessage);
+    /**
+     * Abandona el pedido en curso. La solicitud se quita también de la cola del servidor
+     * ({@link #enviarCancelacion}), para que no se le entregue a un cliente que ya no la
+     * espera; si el token llega igual, se devuelve como sobrante.
+     *
+     * @param motivo motivo que se muestra por consola.
+     */
+    private void cancelarPedido(String motivo) {
+        System.out.println("Pedido del token cancelado: " + motivo);
+        CompletableFuture<Concesion> pedido = pedidoBomba;
+        pedidoBomba = null;
+        estadoBomba = EstadoBomba.SIN_TOKEN;
+        cancelacionPendiente = true;
+        avisar();
+        Concesion llegada = (pedido != null && !pedido.cancel(false)) ? pedido.getNow(null) : null;
+        if (llegada != null) {
+            tokensSobrantes.add(llegada); // Llegó justo al cancelar
+        }
+    }
 
-            // Execute the insert statement
-            int rowsAffected = pstmt.executeUpdate();
+    /**
+     * Quita del servidor la solicitud de un pedido cancelado, si queda alguna pendiente.
+     * Se llama antes de pedir de nuevo, para no borrar el pedido nuevo.
+     *
+     * @throws RemoteException si ocurre un error durante la comunicación RMI.
+     */
+    private void enviarCancelacion() throws RemoteException {
+        if (cancelacionPendiente) {
+            exclusionService.CancelarPedido(RECURSO_BOMBA, this);
+            cancelacionPendiente = false;
+        }
+    }
 
-            if (rowsAffected > 0) {
-                System.out.println("Successfully wrote test entry to the log table.");
-            } else {
-                System.err.println("Warning: Test log entry was not written to the database.");
-            }
+    /**
+     * Sin conexión con el servicio de exclusión no se puede renovar el lease: cuando pasa
+     * su duración desde la última renovación, el servidor ya pudo entregar el token a
+     * otro cliente, así que se deja de considerar titular y se cierra la Válvula Maestra.
+     *
+     * @param ahora instante actual.
+     */
+    private void vencerSinConexion(long ahora) {
+        boolean titular = estadoBomba == EstadoBomba.CON_TOKEN || estadoBomba == EstadoBomba.DEVOLVIENDO;
+        if (titular && ahora - ultimaRenovacion >= leaseBombaMs) {
+            System.err.println("Sin conexión, el lease del token " + idTokenBomba + " venció; se cierra la Válvula Maestra");
+            estadoBomba = EstadoBomba.SIN_TOKEN;
+        }
+    }
+
+    /**
+     * Devuelve los tokens que llegaron sin un pedido esperándolos.
+     *
+     * @throws RemoteException si ocurre un error durante la comunicación RMI.
+     */
+    private void devolverSobrantes() throws RemoteException {
+        Concesion sobrante;
+        while ((sobrante = tokensSobrantes.peek()) != null) {
+            exclusionService.DevolverRecurso(RECURSO_BOMBA, sobrante.idToken());
+            tokensSobrantes.poll();
+            System.out.println("Token sobrante " + sobrante.idToken() + " devuelto");
+        }
+    }
 
-        } catch (SQLException e) {
-            System.err.println("Error writing to log table: " + e.getMessage());
+    /**
+     * Despierta el bucle de control antes de que termine su período.
+     */
+    private void avisar() {
+        synchronized (aviso) {
+            avisado = true;
+            aviso.notifyAll();
+        }
+    }
+
+    private void esperarAviso(long maximoMs) throws InterruptedException {
+        synchronized (aviso) {
+            long limite = System.currentTimeMillis() + maximoMs;
+            long resta = maximoMs;
+            while (!avisado && resta > 0) {
+                aviso.wait(resta);
+                resta = limite - System.currentTimeMillis();
+            }
+            avisado = false;
         }
     }
 
     /**
-     * Método invocado por el servidor de exclusión mutua cuando este cliente obtiene el token.
+     * Renueva el lease del token de la bomba si pasó un tercio de su duración. Si el
+     * servidor ya no lo reconoce (venció y pasó a otro cliente), cierra la Válvula
+     * Maestra (en {@link #ajustarValvulaMaestra}) y deja de considerarse titular.
      *
      * @throws RemoteException si ocurre un error durante la comunicación RMI.
      */
-    @Override
-    public void RecibirToken() throws RemoteException {
-        System.out.println("Token recibido para el recurso " + RECURSO_BOMBA);
-        this.tieneAccesoBomba = true;
+    private void renovarLease() throws RemoteException {
+        long ahora = System.currentTimeMillis();
+        if (ahora - ultimaRenovacion < leaseBombaMs / 3) {
+            return;
+        }
+        if (exclusionService.RenovarRecurso(RECURSO_BOMBA, idTokenBomba)) {
+            ultimaRenovacion = ahora;
+        } else {
+            System.err.println("El lease del token " + idTokenBomba + " venció; se cierra la Válvula Maestra");
+            estadoBomba = EstadoBomba.SIN_TOKEN;
+        }
+    }
+
+    /**
+     * Lleva la Válvula Maestra al estado que corresponde al token: abierta con el token y
+     * cerrada sin él (o mientras se lo devuelve). Usa el estado local de la válvula, así que
+     * sólo hace una llamada remota si hay que cambiarla. Si no está conectada o el comando
+     * falla, se reintenta en una vuelta posterior, después de que {@link RegistroValvulas}
+     * la reconecte.
+     *
+     * @return {@code true} si la válvula quedó, confirmada, en el estado que corresponde.
+     */
+    private boolean ajustarValvulaMaestra() {
+        boolean debeEstarAbierta = estadoBomba == EstadoBomba.CON_TOKEN;
+        if (!valvulaMaestraParcelas.disponible()) {
+            return false;
+        }
+        if (valvulaMaestraParcelas.estaAbierta() == debeEstarAbierta) {
+            return true;
+        }
         try {
-            if (valvulaMaestraParcelas != null) {
-                valvulaMaestraParcelas.abrirValvula();
+            if (debeEstarAbierta) {
+                valvulaMaestraParcelas.abrir();
+                if (tokenSinMaestraNanos >= 0) {
+                    Latencias.registrarNanos(Etapa.TOKEN_MAESTRA, System.nanoTime() - tokenSinMaestraNanos);
+                    tokenSinMaestraNanos = -1;
+                }
             } else {
-                System.err.println("Token recibido pero la Válvula Maestra no está conectada");
+                valvulaMaestraParcelas.cerrar();
             }
+            return true;
         } catch (RemoteException e) {
-            System.err.println("Fallo al abrir la Válvula Maestra después de recibir el token: " + e.getMessage());
-            this.valvulaMaestraParcelas = null; // Invalidar conexión
+            System.err.println("Error RMI con la Válvula Maestra: " + e.getMessage() + ". Se reintentará al reconectar.");
+            return false;
+        }
+    }
+
+    /**
+     * Método invocado por el servidor de exclusión mutua cuando este cliente obtiene el token.
+     * Sólo completa el pedido en curso y despierta al bucle de control, que abre la Válvula
+     * Maestra. Si no hay pedido esperando, el token queda para que el bucle lo devuelva.
+     *
+     * @param nombreRecurso   recurso concedido.
+     * @param idToken         id de la concesión.
+     * @param duracionLeaseMs duración del lease si no se renueva.
+     * @throws RemoteException si ocurre un error durante la comunicación RMI.
+     */
+    @Override
+    public void RecibirToken(String nombreRecurso, long idToken, long duracionLeaseMs) throws RemoteException {
+        System.out.println("Token " + idToken + " recibido para el recurso " + nombreRecurso);
+        Concesion concesion = new Concesion(idToken, duracionLeaseMs, System.nanoTime());
+        CompletableFuture<Concesion> pedido = this.pedidoBomba;
+        // La Válvula Maestra la abre el bucle de control: el callback no hace otras llamadas remotas
+        if (pedido == null || !pedido.complete(concesion)) {
+            tokensSobrantes.add(concesion);
         }
-        this.s.release();
+        avisar();
     }
 
     /**
@@ -374,17 +772,13 @@ public class HiloControlador extends UnicastRemoteObject implements IClienteEM,
     }
 
     /**
-     * Determina si alguna de las parcelas necesita agua.
+     * Determina si alguna de las parcelas necesita agua. Usa el contador del
+     * registro, por lo que no recorre las parcelas.
      *
      * @return {@code true} si al menos una parcela requiere riego; {@code false} en caso contrario.
      */
     private boolean algunaParcelaNecesitaAgua() {
-        for (HiloParcela parcela : listaParcelas) {
-            if (parcela.necesitaAgua()) {
-                return true;
-            }
-        }
-        return false;
+        return parcelas.hayDemanda();
     }
 
     /**
@@ -396,28 +790,22 @@ public class HiloControlador extends UnicastRemoteObject implements IClienteEM,
                 "Parcela", "Humedad (%)", "INR", "Electrovalvula", "Temporizador");
         System.out.println("------------------------------------------------------------------");
 
-        for (int i = 0; i < listaParcelas.size(); i++) {
-            HiloParcela parcela = listaParcelas.get(i);
+        parcelas.paraCada(parcela -> {
+            int i = parcela.getId();
             double humedad = parcela.getHumedad();
             double inr = parcela.getInr();
-            boolean estaAbierta = false; // Por defecto cerrada si no hay conexión
-            try {
-                // Esta llamada puede fallar si la electroválvula está desconectada
-                if (parcela.getElectrovalvula() != null) {
-                    estaAbierta = parcela.getElectrovalvula().estaAbierta();
-                }
-            } catch (RemoteException e) {
-                System.err.println("No se pudo obtener el estado de la electroválvula " + i + ". Asumiendo cerrada.");
-            }
+            // Estado local de la válvula: no hace ninguna llamada remota
+            String electrovalvula = parcela.getElectrovalvula().estado();
             boolean temporizadorActivo = parcela.getEstadoTemporizador() == 0;
+            String temporizador = temporizadorActivo ? "ACTIVO (" + parcela.getSegundosRestantes() + "s)" : "APAGADO";
 
             System.out.printf("%-8d | %-12.2f | %-10.3f | %-15s | %-12s%n",
                     i,
                     humedad,
                     inr,
-                    (estaAbierta ? "ABIERTA" : "CERRADA"),
-                    (temporizadorActivo ? "ACTIVO" : "APAGADO"));
-        }
+                    electrovalvula,
+                    temporizador);
+        });
     }
 
     /**
@@ -430,7 +818,16 @@ public class HiloControlador extends UnicastRemoteObject implements IClienteEM,
         System.out.printf("  Temperatura : %.2f °C%n", this.temperatura);
         System.out.printf("  Radiación   : %.2f W/m²%n", this.radiacion);
         System.out.printf("  Se necesita agua? : %s%n", (demandaActual ? "Sí" : "No"));
+        System.out.printf("  Bomba       : %s (%s)%s%s%n", estadoBomba, demandaBomba.metricas(),
+                permisosRechazados ? " [PERMISOS_BOMBA rechazado]" : "",
+                exclusionService == null ? " [sin servicio de exclusión]" : "");
+        System.out.printf("  Válv. Maestra: %s%n", valvulaMaestraParcelas.estado());
+        System.out.printf("  Planificador: %d parcela(s) por evaluar%n", parcelas.evaluacionesPendientes());
+        System.out.printf("  Temporizadores: %s%n", temporizadores.esEmbebido()
+                ? "embebidos (" + temporizadores.cuentasActivas() + " contando)" : "remotos");
         System.out.printf("  Lloviendo   : %s%n", (this.lluvia ? "Sí" : "No"));
+        System.out.printf("  Base de datos: %s%n", escritorBd.metricas());
+        System.out.print(Latencias.reporte());
         System.out.println("=====================================\n");
     }
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+package hilos;
+
+import historial.Historial;
+import latencia.Latencias;
+import latencia.Marca;
+import protocolo.TramaBinaria;
+import util.ClimaGlobal;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * Hilo que atiende a un sensor conectado con el protocolo binario.
+ *
+ * <p>Cumple el papel de los {@code HiloReceptor*} de texto para cualquier tipo
+ * de sensor: el tipo y el id viajan en cada {@link TramaBinaria}, por lo que el
+ * sensor se registra al recibir la primera trama. Las lecturas de humedad quedan
+ * en el receptor, que se asigna a su parcela; las de temperatura, lluvia e
+ * iluminación se publican en el {@link ClimaGlobal}.</p>
+ *
+ * <p>Todas las lecturas de una trama, incluidas las de un lote, se entregan al
+ * {@link Historial}; para las decisiones de control sólo se aplica la más
+ * reciente. Las lecturas con un número de secuencia que no supera al último
+ * aplicado llegaron fuera de orden y se descartan.</p>
+ */
+public class HiloReceptorBinario implements Runnable, IReceptorHumedad {
+
+    private final Socket cliente;
+    private final DataInputStream entrada;
+    private final ClimaGlobal clima;
+    private final HiloControlador hiloControlador;
+
+    private volatile double humedad = Double.NaN; // Sin lecturas todavía
+    private volatile Marca marca;
+    private volatile Runnable notificador = () -> { };
+    private long ultimaSecuencia = -1;
+    private String serie;
+
+    /**
+     * Construye un receptor binario.
+     *
+     * @param cliente         el {@link Socket} de la conexión con el sensor.
+     * @param entrada         flujo de la conexión, posicionado antes del saludo binario.
+     * @param clima           el estado ambiental global del sistema.
+     * @param hiloControlador controlador en el que se registran los sensores de humedad.
+     */
+    public HiloReceptorBinario(Socket cliente, DataInputStream entrada, ClimaGlobal clima, HiloControlador hiloControlador) {
+        this.cliente = cliente;
+        this.entrada = entrada;
+        this.clima = clima;
+        this.hiloControlador = hiloControlador;
+    }
+
+    @Override
+    public double getHumedad() {
+        return humedad;
+    }
+
+    @Override
+    public Marca getMarca() {
+        return marca;
+    }
+
+    @Override
+    public void setNotificador(Runnable notificador) {
+        this.notificador = notificador;
+    }
+
+    /**
+     * Bucle principal del hilo: lee el saludo y luego aplica cada trama recibida
+     * hasta que el sensor cierra la conexión.
+     */
+    @Override
+    public void run() {
+        try {
+            TramaBinaria.leerSaludo(entrada);
+            List<TramaBinaria> lecturas = TramaBinaria.leer(entrada);
+            TramaBinaria primera = lecturas.get(0);
+            String tipoDispositivo = TramaBinaria.nombreTipo(primera.tipo());
+            boolean deParcela = primera.tipo() == TramaBinaria.HUMEDAD;
+            if (deParcela && !hiloControlador.aceptarIdParcela(primera.id(), tipoDispositivo)) {
+                return;
+            }
+            serie = Historial.serie(tipoDispositivo, deParcela ? primera.id() : -1);
+            aplicar(lecturas);
+            if (deParcela) {
+                System.out.printf("---Conectado sensor humedad %d (binario)---\n", primera.id());
+                hiloControlador.setSensorHumedad(this, primera.id());
+            } else {
+                System.out.println("---Conectado sensor " + tipoDispositivo + " (binario)---");
+            }
+
+            while (true) {
+                aplicar(TramaBinaria.leer(entrada));
+            }
+        } catch (EOFException e) {
+            System.out.println("Sensor binario desconectado: " + cliente.getRemoteSocketAddress());
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error en la conexión binaria " + cliente.getRemoteSocketAddress() + ": " + e.getMessage());
+        } finally {
+            try {
+                cliente.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void aplicar(List<TramaBinaria> lecturas) {
+        TramaBinaria trama = null;
+        for (TramaBinaria lectura : lecturas) {
+            if (lectura.secuencia() > ultimaSecuencia) {
+                ultimaSecuencia = lectura.secuencia();
+                Historial.registrar(serie, lectura.timestamp(), lectura.valor());
+                trama = lectura;
+            }
+        }
+        if (trama == null) {
+            return; // Todas atrasadas
+        }
+
+        switch (trama.tipo()) {
+            case TramaBinaria.HUMEDAD:
+                if (trama.valor() != humedad) { // Siempre distinta de NaN: la primera lectura avisa
+                    if (Latencias.activa()) {
+                        marca = Marca.recibida(trama.timestamp());
+                    }
+                    humedad = trama.valor();
+                    notificador.run();
+                }
+                break;
+            case TramaBinaria.TEMPERATURA:
+                clima.actualizarTemperatura(trama.valor());
+                break;
+            case TramaBinaria.LLUVIA:
+                clima.actualizarLluvia(trama.valor() == 1.0);
+                break;
+            case TramaBinaria.ILUMINACION:
+                clima.actualizarRadiacion(trama.valor());
+                break;
+            default:
+                throw new IllegalArgumentException("Tipo de dispositivo desconocido: " + trama.tipo());
+        }
+    }
+}
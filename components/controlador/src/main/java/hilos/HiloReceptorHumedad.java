@@ -1,8 +1,12 @@
 package hilos;
 
+import historial.Historial;
+import latencia.Latencias;
+import latencia.Marca;
+import protocolo.LineaTexto;
+
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.Socket;
 
 /**
@@ -16,43 +20,66 @@ import java.net.Socket;
  *
  * @author Brunardo19
  */
-public class HiloReceptorHumedad extends Thread {
+public class HiloReceptorHumedad implements Runnable, IReceptorHumedad {
     private Socket clienteHumedad;
+    private final String serie;
     private final BufferedReader br;
-    private double humedad;
+    private volatile double humedad = Double.NaN; // Sin lecturas todavía
+    private volatile Marca marca;
+    private volatile Runnable notificador = () -> { };
 
 
+    @Override
     public double getHumedad() {
         return humedad;
     }
 
+    @Override
+    public Marca getMarca() {
+        return marca;
+    }
+
+    @Override
+    public void setNotificador(Runnable notificador) {
+        this.notificador = notificador;
+    }
+
     /**
      * Construye un nuevo hilo receptor para un sensor de humedad.
      *
      * @param clienteHumedad el {@link Socket} de la conexión con el sensor.
+     * @param br lector de texto sobre la conexión, ya posicionado tras el saludo.
+     * @param id id de la parcela del sensor.
      */
-    public HiloReceptorHumedad(Socket clienteHumedad) {
+    public HiloReceptorHumedad(Socket clienteHumedad, BufferedReader br, int id) {
         this.clienteHumedad = clienteHumedad;
-        try {
-            this.br = new BufferedReader(new InputStreamReader(clienteHumedad.getInputStream()));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        this.br = br;
+        this.serie = Historial.serie("humedad", id);
     }
 
     /**
      * Bucle principal del hilo.
      *
-     * <p>Lee continuamente datos del socket, los convierte a {@code double}
-     * y actualiza la variable de instancia {@code humedad}. Realiza una pausa
+     * <p>Lee continuamente datos del socket, los convierte a {@code double},
+     * los entrega al historial y con el más reciente actualiza la variable de instancia {@code humedad}, avisando a la parcela
+     * si el valor cambió. Realiza una pausa
      * de 500 milisegundos entre lecturas.</p>
      */
     public void run() {
         while (true) {
             try {
                 String entrada = br.readLine();
-                humedad = Double.parseDouble(entrada);
-                sleep(500);
+                LineaTexto.Lote lote = LineaTexto.leer(entrada, System.currentTimeMillis());
+                Historial.registrar(serie, lote.instantes(), lote.valores());
+                double nuevaHumedad = lote.ultimo(); // Sólo la más reciente decide
+                if (nuevaHumedad != humedad) { // Siempre distinta de NaN: la primera lectura avisa
+                    if (Latencias.activa()) {
+                        marca = Marca.recibida(LineaTexto.emision(entrada));
+                    }
+                    humedad = nuevaHumedad;
+                    notificador.run();
+                }
+                Thread.sleep(500);
             } catch (IOException | InterruptedException e) {
                 throw new RuntimeException(e);
             }
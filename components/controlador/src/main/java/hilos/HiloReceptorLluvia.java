@@ -1,11 +1,13 @@
 package hilos;
 
+import historial.Historial;
+import protocolo.LineaTexto;
+import util.ClimaGlobal;
+
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import static java.lang.Thread.sleep;
 import java.net.Socket;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Hilo encargado de recibir y procesar continuamente los datos de un sensor de lluvia.
@@ -13,47 +15,46 @@ import java.util.concurrent.ConcurrentHashMap;
  * <p>Este hilo se dedica a leer los datos enviados por un sensor de lluvia, que
  * consisten en valores de {@code 1.0} (lloviendo) o {@code 0.0} (no lloviendo).
  * En un bucle infinito, lee una línea de texto, la convierte a un valor
- * booleano y actualiza el estado global del sistema en el
- * {@link ConcurrentHashMap} compartido bajo la clave {@code "lluvia"}.</p>
+ * booleano y lo publica en el
+ * {@link ClimaGlobal} compartido.</p>
  */
-public class HiloReceptorLluvia extends Thread {
+public class HiloReceptorLluvia implements Runnable {
 
     private Socket clientelluvia;
     private final BufferedReader br;
     private boolean lluvia;
-    private ConcurrentHashMap<String, Object> estado;
+    private final ClimaGlobal clima;
 
     /**
      * Construye un nuevo hilo receptor para un sensor de lluvia.
      *
      * @param clientelluvia el {@link Socket} de la conexión con el sensor.
-     * @param estado el mapa {@link ConcurrentHashMap} que contiene el estado global del sistema.
-     * @throws RuntimeException si ocurre un error al inicializar el lector de entrada del socket.
+     * @param br lector de texto sobre la conexión, ya posicionado tras el saludo.
+     * @param clima el estado ambiental global del sistema.
      */
-    public HiloReceptorLluvia(Socket clientelluvia, ConcurrentHashMap<String, Object> estado) {
+    public HiloReceptorLluvia(Socket clientelluvia, BufferedReader br, ClimaGlobal clima) {
         this.clientelluvia = clientelluvia;
-        this.estado = estado;
-        try {
-            this.br = new BufferedReader(new InputStreamReader(clientelluvia.getInputStream()));
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        this.clima = clima;
+        this.br = br;
     }
 
     /**
      * Bucle principal del hilo.
      *
      * <p>Lee continuamente datos del socket, los interpreta como {@code 1.0} para
-     * {@code true} y cualquier otro valor para {@code false}, y actualiza el
-     * mapa de estado compartido bajo la clave {@code "lluvia"}. Realiza una
+     * {@code true} y cualquier otro valor para {@code false}, y los entrega al
+     * historial. Si la línea trae un lote, sólo la lectura más reciente se publica
+     * en el estado ambiental global. Realiza una
      * pausa de 1 segundo entre lecturas.</p>
      */
     public void run() {
         while (true) {
             try {
                 String entrada = br.readLine();
-                lluvia = Double.parseDouble(entrada) == 1.0;
-                this.estado.put("lluvia", lluvia);
+                LineaTexto.Lote lote = LineaTexto.leer(entrada, System.currentTimeMillis());
+                Historial.registrar("lluvia", lote.instantes(), lote.valores());
+                lluvia = lote.ultimo() == 1.0; // Sólo la más reciente decide
+                clima.actualizarLluvia(lluvia);
                 Thread.sleep(1000);
             } catch (IOException | InterruptedException e) {
                 throw new RuntimeException(e);
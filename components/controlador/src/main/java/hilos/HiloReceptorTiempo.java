@@ -1,24 +1,29 @@
 package hilos;
 
+import protocolo.EventoTemporizador;
+
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.PrintWriter;
 import java.net.Socket;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Hilo encargado de gestionar la comunicación con un temporizador.
  *
- * <p>Este hilo recibe información desde un cliente de temporizador y
- * actualiza el estadoTemporizador global en el {@link ConcurrentHashMap}. Cada
+ * <p>Este hilo recibe los eventos de un cliente de temporizador (inicio,
+ * vencimiento y cancelación de la cuenta) y guarda el último estado
+ * informado para su parcela, a la que despierta con cada evento que no
+ * quedó viejo ({@link CuentaRegresiva}). Cada
  * temporizador se identifica por un {@code id} y controla un contador
  * de segundos que puede reiniciarse o detenerse según la entrada.</p>
  */
-public class HiloReceptorTiempo extends Thread {
+public class HiloReceptorTiempo implements Runnable, IReceptorTiempo {
 
     private Socket clienteTiempo;
     private final BufferedReader br;
-    private int estadoTemporizador = 1; //Iniciar en parado por si el receptor no lo lee
+    private final PrintWriter pw;
+    private final CuentaRegresiva cuenta = new CuentaRegresiva();
+    private volatile Runnable notificador = () -> { };
 
     /**
      * Devuelve el valor actual del temporizador en segundos.
@@ -26,39 +31,49 @@ public class HiloReceptorTiempo extends Thread {
      * @return segundos restantes o acumulados
      */
     public int getTotalSegundos() {
-        return estadoTemporizador;
-    }
-
-    /**
-     * Establece manualmente el valor del temporizador.
-     *
-     * @param estadoTemporizador nuevo valor en segundos
-     */
-    public void setTotalSegundos(int estadoTemporizador) {
-        this.estadoTemporizador = estadoTemporizador;
+        return cuenta.segundosRestantes();
     }
 
     public Socket getClienteTiempo() {
         return clienteTiempo;
     }
 
+    @Override
     public int getEstadoTemporizador() {
-        return estadoTemporizador;
+        return cuenta.estado();
     }
 
-    public void setEstadoTemporizador(int estadoTemporizador) {
-        this.estadoTemporizador = estadoTemporizador;
+    @Override
+    public int getSegundosRestantes() {
+        return cuenta.segundosRestantes();
+    }
+
+    @Override
+    public void setNotificador(Runnable notificador) {
+        this.notificador = notificador;
+    }
+
+    /**
+     * Envía un comando al temporizador por el mismo socket.
+     *
+     * @param segundos duración de la cuenta regresiva; {@code 0} la detiene
+     */
+    @Override
+    public void enviarComando(int segundos) {
+        pw.println(EventoTemporizador.comando(segundos, cuenta.comandoEnviado(segundos)));
     }
 
     /**
      * Constructor de la clase.
      *
      * @param clienteTemporizador socket del cliente que envía los datos del temporizador
+     * @param br                  lector de texto sobre la conexión, ya posicionado tras el saludo
      */
-    public HiloReceptorTiempo(Socket clienteTemporizador) {
+    public HiloReceptorTiempo(Socket clienteTemporizador, BufferedReader br) {
         this.clienteTiempo = clienteTemporizador;
+        this.br = br;
         try {
-            this.br = new BufferedReader(new InputStreamReader(clienteTemporizador.getInputStream()));
+            this.pw = new PrintWriter(clienteTemporizador.getOutputStream(), true);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -67,15 +82,23 @@ public class HiloReceptorTiempo extends Thread {
     /**
      * Bucle principal del hilo.
      *
-     * <p>Verifica periódicamente el estadoTemporizador del temporizador asociado al {@code id}./p>
+     * <p>Espera los eventos del temporizador asociado al {@code id} y despierta
+     * a la parcela con cada uno.</p>
      */
     @Override
     public void run() {
         while (true) {
             try {
-                int lectura = Integer.parseInt(br.readLine());
-                this.estadoTemporizador = lectura;
-                //System.out.println(estadoTemporizador);
+                String linea = br.readLine();
+                if (linea == null) {
+                    System.out.println("El temporizador cerró la conexión.");
+                    return;
+                }
+                if (cuenta.aplicar(EventoTemporizador.leer(linea))) {
+                    notificador.run();
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.println("Evento de temporizador no válido: " + e.getMessage());
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
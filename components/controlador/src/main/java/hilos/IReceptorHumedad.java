@@ -0,0 +1,35 @@
+package hilos;
+
+import latencia.Marca;
+
+/**
+ * Fuente de lecturas de humedad asociada a una parcela.
+ *
+ * <p>Abstrae el origen del dato para que {@link Parcela} funcione igual
+ * cuando el sensor es atendido por un {@link HiloReceptorHumedad} (un hilo por
+ * socket) o por el servidor de ingesta no bloqueante {@link net.ServerNIO}.</p>
+ */
+public interface IReceptorHumedad {
+
+    /**
+     * Devuelve la última humedad recibida del sensor.
+     *
+     * @return humedad en porcentaje, o {@link Double#NaN} si todavía no llegó ninguna lectura
+     */
+    double getHumedad();
+
+    /**
+     * Devuelve los instantes de la lectura que fijó la humedad actual.
+     *
+     * @return la marca de la lectura, o {@code null} si la medición de latencias está
+     * desactivada o todavía no llegó ninguna lectura.
+     */
+    Marca getMarca();
+
+    /**
+     * Registra la acción a ejecutar cada vez que llega una humedad distinta de la anterior.
+     *
+     * @param notificador acción a ejecutar; normalmente marca la parcela en el planificador.
+     */
+    void setNotificador(Runnable notificador);
+}
@@ -0,0 +1,41 @@
+package hilos;
+
+/**
+ * Canal de comunicación con el temporizador de una parcela.
+ *
+ * <p>Permite consultar el último estado informado por el temporizador
+ * ({@code 0} = ocupado, {@code 1} = listo) y enviarle comandos, sin que
+ * {@link Parcela} dependa de cómo se atiende la conexión. El temporizador
+ * avisa cada inicio, vencimiento y cancelación en cuanto ocurre
+ * ({@link protocolo.EventoTemporizador}), y cada aviso ejecuta el notificador.</p>
+ */
+public interface IReceptorTiempo {
+
+    /**
+     * Devuelve el último estado informado por el temporizador.
+     *
+     * @return {@code 0} si está contando, {@code 1} si está listo
+     */
+    int getEstadoTemporizador();
+
+    /**
+     * Devuelve los segundos que le faltan a la cuenta en curso, según el último evento.
+     *
+     * @return segundos restantes; {@code 0} si no está contando
+     */
+    int getSegundosRestantes();
+
+    /**
+     * Registra la acción a ejecutar cada vez que el temporizador informa un evento.
+     *
+     * @param notificador acción a ejecutar; normalmente marca la parcela en el planificador.
+     */
+    void setNotificador(Runnable notificador);
+
+    /**
+     * Envía un comando al temporizador.
+     *
+     * @param segundos duración de la cuenta regresiva; {@code 0} la detiene
+     */
+    void enviarComando(int segundos);
+}
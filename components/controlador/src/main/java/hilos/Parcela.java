@@ -0,0 +1,276 @@
+package hilos;
+
+import bd.EscritorBd;
+import bd.RegistroParcela;
+import historial.Historial;
+import latencia.Latencias;
+import latencia.Latencias.Etapa;
+import latencia.Marca;
+import util.ClimaGlobal;
+import util.EstadoClima;
+import util.INR;
+import valvulas.Valvula;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lógica de control de una parcela: humedad, INR, electroválvula y temporizador.
+ *
+ * <p>La parcela no tiene un hilo propio que consulte su estado periódicamente.
+ * {@link PlanificadorParcelas} invoca {@link #evaluar()} cada vez que cambia una
+ * de sus entradas: la humedad de su sensor, el estado de su temporizador o una
+ * variable global (temperatura, radiación o lluvia).</p>
+ */
+public class Parcela {
+
+    private volatile IReceptorHumedad hiloHumedad;
+    private volatile IReceptorTiempo hiloTiempo;
+
+    private final Valvula electrovalvula;
+
+    private int id;
+    private final String serieValvula;
+    private boolean lluvia;
+    private double radiacion;
+    private double temperatura;
+    volatile int estadoTemporizador;
+    volatile double humedad;
+    volatile double inr;
+    private final ClimaGlobal clima;
+    private final RegistroParcelas registro;
+    private final PlanificadorParcelas planificador;
+    private final EscritorBd escritorBd;
+    private volatile boolean estaRegando = false;
+    private volatile boolean necesitaAgua = false;
+
+    /**
+     * Marca de la última lectura de humedad evaluada; sólo la usa {@link #evaluar()}.
+     */
+    private Marca ultimaMarca;
+
+    /**
+     * Si ya se avisó que falta el sensor de humedad o el temporizador; sólo la usa
+     * {@link #evaluar()}, para avisarlo una vez y no en cada evaluación.
+     */
+    private boolean esperandoDispositivos;
+
+    /**
+     * Estado de la parcela dentro de {@link PlanificadorParcelas}.
+     */
+    final AtomicInteger estadoPlanificacion = new AtomicInteger(PlanificadorParcelas.INACTIVA);
+
+    /**
+     * Crea una parcela. La conexión con su electroválvula la establece
+     * {@link valvulas.RegistroValvulas} en segundo plano; al conectarse, la parcela
+     * se vuelve a evaluar.
+     *
+     * @param id             identificador de la parcela.
+     * @param electrovalvula electroválvula de la parcela.
+     * @param clima          estado ambiental global.
+     * @param registro     registro al que se informan los cambios de demanda de agua.
+     * @param planificador planificador que evalúa la parcela cuando cambian sus entradas.
+     * @param escritorBd   escritor al que se envían los cambios de la válvula.
+     */
+    public Parcela(int id, Valvula electrovalvula, ClimaGlobal clima, RegistroParcelas registro, PlanificadorParcelas planificador,
+                       EscritorBd escritorBd) {
+        this.id = id;
+        this.electrovalvula = electrovalvula;
+        this.serieValvula = Historial.serie("valvula", id);
+        this.registro = registro;
+        this.planificador = planificador;
+        this.escritorBd = escritorBd;
+        this.humedad = 0;
+        this.clima = clima;
+        EstadoClima actual = clima.actual();
+        this.radiacion = actual.radiacion();
+        this.lluvia = actual.lluvia();
+        this.temperatura = actual.temperatura();
+        this.inr = 0;
+        electrovalvula.setAlConectar(() -> planificador.marcar(this));
+    }
+
+    public void setHiloHumedad(IReceptorHumedad hiloHumedad) {
+        this.hiloHumedad = hiloHumedad;
+        hiloHumedad.setNotificador(() -> planificador.marcar(this));
+        planificador.marcar(this);
+    }
+
+    public void setHiloTiempo(IReceptorTiempo hiloTiempo) {
+        this.hiloTiempo = hiloTiempo;
+        hiloTiempo.setNotificador(() -> planificador.marcar(this));
+        planificador.marcar(this);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public double getHumedad() {
+        return humedad;
+    }
+
+    public double getInr() {
+        return inr;
+    }
+
+    public Valvula getElectrovalvula() {
+        return electrovalvula;
+    }
+
+    public int getEstadoTemporizador() {
+        return estadoTemporizador;
+    }
+
+    /**
+     * @return segundos que le faltan a la cuenta del temporizador; 0 si no está contando.
+     */
+    public int getSegundosRestantes() {
+        IReceptorTiempo hiloTiempo = this.hiloTiempo;
+        return (hiloTiempo != null) ? hiloTiempo.getSegundosRestantes() : 0;
+    }
+
+    public boolean necesitaAgua() {
+        return this.necesitaAgua;
+    }
+
+    public boolean estaRegando() {
+        return this.estaRegando;
+    }
+
+    /**
+     * Arma la fila de la base de datos con el estado actual de la parcela.
+     *
+     * @return el estado de la parcela en este instante.
+     */
+    public RegistroParcela aRegistro() {
+        return new RegistroParcela(System.currentTimeMillis(), id, humedad, inr, estaRegando, estadoTemporizador);
+    }
+
+    private void setNecesitaAgua(boolean necesitaAgua) {
+        if (this.necesitaAgua != necesitaAgua) {
+            this.necesitaAgua = necesitaAgua;
+            registro.cambioDemanda(necesitaAgua);
+        }
+    }
+
+
+    /**
+     * Reevalúa la parcela con los valores actuales de sus entradas y, si
+     * corresponde, abre o cierra la electroválvula y arranca o detiene el
+     * temporizador. La invoca {@link PlanificadorParcelas}.
+     */
+    void evaluar() {
+        long inicioNanos = System.nanoTime();
+        try {
+            if (!electrovalvula.disponible()) {
+                return; // Se vuelve a evaluar cuando se conecte
+            }
+
+            IReceptorHumedad hiloHumedad = this.hiloHumedad;
+            IReceptorTiempo hiloTiempo = this.hiloTiempo;
+            if (hiloHumedad == null || hiloTiempo == null) {
+                if (!esperandoDispositivos) {
+                    esperandoDispositivos = true;
+                    System.out.println("Parcela " + id + " esperando sensor de humedad o temporizador.");
+                }
+                return;
+            }
+            esperandoDispositivos = false;
+            double lectura = hiloHumedad.getHumedad();
+            if (Double.isNaN(lectura)) {
+                return; // Se vuelve a evaluar cuando llegue la primera lectura
+            }
+
+            // Una sola lectura: las tres variables corresponden al mismo instante
+            EstadoClima actual = this.clima.actual();
+            this.radiacion = actual.radiacion();
+            this.lluvia = actual.lluvia();
+            this.temperatura = actual.temperatura();
+            this.estadoTemporizador = hiloTiempo.getEstadoTemporizador();
+            this.humedad = lectura;
+            Marca marca = marcaNueva(hiloHumedad, inicioNanos);
+
+            boolean necesitaRegarAhora;
+            if (lluvia) {
+                this.inr = 0;
+                necesitaRegarAhora = false;
+            } else {
+                this.inr = INR.calcularInr(humedad, radiacion, temperatura);
+                necesitaRegarAhora = inr > 0.7;
+            }
+
+            if (estaRegando) {
+                boolean temporizadorTermino = (estadoTemporizador == 1);
+                if (lluvia || temporizadorTermino) {
+                    //System.out.println("Parcela " + this.id + " - DETENIENDO RIEGO.");
+                    estaRegando = false;
+                    setNecesitaAgua(false);
+                    electrovalvula.cerrar();
+                    Historial.registrar(serieValvula, System.currentTimeMillis(), 0);
+                    escritorBd.encolar(aRegistro());
+                    if (!temporizadorTermino) {
+                        hiloTiempo.enviarComando(0);
+                    }
+                }
+            } else {
+                boolean temporizadorListo = (estadoTemporizador == 1);
+                if (necesitaRegarAhora && temporizadorListo) {
+                    //System.out.println("Parcela " + this.id + " - INICIANDO RIEGO (INR: " + String.format("%.2f", inr) + ")");
+                    estaRegando = true;
+                    setNecesitaAgua(true);
+                    long ordenNanos = System.nanoTime();
+                    electrovalvula.abrir();
+                    registrarApertura(marca, inicioNanos, ordenNanos);
+                    Historial.registrar(serieValvula, System.currentTimeMillis(), 1);
+                    escritorBd.encolar(aRegistro());
+                    int duracion = 300;
+                    if (inr > 0.9) duracion = 600;
+                    else if (inr > 0.8) duracion = 420;
+                    hiloTiempo.enviarComando(duracion);
+                }
+            }
+        } catch (RemoteException e) {
+            // La válvula ya se marcó caída: el registro la reconecta y entonces se vuelve a evaluar
+            System.err.println("Error RMI en Parcela " + id + ": " + e.getMessage() + ". La conexión se restablecerá.");
+            // Si se estaba regando, debemos asumir que se detuvo.
+            this.estaRegando = false;
+            setNecesitaAgua(false);
+        }
+    }
+
+    /**
+     * Devuelve la marca de la lectura de humedad si esta es la primera evaluación que la
+     * ve, y registra cuánto tardó en llegar hasta aquí.
+     *
+     * @return la marca, o {@code null} si la humedad no cambió desde la evaluación
+     * anterior o la medición está desactivada.
+     */
+    private Marca marcaNueva(IReceptorHumedad hiloHumedad, long inicioNanos) {
+        Marca marca = hiloHumedad.getMarca();
+        if (marca == null || marca == ultimaMarca) {
+            return null;
+        }
+        ultimaMarca = marca;
+        if (marca.conEmision()) {
+            Latencias.registrarMillis(Etapa.SENSOR_RECEPCION, marca.recibidaMs() - marca.emitidaMs());
+        }
+        Latencias.registrarNanos(Etapa.RECEPCION_EVALUACION, inicioNanos - marca.recibidaNanos());
+        return marca;
+    }
+
+    /**
+     * Registra las etapas de una apertura confirmada. Las de la lectura, sólo si fue la
+     * lectura nueva la que la decidió.
+     */
+    private void registrarApertura(Marca marca, long inicioNanos, long ordenNanos) {
+        if (!Latencias.activa()) {
+            return;
+        }
+        Latencias.registrarNanos(Etapa.EVALUACION_ORDEN, ordenNanos - inicioNanos);
+        Latencias.registrarNanos(Etapa.ORDEN_CONFIRMACION, System.nanoTime() - ordenNanos);
+        if (marca != null && marca.conEmision()) {
+            Latencias.registrarMillis(Etapa.SENSOR_VALVULA, System.currentTimeMillis() - marca.emitidaMs());
+        }
+    }
+}
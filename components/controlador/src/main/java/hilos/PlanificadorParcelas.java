@@ -0,0 +1,112 @@
+package hilos;
+
+import util.Ejecutor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Planificador que reevalúa las parcelas sólo cuando cambia alguna de sus entradas.
+ *
+ * <p>En lugar de que cada {@link Parcela} se despierte periódicamente, los
+ * receptores marcan como "sucia" a la parcela afectada cuando llega una humedad
+ * o un estado de temporizador nuevo, y a todas las parcelas cuando cambia una
+ * variable global. Un grupo pequeño de trabajadores toma las parcelas sucias de
+ * una cola y ejecuta {@link Parcela#evaluar()}.</p>
+ *
+ * <p>Cada parcela aparece a lo sumo una vez en la cola y nunca se evalúa en dos
+ * trabajadores a la vez: si se marca mientras se evalúa, se vuelve a encolar al
+ * terminar. La cantidad de trabajadores se configura con {@code PLANIFICADOR_HILOS}.</p>
+ */
+public class PlanificadorParcelas {
+
+    /** La parcela no tiene cambios pendientes. */
+    static final int INACTIVA = 0;
+    /** La parcela está en la cola esperando un trabajador. */
+    static final int ENCOLADA = 1;
+    /** Un trabajador está evaluando la parcela. */
+    static final int EVALUANDO = 2;
+    /** Llegó un cambio mientras se evaluaba; hay que volver a evaluarla. */
+    static final int EVALUANDO_SUCIA = 3;
+
+    private final BlockingQueue<Parcela> sucias = new LinkedBlockingQueue<>();
+
+    /**
+     * Crea el planificador e inicia sus trabajadores.
+     *
+     * @param trabajadores cantidad de hilos que evalúan parcelas.
+     */
+    public PlanificadorParcelas(int trabajadores) {
+        for (int i = 0; i < trabajadores; i++) {
+            Ejecutor.ejecutar(this::atender);
+        }
+    }
+
+    /**
+     * Devuelve la cantidad de trabajadores configurada por entorno (por defecto 2).
+     *
+     * @return cantidad de trabajadores.
+     */
+    public static int trabajadoresPorDefecto() {
+        String env = System.getenv("PLANIFICADOR_HILOS");
+        return (env != null) ? Math.max(1, Integer.parseInt(env)) : 2;
+    }
+
+    /**
+     * Marca una parcela para ser reevaluada. Puede invocarse desde cualquier hilo.
+     *
+     * @param parcela parcela cuyas entradas cambiaron.
+     */
+    public void marcar(Parcela parcela) {
+        AtomicInteger estado = parcela.estadoPlanificacion;
+        while (true) {
+            int actual = estado.get();
+            if (actual == INACTIVA) {
+                if (estado.compareAndSet(INACTIVA, ENCOLADA)) {
+                    sucias.add(parcela);
+                    return;
+                }
+            } else if (actual == EVALUANDO) {
+                if (estado.compareAndSet(EVALUANDO, EVALUANDO_SUCIA)) {
+                    return;
+                }
+            } else {
+                return; // Ya está pendiente
+            }
+        }
+    }
+
+    /**
+     * Cantidad de parcelas esperando ser evaluadas.
+     *
+     * @return tamaño de la cola de parcelas sucias.
+     */
+    public int pendientes() {
+        return sucias.size();
+    }
+
+    private void atender() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Parcela parcela;
+            try {
+                parcela = sucias.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            parcela.estadoPlanificacion.set(EVALUANDO);
+            try {
+                parcela.evaluar();
+            } catch (RuntimeException e) {
+                System.err.println("Error al evaluar la parcela " + parcela.getId() + ": " + e.getMessage());
+            }
+
+            if (!parcela.estadoPlanificacion.compareAndSet(EVALUANDO, INACTIVA)) {
+                parcela.estadoPlanificacion.set(ENCOLADA);
+                sucias.add(parcela);
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package hilos;
+
+import bd.EscritorBd;
+import util.ClimaGlobal;
+import valvulas.RegistroValvulas;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Registro de las parcelas del invernadero, indexado por id.
+ *
+ * <p>Las parcelas se crean bajo demanda la primera vez que un sensor de humedad
+ * o un temporizador anuncia su id, por lo que no hay un número fijo de parcelas.
+ * Se guardan en un arreglo que crece al duplicarse: la consulta por id no toma
+ * ningún lock y sólo la creación de una parcela nueva se sincroniza. Como el id
+ * lo envía el dispositivo, sólo se aceptan ids entre 0 y {@code PARCELAS_MAX - 1},
+ * lo que acota el tamaño del arreglo.</p>
+ *
+ * <p>Además lleva la cuenta de cuántas parcelas necesitan agua, de modo que
+ * {@link #hayDemanda()} responde en tiempo constante sin recorrer las parcelas.</p>
+ */
+public class RegistroParcelas {
+
+    private static final int CAPACIDAD_INICIAL = 8;
+
+    /**
+     * Cantidad máxima de parcelas por defecto (ids 0 a 99999).
+     */
+    private static final int MAXIMO_POR_DEFECTO = 100000;
+
+    private final ClimaGlobal clima;
+    private final PlanificadorParcelas planificador;
+    private final EscritorBd escritorBd;
+    private final RegistroValvulas valvulas;
+    private final ServicioTemporizadores temporizadores;
+    private final int maximo;
+
+    private volatile AtomicReferenceArray<Parcela> parcelas = new AtomicReferenceArray<>(CAPACIDAD_INICIAL);
+
+    /**
+     * Mayor id registrado más uno; delimita el recorrido de {@link #paraCada}.
+     */
+    private volatile int limite = 0;
+
+    private final AtomicInteger parcelasConDemanda = new AtomicInteger();
+
+    /**
+     * Acción a ejecutar cuando cambia la demanda de alguna parcela.
+     */
+    private volatile Runnable alCambiarDemanda;
+
+    /**
+     * @param clima        estado ambiental global que se entrega a cada parcela.
+     * @param planificador planificador que evalúa las parcelas registradas.
+     * @param escritorBd   escritor de la base de datos que se entrega a cada parcela.
+     * @param valvulas     registro del que se toma la electroválvula de cada parcela.
+     * @param temporizadores origen de los temporizadores; en modo embebido cada parcela
+     *                       recibe el suyo al crearse.
+     * @param maximo       cantidad máxima de parcelas; los ids válidos van de 0 a {@code maximo - 1}.
+     */
+    public RegistroParcelas(ClimaGlobal clima, PlanificadorParcelas planificador, EscritorBd escritorBd,
+                            RegistroValvulas valvulas, ServicioTemporizadores temporizadores, int maximo) {
+        this.clima = clima;
+        this.planificador = planificador;
+        this.escritorBd = escritorBd;
+        this.valvulas = valvulas;
+        this.temporizadores = temporizadores;
+        this.maximo = maximo;
+    }
+
+    /**
+     * Devuelve la cantidad máxima de parcelas configurada por entorno (por defecto 100000).
+     *
+     * @return cantidad máxima de parcelas.
+     */
+    public static int maximoPorDefecto() {
+        String env = System.getenv("PARCELAS_MAX");
+        return (env != null) ? Math.max(1, Integer.parseInt(env)) : MAXIMO_POR_DEFECTO;
+    }
+
+    /**
+     * Indica si un id puede ser el de una parcela.
+     *
+     * @param id identificador anunciado por un dispositivo.
+     * @return {@code null} si es válido, o el motivo por el que se rechaza.
+     */
+    public String motivoRechazo(int id) {
+        if (id < 0 || id >= maximo) {
+            return "fuera de rango (0 a " + (maximo - 1) + ")";
+        }
+        if (valvulas.esMaestra(id)) {
+            return "su electroválvula es la Válvula Maestra";
+        }
+        return null;
+    }
+
+    /**
+     * @param id identificador anunciado por un dispositivo.
+     * @return {@code true} si puede ser el de una parcela ({@link #motivoRechazo}).
+     */
+    public boolean idValido(int id) {
+        return motivoRechazo(id) == null;
+    }
+
+    /**
+     * Devuelve la parcela con el id indicado, o {@code null} si todavía no existe.
+     *
+     * @param id identificador de la parcela.
+     * @return la parcela o {@code null}.
+     */
+    public Parcela obtener(int id) {
+        AtomicReferenceArray<Parcela> actual = parcelas;
+        return (id >= 0 && id < actual.length()) ? actual.get(id) : null;
+    }
+
+    /**
+     * Devuelve la parcela con el id indicado, creándola si no existe.
+     *
+     * @param id identificador de la parcela, entre 0 y {@code PARCELAS_MAX - 1}.
+     * @return la parcela correspondiente.
+     * @throws IllegalArgumentException si el id no es válido ({@link #motivoRechazo}).
+     */
+    public Parcela obtenerOCrear(int id) {
+        String motivo = motivoRechazo(id);
+        if (motivo != null) {
+            throw new IllegalArgumentException("Id de parcela " + id + " rechazado: " + motivo);
+        }
+        Parcela parcela = obtener(id);
+        return (parcela != null) ? parcela : crear(id);
+    }
+
+    private synchronized Parcela crear(int id) {
+        AtomicReferenceArray<Parcela> actual = parcelas;
+        if (id < actual.length() && actual.get(id) != null) {
+            return actual.get(id);
+        }
+        if (id >= actual.length()) {
+            // id < maximo, así que la capacidad queda acotada y no desborda
+            int capacidad = actual.length();
+            while (capacidad <= id) {
+                capacidad = (int) Math.min((long) capacidad * 2, maximo);
+            }
+            AtomicReferenceArray<Parcela> nuevo = new AtomicReferenceArray<>(capacidad);
+            for (int i = 0; i < limite; i++) {
+                nuevo.set(i, actual.get(i));
+            }
+            actual = nuevo;
+            parcelas = nuevo;
+        }
+
+        Parcela parcela = new Parcela(id, valvulas.deParcela(id), clima, this, planificador, escritorBd);
+        if (temporizadores.esEmbebido()) {
+            parcela.setHiloTiempo(temporizadores.crear());
+        }
+        actual.set(id, parcela);
+        limite = Math.max(limite, id + 1);
+        System.out.println("Parcela " + id + " registrada.");
+        return parcela;
+    }
+
+    /**
+     * Recorre las parcelas existentes en orden de id.
+     *
+     * @param accion acción a aplicar sobre cada parcela.
+     */
+    public void paraCada(Consumer<Parcela> accion) {
+        AtomicReferenceArray<Parcela> actual = parcelas;
+        int hasta = Math.min(limite, actual.length());
+        for (int i = 0; i < hasta; i++) {
+            Parcela parcela = actual.get(i);
+            if (parcela != null) {
+                accion.accept(parcela);
+            }
+        }
+    }
+
+    /**
+     * Marca todas las parcelas para ser reevaluadas, tras un cambio en una variable global.
+     */
+    public void marcarTodas() {
+        paraCada(planificador::marcar);
+    }
+
+    /**
+     * @return parcelas marcadas que todavía esperan un trabajador del planificador.
+     */
+    public int evaluacionesPendientes() {
+        return planificador.pendientes();
+    }
+
+    /**
+     * Registra la acción a ejecutar cada vez que una parcela empieza o deja de necesitar agua.
+     *
+     * @param alCambiarDemanda acción a ejecutar; no debe bloquear.
+     */
+    public void setAlCambiarDemanda(Runnable alCambiarDemanda) {
+        this.alCambiarDemanda = alCambiarDemanda;
+    }
+
+    /**
+     * Indica si al menos una parcela necesita agua.
+     *
+     * @return {@code true} si hay demanda de riego.
+     */
+    public boolean hayDemanda() {
+        return parcelasConDemanda.get() > 0;
+    }
+
+    /**
+     * Devuelve cuántas parcelas necesitan agua, también sin recorrerlas.
+     *
+     * @return cantidad de parcelas con demanda de riego.
+     */
+    public int parcelasConDemanda() {
+        return Math.max(0, parcelasConDemanda.get());
+    }
+
+    /**
+     * Lo invoca cada parcela cuando cambia su necesidad de agua.
+     *
+     * @param necesitaAgua nuevo valor de la necesidad de agua de la parcela.
+     */
+    void cambioDemanda(boolean necesitaAgua) {
+        if (necesitaAgua) {
+            parcelasConDemanda.incrementAndGet();
+        } else {
+            parcelasConDemanda.decrementAndGet();
+        }
+        Runnable accion = alCambiarDemanda;
+        if (accion != null) {
+            accion.run();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package hilos;
+
+import util.RuedaTemporizadores;
+
+/**
+ * Origen de los temporizadores de las parcelas.
+ *
+ * <p>En modo {@code remoto} (por defecto) cada parcela usa el proceso temporizador que
+ * se conecta por TCP y anuncia su id, como siempre. En modo {@code embebido} el
+ * controlador cuenta el tiempo de todas las parcelas en una sola
+ * {@link RuedaTemporizadores}: cada parcela recibe su temporizador al crearse, sin
+ * procesos ni sockets, y arrancar o detener una cuenta no cruza la red. Los
+ * temporizadores remotos que se conecten en modo embebido se ignoran.</p>
+ *
+ * <p>El modo se toma de {@code TEMPORIZADOR_MODO} y la resolución de la rueda de
+ * {@code TEMPORIZADOR_TICK_MS} (por defecto 10).</p>
+ */
+public class ServicioTemporizadores {
+
+    public enum Modo {
+        REMOTO, EMBEBIDO;
+
+        /**
+         * Interpreta el nombre de un modo, sin distinguir mayúsculas.
+         *
+         * @param nombre {@code "remoto"} o {@code "embebido"}.
+         * @return el modo correspondiente.
+         * @throws IllegalArgumentException si el nombre no corresponde a ningún modo.
+         */
+        public static Modo desde(String nombre) {
+            return Modo.valueOf(nombre.trim().toUpperCase());
+        }
+    }
+
+    private final Modo modo;
+
+    /**
+     * Rueda compartida por los temporizadores embebidos; {@code null} en modo remoto.
+     */
+    private final RuedaTemporizadores rueda;
+
+    /**
+     * @param modo   origen de los temporizadores.
+     * @param tickMs resolución de la rueda en modo embebido.
+     */
+    public ServicioTemporizadores(Modo modo, long tickMs) {
+        this.modo = modo;
+        this.rueda = (modo == Modo.EMBEBIDO) ? new RuedaTemporizadores(tickMs, "temporizadores") : null;
+    }
+
+    /**
+     * Crea el servicio con el modo de {@code TEMPORIZADOR_MODO} y el tick de
+     * {@code TEMPORIZADOR_TICK_MS}.
+     *
+     * @return el servicio.
+     */
+    public static ServicioTemporizadores desdeEntorno() {
+        String modo = System.getenv("TEMPORIZADOR_MODO");
+        String tick = System.getenv("TEMPORIZADOR_TICK_MS");
+        return new ServicioTemporizadores((modo != null) ? Modo.desde(modo) : Modo.REMOTO,
+                (tick != null) ? Long.parseLong(tick) : 10);
+    }
+
+    public Modo getModo() {
+        return modo;
+    }
+
+    /**
+     * @return {@code true} si las parcelas usan temporizadores embebidos.
+     */
+    public boolean esEmbebido() {
+        return modo == Modo.EMBEBIDO;
+    }
+
+    /**
+     * Crea el temporizador embebido de una parcela.
+     *
+     * @return el temporizador.
+     * @throws IllegalStateException si el modo es remoto.
+     */
+    public IReceptorTiempo crear() {
+        if (rueda == null) {
+            throw new IllegalStateException("Los temporizadores son remotos");
+        }
+        return new TemporizadorEmbebido(rueda);
+    }
+
+    /**
+     * @return cuentas en curso en la rueda; 0 en modo remoto.
+     */
+    public int cuentasActivas() {
+        return (rueda != null) ? rueda.pendientes() : 0;
+    }
+}
@@ -0,0 +1,64 @@
+package hilos;
+
+import protocolo.EventoTemporizador;
+import util.RuedaTemporizadores;
+
+/**
+ * Temporizador de una parcela atendido dentro del controlador, sobre la rueda
+ * compartida de {@link ServicioTemporizadores}.
+ *
+ * <p>Se comporta como un temporizador remoto que responde al instante: el comando
+ * cambia el estado enseguida y el vencimiento llega como evento {@code VENCIDO},
+ * que ejecuta el notificador desde el hilo de la rueda.</p>
+ */
+class TemporizadorEmbebido implements IReceptorTiempo {
+
+    private final RuedaTemporizadores rueda;
+    private final CuentaRegresiva cuenta = new CuentaRegresiva();
+    private volatile Runnable notificador = () -> { };
+
+    // Con el lock del temporizador
+    private RuedaTemporizadores.Tarea tarea;
+
+    TemporizadorEmbebido(RuedaTemporizadores rueda) {
+        this.rueda = rueda;
+    }
+
+    @Override
+    public int getEstadoTemporizador() {
+        return cuenta.estado();
+    }
+
+    @Override
+    public int getSegundosRestantes() {
+        return cuenta.segundosRestantes();
+    }
+
+    @Override
+    public void setNotificador(Runnable notificador) {
+        this.notificador = notificador;
+    }
+
+    @Override
+    public synchronized void enviarComando(int segundos) {
+        if (tarea != null) {
+            tarea.cancelar();
+            tarea = null;
+        }
+        long numero = cuenta.comandoEnviado(segundos);
+        if (segundos > 0) {
+            tarea = rueda.programar(segundos * 1000L, () -> vencer(numero));
+        }
+    }
+
+    private void vencer(long numero) {
+        synchronized (this) {
+            // Una cuenta reemplazada puede vencer igual si la rueda ya la había tomado
+            if (!cuenta.aplicar(new EventoTemporizador(EventoTemporizador.Tipo.VENCIDO, 0, numero))) {
+                return;
+            }
+            tarea = null;
+        }
+        notificador.run();
+    }
+}
@@ -0,0 +1,174 @@
+package historial;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Almacén de series temporales embebido en el controlador.
+ *
+ * <p>Guarda cada serie del {@link Historial} (humedad por parcela, variables
+ * ambientales y aperturas y cierres de válvulas) en su propio directorio de
+ * segmentos de sólo agregado, con timestamps codificados por diferencia (ver
+ * {@link SerieTemporal}). Cada lectura sólo toma el lock de su serie y se copia a
+ * un buffer en memoria; un hilo vacía periódicamente los buffers al disco. Si el
+ * buffer de una serie se llena antes, lo escribe la misma lectura que lo llenó.</p>
+ *
+ * <p>Se configura con variables de entorno:</p>
+ * <ul>
+ *   <li>{@code HISTORIAL_DIR}: directorio raíz (por defecto {@code historial}).</li>
+ *   <li>{@code HISTORIAL_SEGMENTO_MB}: tamaño a partir del cual se abre un segmento nuevo (por defecto 16).</li>
+ *   <li>{@code HISTORIAL_VACIADO_MS}: período de vaciado de los buffers (por defecto 1000).</li>
+ * </ul>
+ */
+public class AlmacenSeries implements Historial.Destino {
+
+    private static final int TAMANO_BUFFER = 8 * 1024;
+
+    private final Path raiz;
+    private final long tamanoMaximoSegmento;
+    private final ConcurrentHashMap<String, SerieTemporal> series = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService vaciado = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("historial-vaciado").daemon().factory());
+
+    /**
+     * Crea el almacén e inicia el vaciado periódico.
+     *
+     * @param raiz                 directorio raíz del historial.
+     * @param tamanoMaximoSegmento bytes a partir de los cuales se abre un segmento nuevo.
+     * @param periodoVaciadoMs     período de vaciado de los buffers al disco.
+     */
+    public AlmacenSeries(Path raiz, long tamanoMaximoSegmento, long periodoVaciadoMs) {
+        this.raiz = raiz;
+        this.tamanoMaximoSegmento = tamanoMaximoSegmento;
+        vaciado.scheduleWithFixedDelay(this::vaciar, periodoVaciadoMs, periodoVaciadoMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Crea el almacén con la configuración de las variables de entorno.
+     *
+     * @return el almacén.
+     */
+    public static AlmacenSeries desdeEntorno() {
+        String dir = System.getenv("HISTORIAL_DIR");
+        String segmentoMb = System.getenv("HISTORIAL_SEGMENTO_MB");
+        String periodo = System.getenv("HISTORIAL_VACIADO_MS");
+        return new AlmacenSeries(
+                Path.of((dir != null) ? dir : "historial"),
+                ((segmentoMb != null) ? Long.parseLong(segmentoMb) : 16) * 1024 * 1024,
+                (periodo != null) ? Long.parseLong(periodo) : 1000);
+    }
+
+    @Override
+    public void registrar(String serie, long timestamp, double valor) {
+        try {
+            obtener(serie).agregar(timestamp, valor);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("No se pudo guardar la lectura de " + serie + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Devuelve las lecturas de una serie con timestamp en {@code [desde, hasta]}.
+     *
+     * @param serie nombre de la serie (ver {@link Historial#serie}).
+     * @param desde inicio del rango (ms desde la época, inclusive).
+     * @param hasta fin del rango (ms desde la época, inclusive).
+     * @return las lecturas en orden de escritura; vacía si la serie no existe.
+     * @throws IOException si falla la lectura de los segmentos.
+     */
+    public List<Muestra> consultar(String serie, long desde, long hasta) throws IOException {
+        List<Muestra> muestras = new ArrayList<>();
+        consultar(serie, desde, hasta, muestras::add);
+        return muestras;
+    }
+
+    /**
+     * Recorre las lecturas de una serie con timestamp en {@code [desde, hasta]}
+     * sin reunirlas en memoria.
+     *
+     * @param serie  nombre de la serie.
+     * @param desde  inicio del rango (ms desde la época, inclusive).
+     * @param hasta  fin del rango (ms desde la época, inclusive).
+     * @param accion acción a aplicar sobre cada lectura.
+     * @throws IOException si falla la lectura de los segmentos.
+     */
+    public void consultar(String serie, long desde, long hasta, Consumer<Muestra> accion) throws IOException {
+        if (!raiz.resolve(serie).toFile().isDirectory()) {
+            return;
+        }
+        obtener(serie).consultar(desde, hasta, accion);
+    }
+
+    /**
+     * Devuelve las lecturas de humedad de una parcela en un rango de tiempo.
+     *
+     * @param parcela id de la parcela.
+     * @param desde   inicio del rango (ms desde la época, inclusive).
+     * @param hasta   fin del rango (ms desde la época, inclusive).
+     * @return las lecturas de humedad.
+     * @throws IOException si falla la lectura de los segmentos.
+     */
+    public List<Muestra> consultarHumedad(int parcela, long desde, long hasta) throws IOException {
+        return consultar(Historial.serie("humedad", parcela), desde, hasta);
+    }
+
+    /**
+     * Devuelve las aperturas ({@code 1}) y cierres ({@code 0}) de la válvula de una
+     * parcela en un rango de tiempo.
+     *
+     * @param parcela id de la parcela.
+     * @param desde   inicio del rango (ms desde la época, inclusive).
+     * @param hasta   fin del rango (ms desde la época, inclusive).
+     * @return los eventos de la válvula.
+     * @throws IOException si falla la lectura de los segmentos.
+     */
+    public List<Muestra> consultarValvula(int parcela, long desde, long hasta) throws IOException {
+        return consultar(Historial.serie("valvula", parcela), desde, hasta);
+    }
+
+    /**
+     * Escribe al disco lo acumulado en memoria y cierra los segmentos activos.
+     */
+    public void cerrar() {
+        vaciado.shutdown();
+        for (SerieTemporal serie : series.values()) {
+            try {
+                serie.cerrar();
+            } catch (IOException e) {
+                System.err.println("Error al cerrar el historial: " + e.getMessage());
+            }
+        }
+    }
+
+    private SerieTemporal obtener(String nombre) {
+        SerieTemporal serie = series.get(nombre);
+        if (serie != null) {
+            return serie;
+        }
+        return series.computeIfAbsent(nombre, n -> {
+            try {
+                return new SerieTemporal(raiz.resolve(n), tamanoMaximoSegmento, TAMANO_BUFFER);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private void vaciar() {
+        for (SerieTemporal serie : series.values()) {
+            try {
+                serie.vaciar();
+            } catch (IOException e) {
+                System.err.println("Error al vaciar el historial: " + e.getMessage());
+            }
+        }
+    }
+}
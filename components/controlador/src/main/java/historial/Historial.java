@@ -0,0 +1,79 @@
+package historial;
+
+/**
+ * Punto de entrada del historial de lecturas y eventos del controlador.
+ *
+ * <p>Los receptores entregan aquí todas las lecturas que reciben, incluidas las
+ * de un lote completo, aunque para las decisiones de control sólo usen la más
+ * reciente. Cada serie se identifica por el tipo de dispositivo y, en los de
+ * parcela, por su id (por ejemplo {@code "humedad-3"}).</p>
+ *
+ * <p>El destino se fija al arrancar con {@link #setDestino}; mientras no se fije,
+ * las lecturas se descartan.</p>
+ */
+public class Historial {
+
+    /**
+     * Destino de las lecturas del historial.
+     */
+    public interface Destino {
+        /**
+         * Registra una lectura. Debe ser rápido: se invoca desde los receptores.
+         *
+         * @param serie     nombre de la serie.
+         * @param timestamp instante de la lectura (ms desde la época).
+         * @param valor     valor leído.
+         */
+        void registrar(String serie, long timestamp, double valor);
+    }
+
+    private static volatile Destino destino = (serie, timestamp, valor) -> { };
+
+    private Historial() {
+    }
+
+    /**
+     * Fija el destino de las lecturas.
+     *
+     * @param nuevoDestino destino a usar desde ahora.
+     */
+    public static void setDestino(Destino nuevoDestino) {
+        destino = nuevoDestino;
+    }
+
+    /**
+     * Devuelve el nombre de la serie de un dispositivo.
+     *
+     * @param tipo tipo de dispositivo ({@code "humedad"}, {@code "temperatura"}, ...).
+     * @param id   id de la parcela, o un valor negativo en los dispositivos globales.
+     * @return nombre de la serie.
+     */
+    public static String serie(String tipo, int id) {
+        return (id >= 0) ? tipo + "-" + id : tipo;
+    }
+
+    /**
+     * Registra una lectura.
+     *
+     * @param serie     nombre de la serie.
+     * @param timestamp instante de la lectura (ms desde la época).
+     * @param valor     valor leído.
+     */
+    public static void registrar(String serie, long timestamp, double valor) {
+        destino.registrar(serie, timestamp, valor);
+    }
+
+    /**
+     * Registra varias lecturas que llegaron juntas, cada una con su instante.
+     *
+     * @param serie     nombre de la serie.
+     * @param instantes instante de cada lectura (ms desde la época).
+     * @param valores   lecturas en orden de llegada.
+     */
+    public static void registrar(String serie, long[] instantes, double[] valores) {
+        Destino actual = destino;
+        for (int i = 0; i < valores.length; i++) {
+            actual.registrar(serie, instantes[i], valores[i]);
+        }
+    }
+}
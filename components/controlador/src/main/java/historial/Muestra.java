@@ -0,0 +1,10 @@
+package historial;
+
+/**
+ * Lectura almacenada en una serie del historial.
+ *
+ * @param timestamp instante de la lectura (ms desde la época).
+ * @param valor     valor leído; en las series de válvulas, {@code 1} abierta y {@code 0} cerrada.
+ */
+public record Muestra(long timestamp, double valor) {
+}
@@ -0,0 +1,256 @@
+package historial;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Serie de lecturas guardada en segmentos de sólo agregado.
+ *
+ * <p>Cada serie tiene su propio directorio con un archivo por segmento, cuyo
+ * nombre es el timestamp base del segmento. Un segmento empieza con una
+ * cabecera ({@link #MAGICO}, versión y timestamp base) y sigue con una lectura
+ * tras otra:</p>
+ * <pre>
+ *   varint  diferencia con el timestamp anterior, en zigzag (admite retrocesos)
+ *   double  valor (8 bytes)
+ * </pre>
+ *
+ * <p>Las lecturas se acumulan en un buffer en memoria y se escriben al archivo
+ * cuando {@link AlmacenSeries} vacía periódicamente las series o, si antes se
+ * llena, en el mismo {@link #agregar}: con el lock de la serie y en el hilo que
+ * registra la lectura (un receptor o un bucle NIO), que en ese caso escribe hasta
+ * un buffer entero (sin {@code force}, normalmente a la caché de páginas). Con el
+ * vaciado de cada segundo sólo pasa con ráfagas de cientos de lecturas de una
+ * misma serie. Al superar el tamaño máximo se abre un segmento nuevo. Cada
+ * arranque del controlador también abre un segmento nuevo, por lo que nunca se
+ * agrega a un archivo escrito por otro proceso.</p>
+ *
+ * <p>Los timestamps de una serie nunca retroceden, ni siquiera entre arranques: una
+ * lectura con un timestamp anterior al último guardado (por ejemplo, porque se
+ * atrasó el reloj) se guarda con el último. Así todas las lecturas de un segmento
+ * quedan entre su base y la del siguiente, y las consultas descartan los segmentos
+ * fuera del rango sin leerlos. El formato igual admite retrocesos.</p>
+ *
+ * <p>Las consultas recorren los segmentos mapeados en memoria. Un registro
+ * incompleto al final de un segmento (por ejemplo, tras una caída) se ignora.</p>
+ */
+class SerieTemporal {
+
+    static final int MAGICO = 0x48535431; // "HST1"
+    static final byte VERSION = 1;
+    static final int LARGO_CABECERA = Integer.BYTES + 1 + Long.BYTES;
+    private static final int LARGO_MAXIMO_REGISTRO = 10 + Double.BYTES;
+    private static final String EXTENSION = ".seg";
+
+    private final Path directorio;
+    private final long tamanoMaximoSegmento;
+    private final ByteBuffer buffer;
+
+    private FileChannel canal;
+    private long tamanoSegmento;
+    private long ultimoTimestamp;
+
+    /**
+     * Si ya se tomó el último timestamp de los segmentos de arranques anteriores.
+     */
+    private boolean continuada;
+
+    /**
+     * @param directorio           directorio de la serie; se crea si no existe.
+     * @param tamanoMaximoSegmento bytes a partir de los cuales se abre un segmento nuevo.
+     * @param tamanoBuffer         bytes de lecturas acumuladas antes de escribir al archivo.
+     */
+    SerieTemporal(Path directorio, long tamanoMaximoSegmento, int tamanoBuffer) throws IOException {
+        this.directorio = Files.createDirectories(directorio);
+        this.tamanoMaximoSegmento = tamanoMaximoSegmento;
+        this.buffer = ByteBuffer.allocate(Math.max(tamanoBuffer, LARGO_CABECERA + LARGO_MAXIMO_REGISTRO));
+    }
+
+    /**
+     * Agrega una lectura al final de la serie. Si su timestamp es anterior al último
+     * guardado, se guarda con el último.
+     */
+    synchronized void agregar(long timestamp, double valor) throws IOException {
+        if (!continuada) {
+            ultimoTimestamp = ultimoTimestampGuardado();
+            continuada = true;
+        }
+        timestamp = Math.max(timestamp, ultimoTimestamp);
+        if (canal == null || tamanoSegmento >= tamanoMaximoSegmento) {
+            abrirSegmento(timestamp);
+            timestamp = Math.max(timestamp, ultimoTimestamp); // La base pudo avanzar
+        }
+        if (buffer.remaining() < LARGO_MAXIMO_REGISTRO) {
+            vaciarBuffer();
+        }
+        int antes = buffer.position();
+        escribirVarint(buffer, zigzag(timestamp - ultimoTimestamp));
+        buffer.putDouble(valor);
+        tamanoSegmento += buffer.position() - antes;
+        ultimoTimestamp = timestamp;
+    }
+
+    /**
+     * Escribe al archivo las lecturas acumuladas en memoria.
+     */
+    synchronized void vaciar() throws IOException {
+        if (canal != null) {
+            vaciarBuffer();
+        }
+    }
+
+    /**
+     * Vacía el buffer y cierra el segmento activo.
+     */
+    synchronized void cerrar() throws IOException {
+        if (canal != null) {
+            vaciarBuffer();
+            canal.force(false);
+            canal.close();
+            canal = null;
+        }
+    }
+
+    /**
+     * Recorre en orden de escritura las lecturas con timestamp en {@code [desde, hasta]}.
+     *
+     * @param desde  inicio del rango (ms desde la época, inclusive).
+     * @param hasta  fin del rango (ms desde la época, inclusive).
+     * @param accion acción a aplicar sobre cada lectura del rango.
+     */
+    void consultar(long desde, long hasta, Consumer<Muestra> accion) throws IOException {
+        vaciar(); // Lo pendiente en memoria también debe verse
+        List<Path> segmentos = listarSegmentos();
+        for (int i = 0; i < segmentos.size(); i++) {
+            long base = baseDe(segmentos.get(i));
+            long siguiente = (i + 1 < segmentos.size()) ? baseDe(segmentos.get(i + 1)) : Long.MAX_VALUE;
+            // Las lecturas del segmento están en [base, siguiente]: los timestamps no retroceden
+            if (base > hasta || siguiente < desde) {
+                continue; // El segmento no toca el rango
+            }
+            leerSegmento(segmentos.get(i), desde, hasta, accion);
+        }
+    }
+
+    private void abrirSegmento(long timestamp) throws IOException {
+        if (canal != null) {
+            cerrar();
+        }
+        // El nombre ordena los segmentos; si ya existe uno con esa base, se avanza un milisegundo
+        long base = timestamp;
+        Path archivo = directorio.resolve(base + EXTENSION);
+        while (Files.exists(archivo)) {
+            base++;
+            archivo = directorio.resolve(base + EXTENSION);
+        }
+        canal = FileChannel.open(archivo, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        buffer.clear();
+        buffer.putInt(MAGICO);
+        buffer.put(VERSION);
+        buffer.putLong(base);
+        tamanoSegmento = LARGO_CABECERA;
+        ultimoTimestamp = base;
+    }
+
+    /**
+     * Mayor timestamp de los segmentos ya guardados; por los timestamps que no
+     * retroceden, está en el último segmento.
+     *
+     * @return el timestamp, o {@link Long#MIN_VALUE} si la serie no tiene segmentos.
+     */
+    private long ultimoTimestampGuardado() throws IOException {
+        List<Path> segmentos = listarSegmentos();
+        if (segmentos.isEmpty()) {
+            return Long.MIN_VALUE;
+        }
+        Path ultimo = segmentos.get(segmentos.size() - 1);
+        long[] maximo = {baseDe(ultimo)};
+        leerSegmento(ultimo, Long.MIN_VALUE, Long.MAX_VALUE, m -> maximo[0] = Math.max(maximo[0], m.timestamp()));
+        return maximo[0];
+    }
+
+    private void vaciarBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private List<Path> listarSegmentos() throws IOException {
+        List<Path> segmentos = new ArrayList<>();
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, "*" + EXTENSION)) {
+            archivos.forEach(segmentos::add);
+        }
+        segmentos.sort((a, b) -> Long.compare(baseDe(a), baseDe(b)));
+        return segmentos;
+    }
+
+    private static long baseDe(Path segmento) {
+        String nombre = segmento.getFileName().toString();
+        return Long.parseLong(nombre.substring(0, nombre.length() - EXTENSION.length()));
+    }
+
+    private static void leerSegmento(Path segmento, long desde, long hasta, Consumer<Muestra> accion) throws IOException {
+        MappedByteBuffer datos;
+        try (FileChannel lectura = FileChannel.open(segmento, StandardOpenOption.READ)) {
+            if (lectura.size() < LARGO_CABECERA) {
+                return;
+            }
+            datos = lectura.map(FileChannel.MapMode.READ_ONLY, 0, lectura.size());
+        }
+        if (datos.getInt() != MAGICO || datos.get() != VERSION) {
+            throw new IOException("Segmento inválido: " + segmento);
+        }
+        long timestamp = datos.getLong();
+        try {
+            while (datos.hasRemaining()) {
+                timestamp += dezigzag(leerVarint(datos));
+                double valor = datos.getDouble();
+                if (timestamp >= desde && timestamp <= hasta) {
+                    accion.accept(new Muestra(timestamp, valor));
+                }
+            }
+        } catch (BufferUnderflowException e) {
+            // Registro incompleto al final del segmento
+        }
+    }
+
+    private static long zigzag(long valor) {
+        return (valor << 1) ^ (valor >> 63);
+    }
+
+    private static long dezigzag(long valor) {
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+
+    private static void escribirVarint(ByteBuffer destino, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            destino.put((byte) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        destino.put((byte) valor);
+    }
+
+    private static long leerVarint(ByteBuffer origen) {
+        long valor = 0;
+        int desplazamiento = 0;
+        byte b;
+        do {
+            b = origen.get();
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            desplazamiento += 7;
+        } while ((b & 0x80) != 0);
+        return valor;
+    }
+}
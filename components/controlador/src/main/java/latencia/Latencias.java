@@ -0,0 +1,111 @@
+package latencia;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencias por etapa del camino de una lectura de humedad hasta la electroválvula y
+ * del pedido del token de la bomba hasta la Válvula Maestra.
+ *
+ * <p>La medición es opcional: se activa con {@code LATENCIA_MEDIR=true}, que también
+ * hace que los sensores de texto agreguen a cada línea el instante de emisión (ver
+ * {@link protocolo.LineaTexto}). Desactivada, los receptores no crean {@link Marca}s y
+ * registrar no hace nada.</p>
+ *
+ * <p>Las etapas que comparan el instante de emisión del sensor con el del controlador
+ * ({@link Etapa#SENSOR_RECEPCION} y {@link Etapa#SENSOR_VALVULA}) usan relojes de
+ * máquinas distintas y sólo son confiables si están sincronizados; una diferencia
+ * negativa se cuenta como 0. Las demás se miden con {@link System#nanoTime()}.</p>
+ */
+public final class Latencias {
+
+    /**
+     * Etapas medidas, en el orden en que las atraviesa una lectura.
+     */
+    public enum Etapa {
+        /** Desde que el sensor toma la lectura hasta que el receptor la lee del socket. */
+        SENSOR_RECEPCION("sensor→recepción"),
+        /** Desde la recepción hasta que un trabajador de {@code PlanificadorParcelas} evalúa la parcela. */
+        RECEPCION_EVALUACION("recepción→evaluación"),
+        /** Desde el comienzo de la evaluación hasta que se envía la orden de abrir. */
+        EVALUACION_ORDEN("evaluación→orden"),
+        /** Lote RMI de la orden de abrir hasta la confirmación del proceso electrovalvula. */
+        ORDEN_CONFIRMACION("orden→confirmación"),
+        /** Desde que el sensor toma la lectura hasta que la válvula confirma la apertura. */
+        SENSOR_VALVULA("sensor→válvula"),
+        /** Desde que aparece la demanda de agua hasta que se pide el token de la bomba. */
+        DEMANDA_PEDIDO("demanda→pedido"),
+        /** Desde el pedido del token hasta que el servidor de exclusión mutua lo concede. */
+        PEDIDO_TOKEN("pedido→token"),
+        /** Desde la concesión del token hasta que la Válvula Maestra confirma la apertura. */
+        TOKEN_MAESTRA("token→maestra");
+
+        private final String nombre;
+
+        Etapa(String nombre) {
+            this.nombre = nombre;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+    }
+
+    private static final boolean ACTIVA = Boolean.parseBoolean(System.getenv("LATENCIA_MEDIR"));
+
+    private static final Map<Etapa, Histograma> HISTOGRAMAS = new EnumMap<>(Etapa.class);
+
+    static {
+        for (Etapa etapa : Etapa.values()) {
+            HISTOGRAMAS.put(etapa, new Histograma(etapa.getNombre()));
+        }
+    }
+
+    private Latencias() {
+    }
+
+    /**
+     * @return si la medición está activada ({@code LATENCIA_MEDIR=true}).
+     */
+    public static boolean activa() {
+        return ACTIVA;
+    }
+
+    /**
+     * Registra la duración de una etapa medida con {@link System#nanoTime()}.
+     *
+     * @param etapa etapa medida.
+     * @param nanos duración en nanosegundos.
+     */
+    public static void registrarNanos(Etapa etapa, long nanos) {
+        if (ACTIVA) {
+            HISTOGRAMAS.get(etapa).registrarNanos(nanos);
+        }
+    }
+
+    /**
+     * Registra la duración de una etapa medida con relojes de pared.
+     *
+     * @param etapa etapa medida.
+     * @param ms    duración en milisegundos.
+     */
+    public static void registrarMillis(Etapa etapa, long ms) {
+        registrarNanos(etapa, TimeUnit.MILLISECONDS.toNanos(ms));
+    }
+
+    /**
+     * @return el reporte con una línea por etapa, o una cadena vacía si la medición está
+     * desactivada.
+     */
+    public static String reporte() {
+        if (!ACTIVA) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("  Latencias:\n");
+        for (Histograma histograma : HISTOGRAMAS.values()) {
+            sb.append("    ").append(histograma.resumen()).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,33 @@
+package latencia;
+
+/**
+ * Instantes de una lectura de humedad en su camino hacia la electroválvula.
+ *
+ * <p>La crea el receptor cuando la lectura cambia la humedad de la parcela y viaja con
+ * ella hasta {@link hilos.Parcela}, que la compara con los instantes de la evaluación
+ * y de la orden a la válvula.</p>
+ *
+ * @param emitidaMs     instante en que el sensor tomó la lectura (ms desde la época, reloj
+ *                      del sensor), o un valor negativo si el sensor no lo informa.
+ * @param recibidaMs    instante en que el controlador leyó la lectura (ms desde la época).
+ * @param recibidaNanos el mismo instante según {@link System#nanoTime()}.
+ */
+public record Marca(long emitidaMs, long recibidaMs, long recibidaNanos) {
+
+    /**
+     * Marca una lectura recibida ahora.
+     *
+     * @param emitidaMs instante de emisión informado por el sensor, o un valor negativo.
+     * @return la marca.
+     */
+    public static Marca recibida(long emitidaMs) {
+        return new Marca(emitidaMs, System.currentTimeMillis(), System.nanoTime());
+    }
+
+    /**
+     * @return si el sensor informó el instante de emisión.
+     */
+    public boolean conEmision() {
+        return emitidaMs >= 0;
+    }
+}
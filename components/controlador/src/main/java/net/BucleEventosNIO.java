@@ -0,0 +1,125 @@
+package net;
+
+import hilos.HiloControlador;
+import util.ClimaGlobal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hilo de bucle de eventos del modo de ingesta NIO.
+ *
+ * <p>Atiende con un único {@link Selector} todas las conexiones que le asigna
+ * {@link ServerNIO}. Las operaciones que llegan desde otros hilos (registrar un
+ * canal nuevo o pedir escritura para un comando de temporizador) se encolan y
+ * se ejecutan dentro del bucle, despertando al selector.</p>
+ */
+public class BucleEventosNIO extends Thread {
+
+    private final Selector selector;
+    private final ClimaGlobal clima;
+    private final HiloControlador hiloControlador;
+
+    /**
+     * Tareas pendientes de ejecutar en el hilo del bucle.
+     */
+    private final Queue<Runnable> tareas = new ConcurrentLinkedQueue<>();
+
+    public BucleEventosNIO(int numero, ClimaGlobal clima, HiloControlador hiloControlador) {
+        super("BucleEventosNIO-" + numero);
+        this.clima = clima;
+        this.hiloControlador = hiloControlador;
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Asigna un canal recién aceptado a este bucle.
+     *
+     * @param canal canal del dispositivo.
+     */
+    public void registrar(SocketChannel canal) {
+        tareas.add(() -> {
+            try {
+                canal.configureBlocking(false);
+                canal.socket().setTcpNoDelay(true);
+                ConexionNIO conexion = new ConexionNIO(canal, this, clima, hiloControlador);
+                canal.register(selector, SelectionKey.OP_READ, conexion);
+            } catch (IOException e) {
+                System.err.println("No se pudo registrar la conexión: " + e.getMessage());
+                cerrar(canal);
+            }
+        });
+        selector.wakeup();
+    }
+
+    /**
+     * Solicita que el bucle escriba los datos pendientes de una conexión.
+     * Puede invocarse desde cualquier hilo.
+     *
+     * @param conexion conexión con datos pendientes de envío.
+     */
+    void solicitarEscritura(ConexionNIO conexion) {
+        tareas.add(() -> {
+            SelectionKey key = conexion.getCanal().keyFor(selector);
+            if (key != null && key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        });
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (!isInterrupted()) {
+            try {
+                selector.select();
+
+                Runnable tarea;
+                while ((tarea = tareas.poll()) != null) {
+                    tarea.run();
+                }
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    ConexionNIO conexion = (ConexionNIO) key.attachment();
+                    try {
+                        if (key.isValid() && key.isReadable() && !conexion.leer()) {
+                            System.out.println("Dispositivo desconectado: " + conexion);
+                            key.cancel();
+                            cerrar(conexion.getCanal());
+                            continue;
+                        }
+                        if (key.isValid() && key.isWritable() && conexion.escribir()) {
+                            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("Error en la conexión " + conexion + ": " + e.getMessage());
+                        key.cancel();
+                        cerrar(conexion.getCanal());
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Error en el selector de " + getName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void cerrar(SocketChannel canal) {
+        try {
+            canal.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
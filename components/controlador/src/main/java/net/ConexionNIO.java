@@ -0,0 +1,307 @@
+package net;
+
+import historial.Historial;
+import hilos.CuentaRegresiva;
+import hilos.HiloControlador;
+import hilos.IReceptorHumedad;
+import hilos.IReceptorTiempo;
+import latencia.Latencias;
+import latencia.Marca;
+import protocolo.EventoTemporizador;
+import protocolo.LineaTexto;
+import protocolo.TramaBinaria;
+import util.ClimaGlobal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Estado de un dispositivo atendido por un {@link BucleEventosNIO}.
+ *
+ * <p>Reproduce el protocolo de texto que atienden {@link hilos.HiloConexionTCP}
+ * y los {@code HiloReceptor*}: la primera línea indica el tipo de dispositivo,
+ * los dispositivos de parcela envían luego su id y a continuación llega una
+ * lectura por línea. Cada lectura se aplica en cuanto se completa la línea.</p>
+ *
+ * <p>Si el primer byte es {@link TramaBinaria#MAGICO} la conexión usa en cambio
+ * el protocolo binario: tras el saludo llegan tramas con prefijo de largo, que
+ * se decodifican directamente del buffer.</p>
+ *
+ * <p>Para los sensores de humedad y los temporizadores la conexión cumple el
+ * papel del receptor, por lo que se registra directamente en la parcela.</p>
+ */
+public class ConexionNIO implements IReceptorHumedad, IReceptorTiempo {
+
+    private enum Fase { TIPO, ID, LECTURAS }
+
+    private final SocketChannel canal;
+    private final BucleEventosNIO bucle;
+    private final ClimaGlobal clima;
+    private final HiloControlador hiloControlador;
+
+    // Admite la trama binaria más larga y una línea de texto con un lote completo
+    private final ByteBuffer entrada = ByteBuffer.allocate(2048);
+    private final Queue<ByteBuffer> salida = new ConcurrentLinkedQueue<>();
+
+    private Fase fase = Fase.TIPO;
+    private boolean binario = false;
+    private String tipoDispositivo = "";
+    private int id = -1;
+    private long ultimaSecuencia = -1;
+    private String serie;
+
+    private volatile double humedad = Double.NaN; // Sin lecturas todavía
+    private volatile Marca marca;
+    private final CuentaRegresiva cuenta = new CuentaRegresiva();
+    private volatile Runnable notificador = () -> { };
+
+    ConexionNIO(SocketChannel canal, BucleEventosNIO bucle, ClimaGlobal clima, HiloControlador hiloControlador) {
+        this.canal = canal;
+        this.bucle = bucle;
+        this.clima = clima;
+        this.hiloControlador = hiloControlador;
+    }
+
+    SocketChannel getCanal() {
+        return canal;
+    }
+
+    /**
+     * Lee los datos disponibles del canal y procesa las líneas completas.
+     *
+     * @return {@code false} si el dispositivo cerró la conexión.
+     * @throws IOException si falla la lectura del canal.
+     */
+    boolean leer() throws IOException {
+        int leidos;
+        while ((leidos = canal.read(entrada)) > 0) {
+            entrada.flip();
+            if (fase == Fase.TIPO && (entrada.get(0) & 0xFF) == TramaBinaria.MAGICO) {
+                binario = true;
+            }
+            if (binario) {
+                procesarTramas();
+            } else {
+                procesarLineas();
+            }
+            entrada.compact();
+            if (!entrada.hasRemaining()) {
+                throw new IOException(binario ? "Trama demasiado larga" : "Línea demasiado larga");
+            }
+        }
+        return leidos >= 0;
+    }
+
+    /**
+     * Escribe los comandos pendientes.
+     *
+     * @return {@code true} si no quedan datos por enviar.
+     * @throws IOException si falla la escritura del canal.
+     */
+    boolean escribir() throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = salida.peek()) != null) {
+            canal.write(buffer);
+            if (buffer.hasRemaining()) {
+                return false;
+            }
+            salida.poll();
+        }
+        return true;
+    }
+
+    private void procesarLineas() throws IOException {
+        int inicio = 0;
+        for (int i = 0; i < entrada.limit(); i++) {
+            if (entrada.get(i) == '\n') {
+                procesarLinea(decodificar(inicio, i));
+                inicio = i + 1;
+            }
+        }
+        entrada.position(inicio);
+    }
+
+    private void procesarTramas() throws IOException {
+        if (fase == Fase.TIPO) {
+            if (entrada.remaining() < 2) {
+                return; // Falta el byte de versión del saludo
+            }
+            entrada.get(); // Byte mágico
+            int version = entrada.get() & 0xFF;
+            if (version < 1 || version > TramaBinaria.VERSION) {
+                throw new IOException("Versión de protocolo no soportada: " + version);
+            }
+            fase = Fase.LECTURAS; // El tipo y el id llegan en cada trama
+        }
+
+        List<TramaBinaria> lecturas;
+        while ((lecturas = TramaBinaria.leer(entrada)) != null) {
+            if (tipoDispositivo.isEmpty()) {
+                TramaBinaria primera = lecturas.get(0);
+                tipoDispositivo = TramaBinaria.nombreTipo(primera.tipo());
+                if (primera.tipo() == TramaBinaria.HUMEDAD) {
+                    if (!hiloControlador.aceptarIdParcela(primera.id(), tipoDispositivo)) {
+                        throw new IOException("Id de parcela rechazado: " + primera.id());
+                    }
+                    id = primera.id();
+                }
+                serie = Historial.serie(tipoDispositivo, id);
+                aplicarTramas(lecturas);
+                if (id >= 0) {
+                    System.out.printf("---Conectado sensor humedad %d (binario)---\n", id);
+                    hiloControlador.setSensorHumedad(this, id);
+                } else {
+                    System.out.println("---Conectado sensor " + tipoDispositivo + " (binario)---");
+                }
+            } else {
+                aplicarTramas(lecturas);
+            }
+        }
+    }
+
+    /**
+     * Entrega al historial las lecturas nuevas de la trama y aplica sólo la más reciente.
+     */
+    private void aplicarTramas(List<TramaBinaria> lecturas) {
+        TramaBinaria ultima = null;
+        for (TramaBinaria lectura : lecturas) {
+            if (lectura.secuencia() > ultimaSecuencia) {
+                ultimaSecuencia = lectura.secuencia();
+                Historial.registrar(serie, lectura.timestamp(), lectura.valor());
+                ultima = lectura;
+            }
+        }
+        if (ultima != null) {
+            aplicarValor(ultima.valor(), ultima.timestamp());
+        }
+    }
+
+    private String decodificar(int desde, int hasta) {
+        // Los clientes usan println, que en Windows agrega '\r'
+        if (hasta > desde && entrada.get(hasta - 1) == '\r') {
+            hasta--;
+        }
+        byte[] bytes = new byte[hasta - desde];
+        entrada.get(desde, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private void procesarLinea(String linea) throws IOException {
+        switch (fase) {
+            case TIPO:
+                tipoDispositivo = linea;
+                if (tipoDispositivo.equals("humedad") || tipoDispositivo.equals("temporizador")) {
+                    fase = Fase.ID;
+                } else {
+                    System.out.println("---Conectado sensor " + tipoDispositivo + "---");
+                    serie = Historial.serie(tipoDispositivo, -1);
+                    fase = Fase.LECTURAS;
+                }
+                break;
+            case ID:
+                id = hiloControlador.leerIdParcela(linea, tipoDispositivo);
+                if (id < 0) {
+                    throw new IOException("Id de parcela rechazado: " + linea);
+                }
+                serie = Historial.serie(tipoDispositivo, id);
+                System.out.printf("---Conectado %s %d---\n", tipoDispositivo, id);
+                if (tipoDispositivo.equals("humedad")) {
+                    hiloControlador.setSensorHumedad(this, id);
+                } else {
+                    hiloControlador.setSensorTiempo(this, id);
+                }
+                fase = Fase.LECTURAS;
+                break;
+            case LECTURAS:
+                aplicarLectura(linea);
+                break;
+        }
+    }
+
+    private void aplicarLectura(String linea) {
+        if (tipoDispositivo.equals("temporizador")) {
+            if (cuenta.aplicar(EventoTemporizador.leer(linea))) {
+                notificador.run();
+            }
+            return;
+        }
+        LineaTexto.Lote lote = LineaTexto.leer(linea, System.currentTimeMillis());
+        Historial.registrar(serie, lote.instantes(), lote.valores());
+        aplicarValor(lote.ultimo(), LineaTexto.emision(linea)); // Sólo la más reciente decide
+    }
+
+    /**
+     * @param emitidaMs instante de emisión informado por el sensor, o {@code -1}.
+     */
+    private void aplicarValor(double valor, long emitidaMs) {
+        switch (tipoDispositivo) {
+            case "humedad":
+                if (valor != humedad) { // Siempre distinta de NaN: la primera lectura avisa
+                    if (Latencias.activa()) {
+                        marca = Marca.recibida(emitidaMs);
+                    }
+                    humedad = valor;
+                    notificador.run();
+                }
+                break;
+            case "temperatura":
+                clima.actualizarTemperatura(valor);
+                break;
+            case "lluvia":
+                clima.actualizarLluvia(valor == 1.0);
+                break;
+            case "iluminacion":
+                clima.actualizarRadiacion(valor);
+                break;
+            default:
+                throw new IllegalStateException("Disposivo no reconocido: " + tipoDispositivo);
+        }
+    }
+
+    @Override
+    public void setNotificador(Runnable notificador) {
+        this.notificador = notificador;
+    }
+
+    @Override
+    public double getHumedad() {
+        return humedad;
+    }
+
+    @Override
+    public Marca getMarca() {
+        return marca;
+    }
+
+    @Override
+    public int getEstadoTemporizador() {
+        return cuenta.estado();
+    }
+
+    @Override
+    public int getSegundosRestantes() {
+        return cuenta.segundosRestantes();
+    }
+
+    /**
+     * Encola el comando y pide al bucle que lo escriba; no bloquea al llamador.
+     *
+     * @param segundos duración de la cuenta regresiva; {@code 0} la detiene
+     */
+    @Override
+    public void enviarComando(int segundos) {
+        String comando = EventoTemporizador.comando(segundos, cuenta.comandoEnviado(segundos));
+        salida.add(ByteBuffer.wrap((comando + "\n").getBytes(StandardCharsets.US_ASCII)));
+        bucle.solicitarEscritura(this);
+    }
+
+    @Override
+    public String toString() {
+        return id >= 0 ? tipoDispositivo + " " + id : tipoDispositivo;
+    }
+}
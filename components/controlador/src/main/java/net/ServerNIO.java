@@ -0,0 +1,83 @@
+package net;
+
+import hilos.HiloControlador;
+import util.ClimaGlobal;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Modo de ingesta no bloqueante del controlador.
+ *
+ * <p>En lugar de crear un {@link hilos.HiloConexionTCP} y un hilo receptor por
+ * cada dispositivo, acepta las conexiones y las reparte en ronda entre un
+ * conjunto fijo de {@link BucleEventosNIO}. Cada bucle atiende con un único
+ * {@link java.nio.channels.Selector} el saludo ({@code "humedad"},
+ * {@code "temperatura"}, ...), el id de la parcela y el flujo de lecturas de
+ * todos sus dispositivos, por lo que la cantidad de hilos no depende de la
+ * cantidad de sensores conectados.</p>
+ *
+ * <p>Se activa con la variable de entorno {@code CONTROLADOR_INGESTA=nio}. La
+ * cantidad de bucles se configura con {@code CONTROLADOR_NIO_HILOS}.</p>
+ */
+public class ServerNIO {
+
+    private final ServerSocketChannel server;
+    private final int cantidadBucles;
+
+    /**
+     * Construye el servidor de ingesta y abre el puerto de escucha. Las conexiones
+     * que lleguen antes de llamar a {@link #atender} quedan en la cola del socket.
+     *
+     * @param puerto         puerto TCP de escucha.
+     * @param cantidadBucles cantidad de hilos de bucle de eventos.
+     * @throws IOException si no se puede abrir el puerto de escucha.
+     */
+    public ServerNIO(int puerto, int cantidadBucles) throws IOException {
+        this.cantidadBucles = cantidadBucles;
+        this.server = ServerSocketChannel.open();
+        this.server.bind(new InetSocketAddress(puerto), 1024);
+        System.out.println("[ServerNIO] Escuchando en el puerto " + puerto + " con " + cantidadBucles + " bucles de eventos");
+    }
+
+    /**
+     * Devuelve la cantidad de bucles configurada por entorno.
+     * Por defecto usa la cantidad de procesadores, con un máximo de 4.
+     *
+     * @return cantidad de hilos de bucle de eventos.
+     */
+    public static int cantidadBuclesPorDefecto() {
+        String env = System.getenv("CONTROLADOR_NIO_HILOS");
+        if (env != null) {
+            return Math.max(1, Integer.parseInt(env));
+        }
+        return Math.min(4, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Inicia los bucles de eventos y acepta conexiones en el hilo actual.
+     * Este método no retorna mientras el servidor esté activo.
+     *
+     * @param clima           estado ambiental global compartido.
+     * @param hiloControlador controlador al que se registran los dispositivos de parcela.
+     * @throws IOException si falla la aceptación de conexiones.
+     */
+    public void atender(ClimaGlobal clima, HiloControlador hiloControlador) throws IOException {
+        BucleEventosNIO[] bucles = new BucleEventosNIO[cantidadBucles];
+        for (int i = 0; i < cantidadBucles; i++) {
+            bucles[i] = new BucleEventosNIO(i, clima, hiloControlador);
+            bucles[i].start();
+        }
+
+        try (server) {
+            int siguiente = 0;
+            while (true) {
+                SocketChannel canal = server.accept();
+                bucles[siguiente].registrar(canal);
+                siguiente = (siguiente + 1) % bucles.length;
+            }
+        }
+    }
+}
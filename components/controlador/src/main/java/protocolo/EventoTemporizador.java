@@ -0,0 +1,84 @@
+package protocolo;
+
+/**
+ * Evento que un temporizador envía al controlador, una línea por evento.
+ *
+ * <p>El temporizador avisa en el momento en que ocurre cada cambio, sin esperar un
+ * comando: {@code LISTO 0} al conectarse, {@code INICIADO s} al empezar una cuenta de
+ * {@code s} segundos, {@code VENCIDO 0} al terminar y {@code CANCELADO s} al detenerla
+ * con {@code s} segundos por contar. También se aceptan las líneas con sólo el estado
+ * ({@code 0} = ocupado, {@code 1} = listo) de los temporizadores anteriores.</p>
+ *
+ * <p>Cada comando lleva un número creciente ({@code s n}, ver {@link #comando}) y el
+ * evento lo repite al final ({@code INICIADO s n}): el de la cuenta a la que se refiere,
+ * o el del comando de detención para su {@code CANCELADO}. Así el controlador descarta
+ * los eventos de una cuenta ya reemplazada que llegan después de un comando nuevo. Los
+ * eventos sin número ({@code LISTO}, o los de temporizadores anteriores) no se
+ * correlacionan.</p>
+ *
+ * @param tipo       qué ocurrió.
+ * @param restantes  segundos que faltaban al ocurrir el evento.
+ * @param comando    número del comando al que responde, o {@link #SIN_COMANDO}.
+ */
+public record EventoTemporizador(Tipo tipo, int restantes, long comando) {
+
+    public enum Tipo { LISTO, INICIADO, VENCIDO, CANCELADO }
+
+    /**
+     * Número de los eventos que no responden a un comando.
+     */
+    public static final long SIN_COMANDO = -1;
+
+    public EventoTemporizador(Tipo tipo, int restantes) {
+        this(tipo, restantes, SIN_COMANDO);
+    }
+
+    /**
+     * Interpreta una línea recibida de un temporizador.
+     *
+     * @param linea línea sin el fin de línea.
+     * @return el evento.
+     * @throws IllegalArgumentException si la línea no es un evento válido.
+     */
+    public static EventoTemporizador leer(String linea) {
+        String[] campos = linea.trim().split(" +");
+        if (campos.length == 1) {
+            // Temporizador sin eventos: sólo informa el estado
+            return switch (campos[0]) {
+                case "0" -> new EventoTemporizador(Tipo.INICIADO, 0);
+                case "1" -> new EventoTemporizador(Tipo.LISTO, 0);
+                default -> throw new IllegalArgumentException("Evento de temporizador no válido: " + linea);
+            };
+        }
+        if (campos.length > 3) {
+            throw new IllegalArgumentException("Evento de temporizador no válido: " + linea);
+        }
+        return new EventoTemporizador(Tipo.valueOf(campos[0]), Integer.parseInt(campos[1]),
+                (campos.length == 3) ? Long.parseLong(campos[2]) : SIN_COMANDO);
+    }
+
+    /**
+     * Arma la línea de un comando para el temporizador.
+     *
+     * @param segundos duración de la cuenta; {@code 0} la detiene.
+     * @param numero   número del comando, que repiten sus eventos.
+     * @return la línea, sin el fin de línea.
+     */
+    public static String comando(int segundos, long numero) {
+        return segundos + " " + numero;
+    }
+
+    /**
+     * @return el estado que resulta: {@code 0} si quedó contando, {@code 1} si quedó listo.
+     */
+    public int estado() {
+        return tipo == Tipo.INICIADO ? 0 : 1;
+    }
+
+    /**
+     * @return la línea que representa al evento.
+     */
+    public String aLinea() {
+        return (comando == SIN_COMANDO) ? tipo + " " + restantes : tipo + " " + restantes + " " + comando;
+    }
+}
@@ -0,0 +1,15 @@
+package rmi;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Respuesta a un lote de comandos: el estado de todas las electroválvulas del proceso.
+ *
+ * @param secuencia último número de secuencia aplicado para el cliente.
+ * @param aplicado  {@code false} si el lote ya se había aplicado o es anterior a otro
+ *                  aplicado (un reintento o un lote demorado), y no se volvió a aplicar.
+ * @param abiertas  estado de cada electroválvula del proceso, por id.
+ */
+public record EstadoLote(long secuencia, boolean aplicado, Map<Integer, Boolean> abiertas) implements Serializable {
+}
@@ -21,8 +21,46 @@ public interface IServicioExclusionMutua extends Remote {
     public void ObtenerRecurso(String nombreRecurso, IClienteEM cliente) throws RemoteException;
 
     /**
-     * Libera el recurso identificado por nombreRecurso.
-     * Si hay clientes esperando, el token se entrega al siguiente en la cola.
+     * Solicita {@code permisos} de los N que tiene el recurso (por ejemplo, una bomba que
+     * alimenta a varias parcelas a la vez). Las solicitudes se atienden en orden de llegada:
+     * mientras la primera de la cola no entre, no se adelantan las más chicas.
+     * La entrega llega por {@code RecibirToken}; {@link #ObtenerRecurso} equivale a pedir un permiso.
+     *
+     * @param permisos cantidad de permisos pedidos, entre 1 y la capacidad del recurso.
+     * @throws PermisosInvalidosException si {@code permisos} está fuera de ese rango.
      */
-    public void DevolverRecurso(String nombreRecurso) throws RemoteException;
+    public void ObtenerPermisos(String nombreRecurso, int permisos, IClienteEM cliente)
+            throws RemoteException, PermisosInvalidosException;
+
+    /**
+     * Renueva la concesión del token por otra duración de lease completa.
+     * El titular debe llamarlo periódicamente; si deja de hacerlo, el token vence
+     * y pasa al siguiente cliente en la cola.
+     *
+     * @return {@code false} si el token ya venció o pertenece a otra concesión.
+     */
+    public boolean RenovarRecurso(String nombreRecurso, long idToken) throws RemoteException;
+
+    /**
+     * Libera el recurso identificado por nombreRecurso, con todos los permisos de la concesión.
+     * Si hay clientes esperando, el token se entrega a los siguientes en la cola.
+     * Se ignora si {@code idToken} no es la concesión vigente (por ejemplo, si ya venció).
+     */
+    public void DevolverRecurso(String nombreRecurso, long idToken) throws RemoteException;
+
+    /**
+     * Quita de la cola de espera del recurso las solicitudes de {@code cliente}, por ejemplo
+     * porque el cliente ya no necesita el recurso o dejó de esperar la entrega. Si alguna ya
+     * fue concedida, el token igual llega por {@code RecibirToken} y el cliente debe
+     * devolverlo.
+     *
+     * @return {@code true} si había alguna solicitud del cliente en la cola.
+     */
+    public boolean CancelarPedido(String nombreRecurso, IClienteEM cliente) throws RemoteException;
+
+    /**
+     * Indica si esta réplica es la líder. Sólo la líder atiende pedidos; las demás
+     * responden con una {@link RemoteException} y el cliente debe buscar otra.
+     */
+    public boolean EsLider() throws RemoteException;
 }
@@ -0,0 +1,30 @@
+package rmi;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Acceso en lote a las electroválvulas de un proceso: una sola llamada remota abre y
+ * cierra varias y devuelve el estado de todas.
+ */
+public interface IServidorValvulas extends Remote {
+
+    /**
+     * Aplica los comandos en orden. Es idempotente: cada cliente numera sus lotes y un
+     * lote con un número de secuencia ya visto no se vuelve a aplicar, así que un lote
+     * se puede reintentar con el mismo número si no llegó la respuesta.
+     *
+     * @param cliente   identificador del cliente; cada uno lleva su propia secuencia.
+     * @param secuencia número del lote, creciente para cada cliente.
+     * @param comandos  comandos a aplicar; los dirigidos a ids que el proceso no tiene se ignoran.
+     * @return el estado de las electroválvulas después del lote.
+     */
+    EstadoLote aplicar(String cliente, long secuencia, List<ComandoValvula> comandos) throws RemoteException;
+
+    /**
+     * @return el estado de cada electroválvula del proceso, por id.
+     */
+    Map<Integer, Boolean> estados() throws RemoteException;
+}
@@ -0,0 +1,78 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Estado ambiental global compartido por receptores, parcelas y controlador.
+ *
+ * <p>Publica una {@link EstadoClima} inmutable a través de una referencia
+ * atómica. Los lectores obtienen con {@link #actual()} una terna coherente de
+ * temperatura, radiación y lluvia sin tomar locks, sin buscar en un mapa y sin
+ * reservar memoria. Cada escritor reemplaza la fotografía completa con una
+ * operación compare-and-set.</p>
+ */
+public class ClimaGlobal {
+
+    private final AtomicReference<EstadoClima> estado = new AtomicReference<>(EstadoClima.INICIAL);
+
+    private volatile Runnable notificador = () -> { };
+
+    /**
+     * Devuelve la fotografía vigente.
+     *
+     * @return estado ambiental actual.
+     */
+    public EstadoClima actual() {
+        return estado.get();
+    }
+
+    /**
+     * Registra la acción a ejecutar cada vez que cambia alguna variable.
+     *
+     * @param notificador acción a ejecutar; normalmente reevalúa todas las parcelas.
+     */
+    public void setNotificador(Runnable notificador) {
+        this.notificador = notificador;
+    }
+
+    /**
+     * Publica una nueva temperatura.
+     *
+     * @param temperatura temperatura en °C.
+     */
+    public void actualizarTemperatura(double temperatura) {
+        actualizar(e -> e.temperatura() == temperatura ? e : e.conTemperatura(temperatura));
+    }
+
+    /**
+     * Publica una nueva radiación solar.
+     *
+     * @param radiacion radiación en W/m².
+     */
+    public void actualizarRadiacion(double radiacion) {
+        actualizar(e -> e.radiacion() == radiacion ? e : e.conRadiacion(radiacion));
+    }
+
+    /**
+     * Publica un nuevo estado de lluvia.
+     *
+     * @param lluvia {@code true} si está lloviendo.
+     */
+    public void actualizarLluvia(boolean lluvia) {
+        actualizar(e -> e.lluvia() == lluvia ? e : e.conLluvia(lluvia));
+    }
+
+    private void actualizar(UnaryOperator<EstadoClima> cambio) {
+        EstadoClima anterior;
+        EstadoClima nuevo;
+        do {
+            anterior = estado.get();
+            nuevo = cambio.apply(anterior);
+            if (nuevo == anterior) {
+                return; // Sin cambios, no se notifica
+            }
+        } while (!estado.compareAndSet(anterior, nuevo));
+        notificador.run();
+    }
+}
@@ -0,0 +1,84 @@
+package util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Ejecutor compartido por los hilos del controlador (receptores, parcelas y
+ * conexiones entrantes).
+ *
+ * <p>Cada tarea corre en su propio hilo, igual que antes, pero el tipo de hilo
+ * se elige al arrancar: hilos de plataforma (el comportamiento original) o
+ * hilos virtuales, que permiten mantener muchas más parcelas bloqueadas en
+ * {@code readLine()} o {@code sleep()} dentro de una misma JVM.</p>
+ *
+ * <p>El modo se toma del primer argumento del programa ({@code plataforma} o
+ * {@code virtual}) o, si no se indica, de la variable de entorno
+ * {@code CONTROLADOR_HILOS}. Por defecto se usan hilos de plataforma.</p>
+ */
+public class Ejecutor {
+
+    public enum Modo {
+        PLATAFORMA, VIRTUAL;
+
+        /**
+         * Interpreta el nombre de un modo, sin distinguir mayúsculas.
+         *
+         * @param nombre {@code "plataforma"} o {@code "virtual"}.
+         * @return el modo correspondiente.
+         * @throws IllegalArgumentException si el nombre no corresponde a ningún modo.
+         */
+        public static Modo desde(String nombre) {
+            return Modo.valueOf(nombre.trim().toUpperCase());
+        }
+    }
+
+    private static Modo modo;
+    private static ExecutorService ejecutor;
+
+    /**
+     * Fija el modo de ejecución. Debe llamarse antes de lanzar la primera tarea.
+     *
+     * @param nuevoModo modo de los hilos a crear.
+     * @throws IllegalStateException si el ejecutor ya fue creado con otro modo.
+     */
+    public static synchronized void configurar(Modo nuevoModo) {
+        if (ejecutor != null && modo != nuevoModo) {
+            throw new IllegalStateException("El ejecutor ya fue iniciado en modo " + modo);
+        }
+        modo = nuevoModo;
+    }
+
+    /**
+     * Devuelve el modo de ejecución en uso.
+     *
+     * @return modo configurado o el de la variable de entorno.
+     */
+    public static synchronized Modo getModo() {
+        if (modo == null) {
+            String env = System.getenv("CONTROLADOR_HILOS");
+            modo = (env != null) ? Modo.desde(env) : Modo.PLATAFORMA;
+        }
+        return modo;
+    }
+
+    /**
+     * Lanza una tarea en un hilo nuevo del tipo configurado.
+     *
+     * @param tarea tarea de larga duración (bucle de un receptor, parcela, etc.).
+     */
+    public static void ejecutar(Runnable tarea) {
+        obtenerEjecutor().execute(tarea);
+    }
+
+    private static synchronized ExecutorService obtenerEjecutor() {
+        if (ejecutor == null) {
+            if (getModo() == Modo.VIRTUAL) {
+                ejecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("controlador-v-", 0).factory());
+            } else {
+                ejecutor = Executors.newThreadPerTaskExecutor(Thread.ofPlatform().name("controlador-", 0).factory());
+            }
+        }
+        return ejecutor;
+    }
+}
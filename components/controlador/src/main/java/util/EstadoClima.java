@@ -0,0 +1,30 @@
+package util;
+
+/**
+ * Fotografía inmutable de las variables ambientales globales del invernadero.
+ *
+ * @param temperatura temperatura del ambiente (°C).
+ * @param radiacion   radiación solar (W/m²).
+ * @param lluvia      {@code true} si está lloviendo.
+ * @param timestamp   instante de la última actualización (ms desde la época).
+ * @param version     número de actualización; crece en uno con cada cambio.
+ */
+public record EstadoClima(double temperatura, double radiacion, boolean lluvia, long timestamp, long version) {
+
+    /**
+     * Estado inicial, antes de recibir lecturas de los sensores globales.
+     */
+    public static final EstadoClima INICIAL = new EstadoClima(0.0, 0.0, false, 0L, 0L);
+
+    EstadoClima conTemperatura(double valor) {
+        return new EstadoClima(valor, radiacion, lluvia, System.currentTimeMillis(), version + 1);
+    }
+
+    EstadoClima conRadiacion(double valor) {
+        return new EstadoClima(temperatura, valor, lluvia, System.currentTimeMillis(), version + 1);
+    }
+
+    EstadoClima conLluvia(boolean valor) {
+        return new EstadoClima(temperatura, radiacion, valor, System.currentTimeMillis(), version + 1);
+    }
+}
@@ -0,0 +1,242 @@
+package valvulas;
+
+import rmi.ComandoValvula;
+import rmi.EstadoLote;
+import rmi.IServidorValvulas;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Un proceso electrovalvula remoto, con el stub cacheado de su {@code ServidorValvulas}
+ * y las válvulas suyas que usa el controlador.
+ *
+ * <p>Los comandos se envían en lotes sin agregar espera: el primero que llega sale
+ * enseguida y los que llegan mientras esa llamada está en curso se juntan en el lote
+ * siguiente, que envía el mismo hilo al terminar. Así, cuando muchas parcelas cambian a
+ * la vez (por ejemplo, al cambiar el clima) el proceso recibe unas pocas llamadas en
+ * lugar de una por válvula. Cada lote lleva un número de secuencia: si la llamada falla
+ * se reintenta una vez con el mismo número, sin riesgo de aplicarlo dos veces.</p>
+ */
+class ProcesoValvulas {
+
+    private record Pendiente(ComandoValvula comando, CompletableFuture<Boolean> resultado) {
+    }
+
+    /**
+     * Identifica a este controlador ante el proceso; cambia en cada arranque, así la
+     * secuencia puede volver a empezar.
+     */
+    private static final String CLIENTE = "controlador-" + UUID.randomUUID();
+
+    private final String url;
+    private final RegistroValvulas registro;
+    private final Map<Integer, Valvula> valvulas = new ConcurrentHashMap<>();
+
+    private volatile IServidorValvulas stub;
+
+    // Lote en formación; con el lock de la lista
+    private final Object lock = new Object();
+    private List<Pendiente> pendientes = new ArrayList<>();
+    private boolean enviando;
+
+    /**
+     * Número del último lote; sólo lo usa el hilo que está enviando.
+     */
+    private long secuencia;
+
+    /**
+     * Lotes confirmados; una revisión que se cruzó con un lote no pisa su estado.
+     */
+    private volatile long confirmados;
+
+    // Datos de la revisión en segundo plano, usados sólo por RegistroValvulas
+    final AtomicBoolean revisando = new AtomicBoolean();
+    volatile long proximaRevision;
+    volatile long esperaReconexion = 1000;
+
+    /**
+     * @param url      URL del {@code ServidorValvulas} del proceso.
+     * @param registro registro al que se pide reconectar si el proceso falla.
+     */
+    ProcesoValvulas(String url, RegistroValvulas registro) {
+        this.url = url;
+        this.registro = registro;
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    IServidorValvulas getStub() {
+        return stub;
+    }
+
+    boolean disponible() {
+        return stub != null;
+    }
+
+    Valvula valvula(int id, String nombre) {
+        return valvulas.computeIfAbsent(id, i -> new Valvula(i, nombre, this));
+    }
+
+    /**
+     * Registra el stub recién conectado y el estado que informó.
+     */
+    synchronized void conectado(IServidorValvulas stub, Map<Integer, Boolean> estados) {
+        this.stub = stub;
+        actualizar(estados);
+    }
+
+    long confirmados() {
+        return confirmados;
+    }
+
+    /**
+     * Actualiza el estado con el de una revisión, salvo que entretanto se haya confirmado
+     * algún lote, cuyo estado es más nuevo.
+     *
+     * @param confirmadosAntes valor de {@link #confirmados()} antes de la revisión.
+     */
+    synchronized void revisado(Map<Integer, Boolean> estados, long confirmadosAntes) {
+        if (confirmados == confirmadosAntes) {
+            actualizar(estados);
+        }
+    }
+
+    /**
+     * Actualiza el estado de las válvulas con el que informó el proceso.
+     */
+    private void actualizar(Map<Integer, Boolean> estados) {
+        for (Valvula valvula : valvulas.values()) {
+            valvula.actualizar(estados.get(valvula.getId()));
+        }
+    }
+
+    /**
+     * Registra un lote confirmado y el estado que devolvió.
+     */
+    private synchronized void confirmado(Map<Integer, Boolean> estados) {
+        confirmados++;
+        actualizar(estados);
+    }
+
+    /**
+     * Descarta el stub si sigue siendo el que falló y pide reconectar.
+     */
+    synchronized void caido(IServidorValvulas fallido) {
+        if (stub == fallido) {
+            stub = null;
+            for (Valvula valvula : valvulas.values()) {
+                valvula.actualizar(null);
+            }
+            registro.reconectar(this);
+        }
+    }
+
+    /**
+     * Abre o cierra una válvula y espera a que el proceso lo confirme.
+     *
+     * @return el estado de la válvula informado por el proceso.
+     * @throws RemoteException si el proceso no está conectado o no respondió.
+     */
+    boolean aplicar(int id, boolean abrir) throws RemoteException {
+        Pendiente pendiente = new Pendiente(new ComandoValvula(id, abrir), new CompletableFuture<>());
+        boolean enviar;
+        synchronized (lock) {
+            pendientes.add(pendiente);
+            enviar = !enviando;
+            enviando = true;
+        }
+        if (enviar) {
+            enviarPendientes();
+        }
+        try {
+            return pendiente.resultado().get();
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof RemoteException re) ? re : new RemoteException(e.getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrumpido esperando la " + url, e);
+        }
+    }
+
+    /**
+     * Envía lotes hasta que no queden comandos pendientes.
+     */
+    private void enviarPendientes() {
+        while (true) {
+            List<Pendiente> lote;
+            synchronized (lock) {
+                if (pendientes.isEmpty()) {
+                    enviando = false;
+                    return;
+                }
+                lote = pendientes;
+                pendientes = new ArrayList<>();
+            }
+            enviar(lote);
+        }
+    }
+
+    private void enviar(List<Pendiente> lote) {
+        IServidorValvulas actual = stub;
+        if (actual == null) {
+            fallar(lote, new RemoteException(url + " no está conectado"));
+            return;
+        }
+        List<ComandoValvula> comandos = new ArrayList<>(lote.size());
+        for (Pendiente pendiente : lote) {
+            comandos.add(pendiente.comando());
+        }
+        long numero = ++secuencia;
+        EstadoLote estado;
+        try {
+            estado = enviar(actual, numero, comandos);
+        } catch (RemoteException e) {
+            caido(actual);
+            fallar(lote, e);
+            return;
+        }
+        confirmado(estado.abiertas());
+        for (Pendiente pendiente : lote) {
+            Boolean abierta = estado.abiertas().get(pendiente.comando().id());
+            if (abierta == null) {
+                pendiente.resultado().completeExceptionally(
+                        new RemoteException(url + " no tiene la electroválvula " + pendiente.comando().id()));
+            } else {
+                pendiente.resultado().complete(abierta);
+            }
+        }
+    }
+
+    /**
+     * Envía un lote, reintentándolo una vez: con el mismo número de secuencia el proceso
+     * no lo aplica dos veces si la primera llamada llegó y se perdió la respuesta.
+     */
+    private EstadoLote enviar(IServidorValvulas actual, long numero, List<ComandoValvula> comandos) throws RemoteException {
+        try {
+            return actual.aplicar(CLIENTE, numero, comandos);
+        } catch (RemoteException e) {
+            return actual.aplicar(CLIENTE, numero, comandos);
+        }
+    }
+
+    private static void fallar(List<Pendiente> lote, RemoteException e) {
+        for (Pendiente pendiente : lote) {
+            pendiente.resultado().completeExceptionally(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+}
@@ -0,0 +1,239 @@
+package valvulas;
+
+import rmi.IServidorValvulas;
+
+import java.net.MalformedURLException;
+import java.rmi.Naming;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registro compartido de las electroválvulas: la Válvula Maestra y la de cada parcela.
+ *
+ * <p>Las válvulas se agrupan por proceso electrovalvula ({@link ProcesoValvulas}). El
+ * {@code ServidorValvulas} de cada proceso se busca en el registro RMI una sola vez y su
+ * stub queda cacheado. La búsqueda, las reconexiones con backoff exponencial y la
+ * revisión de salud las hace este registro en segundo plano: un hilo revisa cada segundo
+ * qué procesos tienen una revisión pendiente y la lanza en un hilo virtual, para que un
+ * proceso que no responde no demore a los demás. Cada revisión es una sola llamada
+ * ({@code estados()}) que además corrige el estado local de todas las válvulas del
+ * proceso. Así, ni el bucle del controlador ni los trabajadores de las parcelas esperan
+ * nunca un {@code Naming.lookup}.</p>
+ *
+ * <p>La maestra es la válvula {@code VALVULA_MAESTRA_ID} (por defecto 5) del proceso en
+ * {@code VALVULA_MAESTRA_HOST}/{@code VALVULA_MAESTRA_PORT} (por defecto 21005). Las de
+ * las parcelas se agrupan de a {@code VALVULAS_POR_PROCESO} (por defecto 1), como las
+ * aloja electrovalvula: la del id {@code i} está en el proceso {@code p = i / N}, en
+ * {@code VALVULA_HOST} (con {@code p} como argumento de formato) y en el puerto
+ * {@code VALVULA_BASE_PORT} (por defecto 21000) + {@code p * N}. Con un proceso por
+ * válvula queda la dirección de siempre: el id como argumento y 21000 + id.</p>
+ *
+ * <p>Con la configuración por defecto el id de parcela 5 cae en la misma válvula que la
+ * maestra. Ningún id de parcela puede usar esa válvula ({@link #esMaestra}): su riego
+ * abriría y cerraría la maestra por su cuenta.</p>
+ */
+public class RegistroValvulas {
+
+    private static final long ESPERA_RECONEXION_MAX_MS = 30000;
+
+    /**
+     * Cada cuánto se buscan los procesos con una revisión pendiente.
+     */
+    private static final long PERIODO_TICK_MS = 1000;
+
+    private static final String SERVIDOR = "ServidorValvulas";
+
+    private final long periodoRevisionMs;
+    private final int valvulasPorProceso;
+    private final Valvula maestra;
+    private final String maestraUrl;
+    private final int maestraId;
+    private final Map<Integer, Valvula> deParcelas = new ConcurrentHashMap<>();
+
+    /**
+     * Procesos electrovalvula por URL; nunca se quitan.
+     */
+    private final Map<String, ProcesoValvulas> procesos = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService revision = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("valvulas").daemon().factory());
+
+    /**
+     * Búsquedas y revisiones, una por proceso como máximo.
+     */
+    private final ExecutorService llamadas = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Crea el registro, empieza a conectar la Válvula Maestra e inicia la revisión periódica.
+     *
+     * @param periodoRevisionMs  período de la revisión de salud de cada proceso conectado.
+     * @param valvulasPorProceso electroválvulas de parcelas que aloja cada proceso.
+     */
+    public RegistroValvulas(long periodoRevisionMs, int valvulasPorProceso) {
+        this.periodoRevisionMs = periodoRevisionMs;
+        this.valvulasPorProceso = Math.max(1, valvulasPorProceso);
+        String maestraHost = System.getenv("VALVULA_MAESTRA_HOST");
+        if (maestraHost == null) maestraHost = "localhost";
+        String maestraPortEnv = System.getenv("VALVULA_MAESTRA_PORT");
+        int maestraPort = (maestraPortEnv != null) ? Integer.parseInt(maestraPortEnv) : 21005;
+        String maestraIdEnv = System.getenv("VALVULA_MAESTRA_ID");
+        this.maestraId = (maestraIdEnv != null) ? Integer.parseInt(maestraIdEnv) : 5;
+        this.maestraUrl = "rmi://" + maestraHost + ":" + maestraPort + "/" + SERVIDOR;
+        this.maestra = proceso(maestraUrl).valvula(maestraId, "Válvula Maestra");
+        revision.scheduleWithFixedDelay(this::revisar, 0, PERIODO_TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Crea el registro con el período de revisión de {@code VALVULA_REVISION_MS} (por
+     * defecto 5000) y el agrupamiento de {@code VALVULAS_POR_PROCESO} (por defecto 1).
+     *
+     * @return el registro.
+     */
+    public static RegistroValvulas desdeEntorno() {
+        String periodo = System.getenv("VALVULA_REVISION_MS");
+        String porProceso = System.getenv("VALVULAS_POR_PROCESO");
+        return new RegistroValvulas((periodo != null) ? Long.parseLong(periodo) : 5000,
+                (porProceso != null) ? Integer.parseInt(porProceso) : 1);
+    }
+
+    /**
+     * @return la Válvula Maestra; puede no estar conectada todavía.
+     */
+    public Valvula maestra() {
+        return maestra;
+    }
+
+    /**
+     * Indica si la electroválvula de una parcela sería la Válvula Maestra: el mismo id en
+     * el mismo proceso.
+     *
+     * @param id identificador de la parcela.
+     * @return {@code true} si la parcela no puede usar ese id.
+     */
+    public boolean esMaestra(int id) {
+        return id == maestraId && urlDeParcela(id).equals(maestraUrl);
+    }
+
+    /**
+     * Devuelve la electroválvula de una parcela, creándola y empezando a conectar su
+     * proceso si es la primera vez que se pide. No bloquea.
+     *
+     * @param id identificador de la parcela.
+     * @return la electroválvula; puede no estar conectada todavía.
+     * @throws IllegalArgumentException si esa válvula es la maestra ({@link #esMaestra}).
+     */
+    public Valvula deParcela(int id) {
+        if (esMaestra(id)) {
+            throw new IllegalArgumentException("La electroválvula de la parcela " + id + " es la Válvula Maestra");
+        }
+        return deParcelas.computeIfAbsent(id, this::crear);
+    }
+
+    /**
+     * Dirección del proceso electrovalvula que aloja la válvula de una parcela.
+     */
+    private String urlDeParcela(int id) {
+        int numeroProceso = id / valvulasPorProceso;
+        String valvulaHost = System.getenv("VALVULA_HOST");
+        if (valvulaHost == null) {
+            valvulaHost = "localhost";
+        } else {
+            valvulaHost = String.format(valvulaHost, numeroProceso);
+        }
+        String basePortEnv = System.getenv("VALVULA_BASE_PORT");
+        int basePort = (basePortEnv != null) ? Integer.parseInt(basePortEnv) : 21000;
+        int puerto = basePort + numeroProceso * valvulasPorProceso;
+        return String.format("rmi://" + valvulaHost + ":%d/" + SERVIDOR, puerto);
+    }
+
+    private Valvula crear(int id) {
+        ProcesoValvulas proceso = proceso(urlDeParcela(id));
+        Valvula valvula = proceso.valvula(id, "electroválvula " + id);
+        if (proceso.disponible()) {
+            reconectar(proceso); // Su estado llega con la próxima revisión
+        }
+        return valvula;
+    }
+
+    private ProcesoValvulas proceso(String url) {
+        return procesos.computeIfAbsent(url, u -> {
+            ProcesoValvulas proceso = new ProcesoValvulas(u, this);
+            lanzar(proceso);
+            return proceso;
+        });
+    }
+
+    /**
+     * Pide revisar un proceso sin esperar al próximo período, por ejemplo porque falló.
+     */
+    void reconectar(ProcesoValvulas proceso) {
+        proceso.proximaRevision = 0;
+        lanzar(proceso);
+    }
+
+    /**
+     * Lanza las revisiones vencidas. Corre en el hilo de revisión.
+     */
+    private void revisar() {
+        long ahora = System.currentTimeMillis();
+        for (ProcesoValvulas proceso : procesos.values()) {
+            if (ahora >= proceso.proximaRevision) {
+                lanzar(proceso);
+            }
+        }
+    }
+
+    /**
+     * Revisa un proceso en un hilo virtual, salvo que ya haya una revisión suya en curso.
+     */
+    private void lanzar(ProcesoValvulas proceso) {
+        if (!proceso.revisando.compareAndSet(false, true)) {
+            return;
+        }
+        llamadas.execute(() -> {
+            try {
+                revisar(proceso);
+            } finally {
+                proceso.revisando.set(false);
+            }
+        });
+    }
+
+    /**
+     * Conecta el proceso si no tiene stub o, si lo tiene, comprueba que responda.
+     */
+    private void revisar(ProcesoValvulas proceso) {
+        IServidorValvulas stub = proceso.getStub();
+        if (stub == null) {
+            try {
+                IServidorValvulas nuevo = (IServidorValvulas) Naming.lookup(proceso.getUrl());
+                Map<Integer, Boolean> estados = nuevo.estados();
+                proceso.esperaReconexion = 1000;
+                proceso.proximaRevision = System.currentTimeMillis() + periodoRevisionMs;
+                proceso.conectado(nuevo, estados);
+                System.out.println("Conectado a las electroválvulas " + estados.keySet() + " en " + proceso);
+            } catch (NotBoundException | MalformedURLException | RemoteException e) {
+                System.err.println("Error al conectar a " + proceso + ": " + e.getMessage()
+                        + ". Reintentando en " + proceso.esperaReconexion / 1000 + " segundos...");
+                proceso.proximaRevision = System.currentTimeMillis() + proceso.esperaReconexion;
+                proceso.esperaReconexion = Math.min(proceso.esperaReconexion * 2, ESPERA_RECONEXION_MAX_MS); // Backoff exponencial
+            }
+            return;
+        }
+
+        try {
+            long confirmados = proceso.confirmados();
+            proceso.revisado(stub.estados(), confirmados);
+            proceso.proximaRevision = System.currentTimeMillis() + periodoRevisionMs;
+        } catch (RemoteException e) {
+            System.err.println(proceso + " no responde: " + e.getMessage() + ". Se reconectará.");
+            proceso.caido(stub); // Deja la próxima revisión vencida: se reconecta en el próximo tick
+        }
+    }
+}
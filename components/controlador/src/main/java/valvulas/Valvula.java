@@ -0,0 +1,119 @@
+package valvulas;
+
+import java.rmi.RemoteException;
+
+/**
+ * Electroválvula remota vista desde el controlador, con su estado local.
+ *
+ * <p>La válvula vive en un proceso electrovalvula ({@link ProcesoValvulas}), que puede
+ * tener otras. El estado ({@link #estaAbierta()}) es el que devolvió el proceso con el
+ * último comando o la última revisión de {@link RegistroValvulas}; consultarlo no hace
+ * ninguna llamada remota. Los comandos nunca buscan el proceso en el registro RMI: si
+ * todavía no está conectado fallan enseguida con {@link RemoteException}.</p>
+ */
+public class Valvula {
+
+    private final int id;
+    private final String nombre;
+    private final ProcesoValvulas proceso;
+
+    /**
+     * Estado conocido: {@code null} mientras no se sepa.
+     */
+    private volatile Boolean abierta;
+
+    /**
+     * Acción a ejecutar cada vez que la válvula queda conectada.
+     */
+    private volatile Runnable alConectar;
+
+    Valvula(int id, String nombre, ProcesoValvulas proceso) {
+        this.id = id;
+        this.nombre = nombre;
+        this.proceso = proceso;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    /**
+     * Registra la acción a ejecutar cada vez que la válvula se conecta o reconecta.
+     *
+     * @param alConectar acción a ejecutar; no debe bloquear.
+     */
+    public void setAlConectar(Runnable alConectar) {
+        this.alConectar = alConectar;
+    }
+
+    /**
+     * Actualiza el estado con el que informó el proceso. Si la válvula pasa a estar
+     * disponible, ejecuta la acción de {@link #setAlConectar}.
+     *
+     * @param abierta estado informado, o {@code null} si se desconoce (el proceso está
+     *                caído o no tiene esta válvula).
+     */
+    void actualizar(Boolean abierta) {
+        Boolean anterior = this.abierta;
+        this.abierta = abierta;
+        Runnable accion = alConectar;
+        if (anterior == null && abierta != null && accion != null) {
+            accion.run();
+        }
+    }
+
+    /**
+     * @return {@code true} si su proceso está conectado y la tiene.
+     */
+    public boolean disponible() {
+        return proceso.disponible() && abierta != null;
+    }
+
+    /**
+     * @return si la válvula está abierta según el último comando confirmado o la última
+     * revisión; {@code false} si no se sabe.
+     */
+    public boolean estaAbierta() {
+        Boolean actual = abierta;
+        return actual != null && actual;
+    }
+
+    /**
+     * @return el estado para mostrar: ABIERTA, CERRADA, DESCONOCIDA o SIN CONEXION.
+     */
+    public String estado() {
+        if (!proceso.disponible()) {
+            return "SIN CONEXION";
+        }
+        Boolean actual = abierta;
+        return (actual == null) ? "DESCONOCIDA" : (actual ? "ABIERTA" : "CERRADA");
+    }
+
+    /**
+     * Abre la válvula y espera la confirmación. El comando viaja en el próximo lote de su
+     * proceso, junto con los de otras válvulas.
+     *
+     * @throws RemoteException si el proceso no está conectado o no respondió.
+     */
+    public void abrir() throws RemoteException {
+        proceso.aplicar(id, true);
+    }
+
+    /**
+     * Cierra la válvula y espera la confirmación.
+     *
+     * @throws RemoteException si el proceso no está conectado o no respondió.
+     */
+    public void cerrar() throws RemoteException {
+        proceso.aplicar(id, false);
+    }
+
+    @Override
+    public String toString() {
+        return nombre + " (" + proceso + ")";
+    }
+}
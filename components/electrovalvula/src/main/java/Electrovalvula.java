@@ -0,0 +1,53 @@
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Estado de una electroválvula simulada. Es un objeto liviano: no es remoto y lo
+ * comparten {@link ServerRMI}, que la expone sola, y {@link ServidorValvulas}, que la
+ * expone junto con las demás del proceso.
+ */
+public class Electrovalvula {
+
+    private final int id;
+
+    /** {@code true} si está abierta, {@code false} si está cerrada. */
+    private volatile boolean abierta;
+
+    public Electrovalvula(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public boolean estaAbierta() {
+        return abierta;
+    }
+
+    /**
+     * Abre la electrovalvula y muestra un mensaje en consola si cambió de estado.
+     */
+    public synchronized void abrir() {
+        if (!this.abierta) {
+            this.abierta = true;
+            System.out.printf("%s | Se abrió la electrovalvula %d\n", this.getTiempo(), id);
+        }
+    }
+
+    /**
+     * Cierra la electrovalvula y muestra un mensaje en consola si cambió de estado.
+     */
+    public synchronized void cerrar() {
+        if (this.abierta) {
+            this.abierta = false;
+            System.out.printf("%s | Se cerró la electrovalvula %d\n", this.getTiempo(), id);
+        }
+    }
+
+    private String getTiempo(){
+        LocalDateTime myDateObj = LocalDateTime.now();
+        DateTimeFormatter myFormatObj = DateTimeFormatter.ofPattern("HH:mm:ss");
+        return myDateObj.format(myFormatObj);
+    }
+}
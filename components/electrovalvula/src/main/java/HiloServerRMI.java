@@ -24,8 +24,10 @@ import java.util.logging.Logger;
  * <ul>
  *   <li>Calcula el puerto de escucha como {@code 21000 + id}.</li>
  *   <li>Crea un registro RMI en ese puerto.</li>
- *   <li>Publica el objeto remoto {@link IServerRMI} bajo la URL
- *       {@code rmi://localhost:puerto/ServerRMI}.</li>
+ *   <li>Publica el objeto remoto {@link IServerRMI}, si el proceso aloja una sola
+ *       electrovalvula, bajo la URL {@code rmi://localhost:puerto/ServerRMI}.</li>
+ *   <li>Publica el acceso en lote {@link ServidorValvulas}, con todas las electrovalvulas
+ *       del proceso, bajo la URL {@code rmi://localhost:puerto/ServidorValvulas}.</li>
  * </ul>
  *
  * Esto permite ejecutar múltiples instancias de servidores RMI en puertos diferentes,
@@ -38,20 +40,25 @@ import java.util.logging.Logger;
  */
 public class HiloServerRMI extends Thread {
 
-    /** Objeto remoto que implementa la interfaz de servidor RMI */
+    /** Objeto remoto que implementa la interfaz de servidor RMI, o {@code null} si el proceso aloja varias */
     private final IServerRMI server;
 
-    /** Identificador del servidor, usado para calcular el puerto de publicación */
+    /** Acceso en lote a las electrovalvulas del proceso */
+    private final ServidorValvulas servidorValvulas;
+
+    /** Primer id del proceso, usado para calcular el puerto de publicación */
     private final int id;
 
     /**
      * Constructor del hilo del servidor RMI.
      *
-     * @param s  objeto remoto que implementa {@link IServerRMI}
-     * @param id identificador del servidor (se usa para determinar el puerto)
+     * @param s                objeto remoto que implementa {@link IServerRMI}, o {@code null}
+     * @param servidorValvulas acceso en lote a las electrovalvulas del proceso
+     * @param id               primer id del proceso (se usa para determinar el puerto)
      */
-    public HiloServerRMI(IServerRMI s, int id) {
+    public HiloServerRMI(IServerRMI s, ServidorValvulas servidorValvulas, int id) {
         this.server = s;
+        this.servidorValvulas = servidorValvulas;
         this.id = id;
     }
 
@@ -80,8 +87,12 @@ public class HiloServerRMI extends Thread {
             if (hostname == null) {
                 hostname = "localhost";
             }
-            Naming.rebind(String.format("rmi://%s:%d/ServerRMI", hostname, port), server);
-            System.out.println("Inicado RMI en: " + String.format("rmi://%s:%d/ServerRMI", hostname, port));
+            if (server != null) {
+                Naming.rebind(String.format("rmi://%s:%d/ServerRMI", hostname, port), server);
+            }
+            Naming.rebind(String.format("rmi://%s:%d/%s", hostname, port, ServidorValvulas.NOMBRE), servidorValvulas);
+            System.out.println("Inicado RMI en: " + String.format("rmi://%s:%d/%s", hostname, port, ServidorValvulas.NOMBRE)
+                    + " con " + servidorValvulas.cantidad() + " electrovalvula(s)");
 
         } catch (RemoteException ex) {
             Logger.getLogger(HiloServerRMI.class.getName()).log(Level.SEVERE, 
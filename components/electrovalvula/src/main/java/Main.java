@@ -1,27 +1,40 @@
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Clase principal de la aplicación que inicia un servidor RMI
- * y gestiona la simulación de una Electrovalvula.
+ * y gestiona la simulación de una o varias Electrovalvulas.
  * <p>
  * El flujo de ejecución es el siguiente:
  * <ol>
- *   <li>Lee un identificador ({@code id}) desde los argumentos de la línea de comandos.</li>
- *   <li>Crea una instancia de Electrovalvula y muestra su estado inicial.</li>
- *   <li>Crea un objeto {@link ServerRMI} asociado al identificador.</li>
- *   <li>Inicia un hilo {@link HiloServerRMI} para publicar el servidor en el registro RMI.</li>
- *   <li>Vuelve a imprimir el estado de la electrovalvula.</li>
+ *   <li>Lee desde los argumentos de la línea de comandos qué ids aloja el proceso.</li>
+ *   <li>Crea una instancia liviana de {@link Electrovalvula} por id.</li>
+ *   <li>Crea un {@link ServidorValvulas} que las expone a todas y, si es una sola, además
+ *   un objeto {@link ServerRMI} para los clientes que la usan de a una.</li>
+ *   <li>Inicia un hilo {@link HiloServerRMI} para publicar los servidores en un único
+ *   registro RMI, en el puerto {@code VALVULA_BASE_PORT} (por defecto 21000) más el
+ *   primer id.</li>
  * </ol>
  *
  * <b>Uso:</b><br>
- * {@code java Main <id>} <br>
- * Donde {@code id} es un entero que determina el puerto de publicación
- * del servidor RMI ({@code 21000 + id}).
+ * {@code java Main <id>} o {@code java Main <desde>-<hasta>} <br>
+ * Con un solo número y {@code VALVULAS_POR_PROCESO} = N (por defecto 1), el proceso
+ * número {@code id} aloja los ids {@code id*N} a {@code id*N + N - 1}; así una réplica
+ * de un StatefulSet, que recibe su índice, aloja un bloque entero. Con un rango aloja
+ * los ids de {@code desde} a {@code hasta}, ambos incluidos. El controlador ubica las
+ * válvulas con el mismo {@code VALVULAS_POR_PROCESO}, por lo que los rangos deben
+ * coincidir con esos bloques.
  *
- * <b>Ejemplo:</b><br>
- * {@code java Main 1} → inicia el servidor en el puerto {@code 21001}.
+ * <b>Ejemplos:</b><br>
+ * {@code java Main 1} → aloja la electrovalvula 1 en el puerto {@code 21001}.<br>
+ * {@code VALVULAS_POR_PROCESO=100 java Main 2} → aloja las electrovalvulas 200 a 299
+ * en el puerto {@code 21200}.
+ * <p>
+ * {@code VALVULAS_CLIENTE_INACTIVO_MS} (por defecto 600000) es el tiempo sin lotes tras
+ * el cual {@link ServidorValvulas} olvida la secuencia de un cliente.
  *
  * @author
  */
@@ -30,20 +43,38 @@ public class Main {
     /**
      * Método principal que lanza la aplicación.
      *
-     * @param args Argumentos de línea de comandos. El primer argumento debe ser un número entero (id).
+     * @param args Argumentos de línea de comandos. El primero es un id o un rango {@code desde-hasta}.
      */
     public static void main(String[] args) throws RemoteException {
-        // Se obtiene el ID del primer argumento recibido por consola
-        int id = Integer.parseInt(args[0]);
+        int desde;
+        int hasta;
+        int guion = args[0].indexOf('-');
+        if (guion > 0) {
+            desde = Integer.parseInt(args[0].substring(0, guion));
+            hasta = Integer.parseInt(args[0].substring(guion + 1));
+        } else {
+            String porProcesoEnv = System.getenv("VALVULAS_POR_PROCESO");
+            int porProceso = (porProcesoEnv != null) ? Integer.parseInt(porProcesoEnv) : 1;
+            desde = Integer.parseInt(args[0]) * porProceso;
+            hasta = desde + porProceso - 1;
+        }
+        if (hasta < desde) {
+            throw new IllegalArgumentException("Rango de electrovalvulas vacío: " + args[0]);
+        }
 
-        // Objeto servidor RMI (se inicializa más adelante)
-        ServerRMI server = null;
+        List<Electrovalvula> valvulas = new ArrayList<>(hasta - desde + 1);
+        for (int id = desde; id <= hasta; id++) {
+            valvulas.add(new Electrovalvula(id));
+        }
 
-        // Se instancia el servidor RMI pasando el identificador
-        server = new ServerRMI(id);
+        // Con una sola válvula se mantiene además su servidor individual
+        ServerRMI server = (desde == hasta) ? new ServerRMI(valvulas.get(0)) : null;
+        String inactivoEnv = System.getenv("VALVULAS_CLIENTE_INACTIVO_MS");
+        long inactivoMs = (inactivoEnv != null) ? Long.parseLong(inactivoEnv) : 600000;
+        ServidorValvulas servidorValvulas = new ServidorValvulas(valvulas, inactivoMs);
 
-        // Se inicia un hilo que levantará el servidor RMI en el puerto 21000 + id
-        HiloServerRMI hServer = new HiloServerRMI(server, id);
+        // Se inicia un hilo que levantará el registro RMI en el puerto 21000 + desde
+        HiloServerRMI hServer = new HiloServerRMI(server, servidorValvulas, desde);
         hServer.start();
 
     }
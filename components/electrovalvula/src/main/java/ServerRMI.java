@@ -8,9 +8,6 @@ import rmi.IServerRMI;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-
 /**
  * Implementación del servidor RMI que representa una {@code Electrovalvula}.
  * <p>
@@ -37,21 +34,18 @@ import java.time.format.DateTimeFormatter;
  */
 public class ServerRMI extends UnicastRemoteObject implements IServerRMI {
 
-    /** Estado de la electrovalvula: {@code true} si está abierta, {@code false} si está cerrada. */
-    private boolean estaAbierta;
-
-    /** Identificador único del servidor (se usa también para mostrar mensajes). */
-    private final int id;
+    /** Estado de la electrovalvula, compartido con {@link ServidorValvulas}. */
+    private final Electrovalvula valvula;
 
     /**
      * Constructor del servidor RMI.
      *
-     * @param id Identificador único del servidor asociado a esta electrovalvula.
+     * @param valvula electrovalvula que expone este servidor.
      * @throws RemoteException si ocurre un error al exportar el objeto RMI.
      */
-    public ServerRMI(int id) throws RemoteException {
+    public ServerRMI(Electrovalvula valvula) throws RemoteException {
         super();
-        this.id = id;
+        this.valvula = valvula;
     }
 
     /**
@@ -62,7 +56,7 @@ public class ServerRMI extends UnicastRemoteObject implements IServerRMI {
      */
     @Override
     public boolean estaAbierta() throws RemoteException {
-        return estaAbierta;
+        return valvula.estaAbierta();
     }
 
     /**
@@ -72,10 +66,7 @@ public class ServerRMI extends UnicastRemoteObject implements IServerRMI {
      */
     @Override
     public void abrirValvula() throws RemoteException {
-        if (!this.estaAbierta) {
-            this.estaAbierta = true;
-            System.out.printf("%s | Se abrió la electrovalvula %d\n", this.getTiempo(), id);
-        }
+        valvula.abrir();
     }
 
     /**
@@ -84,15 +75,6 @@ public class ServerRMI extends UnicastRemoteObject implements IServerRMI {
      * @throws RemoteException si ocurre un error en la invocación remota.
      */
     public void cerrarValvula() throws RemoteException {
-        if (this.estaAbierta) {
-            this.estaAbierta = false;
-            System.out.printf("%s | Se cerró la electrovalvula %d\n", this.getTiempo(), id);
-        }
-    }
-
-    private String getTiempo(){
-        LocalDateTime myDateObj = LocalDateTime.now();
-        DateTimeFormatter myFormatObj = DateTimeFormatter.ofPattern("HH:mm:ss");
-        return myDateObj.format(myFormatObj);
+        valvula.cerrar();
     }
 }
@@ -0,0 +1,121 @@
+import rmi.ComandoValvula;
+import rmi.EstadoLote;
+import rmi.IServidorValvulas;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Servidor RMI que expone en lote todas las electroválvulas del proceso.
+ *
+ * <p>Un controlador con muchas parcelas abre y cierra varias válvulas con una sola
+ * llamada a {@link #aplicar} en lugar de una por válvula, y con {@link #estados()}
+ * revisa todas a la vez. Se publica en el mismo registro que {@link ServerRMI}, con el
+ * nombre {@link #NOMBRE}.</p>
+ *
+ * <p>Para que los lotes se puedan reintentar, se recuerda el último número de secuencia
+ * aplicado de cada cliente: un lote repetido (la respuesta se perdió y el cliente lo
+ * reenvía) o atrasado (llega después de uno posterior) no se vuelve a aplicar, y se
+ * responde con el estado actual. Así, un lote viejo nunca reabre una válvula que un
+ * lote más nuevo cerró.</p>
+ *
+ * <p>Cada arranque del controlador se presenta como un cliente nuevo, así que los
+ * clientes que no envían lotes durante {@code inactivoMs} se olvidan. Los reintentos y
+ * los lotes atrasados llegan segundos después del original, mucho antes de ese plazo; un
+ * cliente olvidado que vuelve simplemente empieza de nuevo su secuencia.</p>
+ */
+public class ServidorValvulas extends UnicastRemoteObject implements IServidorValvulas {
+
+    /**
+     * Nombre con el que se publica en el registro RMI.
+     */
+    public static final String NOMBRE = "ServidorValvulas";
+
+    /** Electroválvulas del proceso, por id. */
+    private final Map<Integer, Electrovalvula> valvulas = new TreeMap<>();
+
+    // Último lote aplicado de un cliente y cuándo llegó
+    private record Secuencia(long ultima, long recibidaMs) {
+    }
+
+    /** Último número de secuencia aplicado de cada cliente. Con el lock del servidor. */
+    private final Map<String, Secuencia> ultimaSecuencia = new HashMap<>();
+
+    /** Tiempo sin lotes tras el cual se olvida a un cliente. */
+    private final long inactivoMs;
+
+    /** Instante de la última búsqueda de clientes inactivos. Con el lock del servidor. */
+    private long ultimaLimpieza = System.currentTimeMillis();
+
+    /**
+     * @param valvulas   electroválvulas que expone el servidor.
+     * @param inactivoMs tiempo sin lotes tras el cual se olvida la secuencia de un cliente.
+     * @throws RemoteException si ocurre un error al exportar el objeto RMI.
+     */
+    public ServidorValvulas(Collection<Electrovalvula> valvulas, long inactivoMs) throws RemoteException {
+        super();
+        this.inactivoMs = inactivoMs;
+        for (Electrovalvula valvula : valvulas) {
+            this.valvulas.put(valvula.getId(), valvula);
+        }
+    }
+
+    /**
+     * @return la cantidad de electroválvulas que expone.
+     */
+    public int cantidad() {
+        return valvulas.size();
+    }
+
+    @Override
+    public synchronized EstadoLote aplicar(String cliente, long secuencia, List<ComandoValvula> comandos) throws RemoteException {
+        long ahora = System.currentTimeMillis();
+        olvidarInactivos(ahora);
+        Secuencia anterior = ultimaSecuencia.get(cliente);
+        if (anterior != null && secuencia <= anterior.ultima()) {
+            return new EstadoLote(anterior.ultima(), false, estados());
+        }
+        for (ComandoValvula comando : comandos) {
+            Electrovalvula valvula = valvulas.get(comando.id());
+            if (valvula == null) {
+                System.err.println("Comando de " + cliente + " para la electrovalvula " + comando.id() + ", que no está en este proceso");
+            } else if (comando.abrir()) {
+                valvula.abrir();
+            } else {
+                valvula.cerrar();
+            }
+        }
+        ultimaSecuencia.put(cliente, new Secuencia(secuencia, ahora));
+        return new EstadoLote(secuencia, true, estados());
+    }
+
+    /**
+     * Quita las secuencias de los clientes que no enviaron lotes en {@link #inactivoMs}.
+     * Recorre el mapa a lo sumo una vez por ese plazo. Se llama con el lock del servidor.
+     */
+    private void olvidarInactivos(long ahora) {
+        if (ahora - ultimaLimpieza < inactivoMs) {
+            return;
+        }
+        ultimaLimpieza = ahora;
+        int antes = ultimaSecuencia.size();
+        ultimaSecuencia.values().removeIf(s -> ahora - s.recibidaMs() >= inactivoMs);
+        if (ultimaSecuencia.size() < antes) {
+            System.out.println("Olvidados " + (antes - ultimaSecuencia.size()) + " cliente(s) inactivo(s)");
+        }
+    }
+
+    @Override
+    public Map<Integer, Boolean> estados() throws RemoteException {
+        Map<Integer, Boolean> estados = new HashMap<>();
+        for (Electrovalvula valvula : valvulas.values()) {
+            estados.put(valvula.getId(), valvula.estaAbierta());
+        }
+        return estados;
+    }
+}
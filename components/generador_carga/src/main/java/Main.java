@@ -0,0 +1,39 @@
+import carga.Configuracion;
+import carga.GeneradorCarga;
+
+import java.rmi.RemoteException;
+
+/**
+ * Generador de carga del invernadero: simula en un solo proceso muchas sondas de
+ * humedad, temporizadores y electroválvulas que hablan los mismos protocolos que los
+ * componentes reales, y mide cómo responde el controlador.
+ *
+ * <p>Se configura con variables de entorno (ver {@link Configuracion#desdeEntorno()}).
+ * El controlador debe apuntar sus electroválvulas a este proceso
+ * ({@code VALVULA_HOST}, {@code VALVULA_MAESTRA_HOST}) con el mismo
+ * {@code VALVULA_BASE_PORT} y {@code VALVULAS_POR_PROCESO}.</p>
+ *
+ * <b>Ejemplo:</b><br>
+ * {@code CARGA_SONDAS=2000 CARGA_TEMPORIZADORES=2000 CARGA_VALVULAS=2000 VALVULAS_POR_PROCESO=500
+ * CARGA_ESCALA_TIEMPO=0.01 CARGA_DURACION_S=300 java -jar generadorCarga.jar}
+ */
+public class Main {
+
+    public static void main(String[] args) throws RemoteException, InterruptedException {
+        Configuracion cfg = Configuracion.desdeEntorno();
+        System.out.println("Generador de carga: " + cfg);
+
+        GeneradorCarga generador = new GeneradorCarga(cfg);
+        generador.iniciar();
+
+        if (cfg.duracionS() > 0) {
+            Thread.sleep(cfg.duracionS() * 1000);
+        } else {
+            // Hasta que se detenga el proceso; el reporte final sale igual
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.print(generador.detener())));
+            Thread.currentThread().join();
+        }
+        System.out.print(generador.detener());
+        System.exit(0);
+    }
+}
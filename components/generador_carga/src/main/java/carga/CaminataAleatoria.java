@@ -0,0 +1,70 @@
+package carga;
+
+import java.util.SplittableRandom;
+
+/**
+ * Caminata aleatoria reproducible para el valor que mide un dispositivo simulado.
+ *
+ * <p>Cada paso suma un desvío normal de media 0 y desvío {@code paso}; al salir del
+ * rango el valor se refleja en el borde. La secuencia depende sólo de la semilla de la
+ * corrida y del id del dispositivo, no del orden en que corren los hilos, así que dos
+ * corridas con la misma semilla envían exactamente los mismos valores.</p>
+ */
+public class CaminataAleatoria {
+
+    private final SplittableRandom azar;
+    private final double minimo;
+    private final double maximo;
+    private final double paso;
+    private double valor;
+
+    /**
+     * @param semilla semilla de la corrida.
+     * @param id      id del dispositivo; separa su secuencia de la de los demás. Los
+     *                sensores globales usan ids negativos.
+     * @param minimo  menor valor posible.
+     * @param maximo  mayor valor posible.
+     * @param paso    desvío estándar de cada paso.
+     */
+    public CaminataAleatoria(long semilla, int id, double minimo, double maximo, double paso) {
+        this.azar = new SplittableRandom(semilla ^ (0x9E3779B97F4A7C15L * (id + 1)));
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.paso = paso;
+        this.valor = minimo + azar.nextDouble() * (maximo - minimo);
+    }
+
+    /**
+     * Avanza un paso.
+     *
+     * @return el nuevo valor.
+     */
+    public double siguiente() {
+        double nuevo = valor + normal() * paso;
+        // Reflejar en los bordes; con pasos mayores que el rango se recorta
+        if (nuevo < minimo) {
+            nuevo = Math.min(maximo, 2 * minimo - nuevo);
+        } else if (nuevo > maximo) {
+            nuevo = Math.max(minimo, 2 * maximo - nuevo);
+        }
+        valor = nuevo;
+        return valor;
+    }
+
+    /**
+     * @return un valor uniforme en {@code [0, 1)} de la misma secuencia, para decisiones
+     * que deben ser reproducibles (por ejemplo, el desfase inicial).
+     */
+    public double uniforme() {
+        return azar.nextDouble();
+    }
+
+    /**
+     * Normal estándar por Box-Muller, con la secuencia del propio dispositivo.
+     */
+    private double normal() {
+        double u = 1.0 - azar.nextDouble(); // En (0, 1], para el logaritmo
+        double v = azar.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+    }
+}
@@ -0,0 +1,104 @@
+package carga;
+
+/**
+ * Parámetros de una corrida del generador de carga.
+ *
+ * <p>Los dispositivos simulados usan ids consecutivos desde {@code primerId}: las sondas
+ * de humedad, los temporizadores y las electroválvulas del mismo id corresponden a la
+ * misma parcela del controlador.</p>
+ *
+ * @param controladorHost     host del controlador.
+ * @param controladorPuerto   puerto TCP del controlador.
+ * @param semilla             semilla de las caminatas y los desfases; fija toda la secuencia de valores.
+ * @param primerId            id del primer dispositivo de cada tipo.
+ * @param sondas              cantidad de sondas de humedad.
+ * @param temporizadores      cantidad de temporizadores.
+ * @param valvulas            cantidad de electroválvulas de parcelas.
+ * @param clima               si se simulan también los sensores globales de temperatura e
+ *                            iluminación; sin ellos el INR no pasa de 0,5 y ninguna parcela riega.
+ * @param periodoMs           período de lectura de cada sonda.
+ * @param pasoHumedad         desvío de cada paso de la caminata de humedad, en puntos porcentuales.
+ * @param binario             si las sondas usan el protocolo binario en lugar del de texto.
+ * @param loteTamano          lecturas por envío de cada sonda (1 = sin lotes).
+ * @param conEmision          si las líneas de texto llevan el instante de emisión, para las
+ *                            latencias que mide el controlador con {@code LATENCIA_MEDIR}.
+ * @param rampa               perfil de conexión de sondas y temporizadores.
+ * @param rampaMs             duración de la rampa.
+ * @param escalones           grupos de la rampa {@link PerfilRampa#ESCALONES}.
+ * @param escalaTiempo        factor que se aplica a la duración de las cuentas de los temporizadores.
+ * @param duracionS           duración de la corrida; 0 la deja correr hasta que se detenga el proceso.
+ * @param reporteS            período del reporte.
+ * @param valvulaBasePuerto   puerto base de las electroválvulas, como en el controlador.
+ * @param valvulasPorProceso  electroválvulas por proceso, como en el controlador.
+ * @param valvulaMaestra      si se simula también la Válvula Maestra.
+ * @param maestraPuerto       puerto de la Válvula Maestra.
+ * @param maestraId           id de la Válvula Maestra.
+ */
+public record Configuracion(String controladorHost, int controladorPuerto, long semilla, int primerId,
+                            int sondas, int temporizadores, int valvulas, boolean clima, long periodoMs,
+                            double pasoHumedad, boolean binario, int loteTamano, boolean conEmision,
+                            PerfilRampa rampa, long rampaMs, int escalones, double escalaTiempo, long duracionS, long reporteS,
+                            int valvulaBasePuerto, int valvulasPorProceso, boolean valvulaMaestra,
+                            int maestraPuerto, int maestraId) {
+
+    /**
+     * Lee la configuración de las variables de entorno. Las del controlador, el protocolo, las
+     * electroválvulas y las latencias tienen los mismos nombres que en los demás componentes; las
+     * propias del generador empiezan con {@code CARGA_}.
+     *
+     * @return la configuración.
+     */
+    public static Configuracion desdeEntorno() {
+        return new Configuracion(
+                texto("CONTROLADOR_HOST", "localhost"),
+                (int) entero("CONTROLADOR_PORT", 20000),
+                entero("CARGA_SEMILLA", 1),
+                (int) entero("CARGA_PRIMER_ID", 0),
+                (int) entero("CARGA_SONDAS", 10),
+                (int) entero("CARGA_TEMPORIZADORES", 10),
+                (int) entero("CARGA_VALVULAS", 10),
+                Boolean.parseBoolean(texto("CARGA_CLIMA", "true")),
+                entero("CARGA_PERIODO_MS", 1000),
+                Double.parseDouble(texto("CARGA_PASO_HUMEDAD", "2.0")),
+                "binario".equalsIgnoreCase(texto("PROTOCOLO", "texto")),
+                (int) entero("LOTE_TAMANO", 1),
+                Boolean.parseBoolean(texto("LATENCIA_MEDIR", "false")),
+                PerfilRampa.desde(texto("CARGA_RAMPA", "lineal")),
+                entero("CARGA_RAMPA_MS", 10000),
+                (int) entero("CARGA_ESCALONES", 5),
+                Double.parseDouble(texto("CARGA_ESCALA_TIEMPO", "1.0")),
+                entero("CARGA_DURACION_S", 0),
+                entero("CARGA_REPORTE_S", 10),
+                (int) entero("VALVULA_BASE_PORT", 21000),
+                (int) entero("VALVULAS_POR_PROCESO", 1),
+                Boolean.parseBoolean(texto("CARGA_VALVULA_MAESTRA", "true")),
+                (int) entero("VALVULA_MAESTRA_PORT", 21005),
+                (int) entero("VALVULA_MAESTRA_ID", 5));
+    }
+
+    /**
+     * @return la mayor cantidad de dispositivos de un mismo tipo, que es la de parcelas simuladas.
+     */
+    public int parcelas() {
+        return Math.max(sondas, Math.max(temporizadores, valvulas));
+    }
+
+    /**
+     * @return si la electroválvula de la parcela {@code id} caería en el puerto y el id de la
+     *         Válvula Maestra; el controlador rechaza esas parcelas, así que no se simulan.
+     */
+    public boolean esValvulaMaestra(int id) {
+        int porProceso = Math.max(1, valvulasPorProceso);
+        return id == maestraId && valvulaBasePuerto + (id / porProceso) * porProceso == maestraPuerto;
+    }
+
+    private static String texto(String variable, String porDefecto) {
+        String valor = System.getenv(variable);
+        return (valor != null) ? valor : porDefecto;
+    }
+
+    private static long entero(String variable, long porDefecto) {
+        String valor = System.getenv(variable);
+        return (valor != null) ? Long.parseLong(valor.trim()) : porDefecto;
+    }
+}
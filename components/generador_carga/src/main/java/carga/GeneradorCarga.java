@@ -0,0 +1,164 @@
+package carga;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simula en una sola JVM las sondas de humedad, los temporizadores y las electroválvulas
+ * de muchas parcelas, para cargar al controlador con la escala de un invernadero real.
+ *
+ * <p>Las electroválvulas se publican primero, agrupadas en bloques de
+ * {@code VALVULAS_POR_PROCESO} como las aloja el componente electrovalvula: el bloque
+ * {@code p} en un registro RMI propio en el puerto {@code VALVULA_BASE_PORT + p * N}, así
+ * que el controlador las encuentra sin cambios de configuración salvo
+ * {@code VALVULA_HOST}. Luego se conectan los sensores globales de temperatura e
+ * iluminación y, según el {@link PerfilRampa}, las sondas y los temporizadores,
+ * intercalados por id. Cada sensor y cada temporizador corre en su hilo virtual; los
+ * vencimientos de los temporizadores, en un planificador compartido.</p>
+ */
+public class GeneradorCarga {
+
+    private final Configuracion cfg;
+    private final Metricas metricas;
+    private final ExecutorService dispositivos = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService plazos = Executors.newScheduledThreadPool(2,
+            Thread.ofPlatform().name("carga-plazos-", 0).daemon().factory());
+    private final ConcurrentLinkedQueue<Socket> sockets = new ConcurrentLinkedQueue<>();
+    private final List<Registry> registros = new ArrayList<>();
+    private volatile boolean activo = true;
+
+    /**
+     * @param cfg configuración de la corrida.
+     */
+    public GeneradorCarga(Configuracion cfg) {
+        this.cfg = cfg;
+        this.metricas = new Metricas(cfg.primerId(), cfg.parcelas());
+    }
+
+    /**
+     * Publica las electroválvulas, programa la conexión de sondas y temporizadores según
+     * la rampa y el reporte periódico. No bloquea.
+     *
+     * @throws RemoteException si no se puede crear algún registro RMI.
+     */
+    public void iniciar() throws RemoteException {
+        publicarValvulas();
+
+        // Los sensores globales no entran en la rampa: sin ellos ninguna parcela riega
+        if (cfg.clima()) {
+            dispositivos.execute(new SensorSimulado("temperatura", 0,
+                    new CaminataAleatoria(cfg.semilla(), -1, 10, 40, 1), cfg, metricas, this));
+            dispositivos.execute(new SensorSimulado("iluminacion", 0,
+                    new CaminataAleatoria(cfg.semilla(), -2, 0, 1000, 50), cfg, metricas, this));
+        }
+
+        int total = cfg.sondas() + cfg.temporizadores();
+        int orden = 0;
+        for (int i = 0; i < cfg.parcelas(); i++) {
+            int id = cfg.primerId() + i;
+            if (cfg.esValvulaMaestra(id)) {
+                System.out.println("Parcela " + id + " omitida: su electroválvula es la Válvula Maestra");
+                continue;
+            }
+            if (i < cfg.sondas()) {
+                CaminataAleatoria humedad = new CaminataAleatoria(cfg.semilla(), id, 0, 100, cfg.pasoHumedad());
+                conectar(new SensorSimulado("humedad", id, humedad, cfg, metricas, this), orden++, total);
+            }
+            if (i < cfg.temporizadores()) {
+                conectar(new TemporizadorSimulado(id, cfg, metricas, this, plazos), orden++, total);
+            }
+        }
+
+        if (cfg.reporteS() > 0) {
+            plazos.scheduleAtFixedRate(() -> System.out.print(metricas.reporte(cfg)),
+                    cfg.reporteS(), cfg.reporteS(), TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Detiene las sondas, cierra todas las conexiones y los registros RMI.
+     *
+     * @return el reporte final.
+     */
+    public String detener() {
+        activo = false;
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ya estaba cerrado
+            }
+        }
+        dispositivos.shutdownNow();
+        plazos.shutdownNow();
+        for (Registry registro : registros) {
+            try {
+                UnicastRemoteObject.unexportObject(registro, true);
+            } catch (NoSuchObjectException e) {
+                // Ya se había retirado
+            }
+        }
+        return metricas.reporte(cfg);
+    }
+
+    boolean activo() {
+        return activo;
+    }
+
+    /**
+     * Anota una conexión para cerrarla al detener la corrida.
+     */
+    void registrar(Socket socket) {
+        sockets.add(socket);
+    }
+
+    private void conectar(Runnable dispositivo, int orden, int total) {
+        long inicio = cfg.rampa().inicioMs(orden, total, cfg.rampaMs(), cfg.escalones());
+        plazos.schedule(() -> dispositivos.execute(dispositivo), inicio, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Crea un registro RMI por bloque de electroválvulas y publica en él un
+     * {@link ServidorValvulasSimulado}. La Válvula Maestra se suma al bloque que use su
+     * puerto o, si no hay ninguno, se publica en un registro propio.
+     */
+    private void publicarValvulas() throws RemoteException {
+        int porProceso = Math.max(1, cfg.valvulasPorProceso());
+        Map<Integer, Set<Integer>> bloques = new TreeMap<>();
+        for (int i = 0; i < cfg.valvulas(); i++) {
+            int id = cfg.primerId() + i;
+            if (cfg.esValvulaMaestra(id)) {
+                continue;
+            }
+            int puerto = cfg.valvulaBasePuerto() + (id / porProceso) * porProceso;
+            bloques.computeIfAbsent(puerto, p -> new TreeSet<>()).add(id);
+        }
+        if (cfg.valvulaMaestra()) {
+            bloques.computeIfAbsent(cfg.maestraPuerto(), p -> new TreeSet<>()).add(cfg.maestraId());
+        }
+
+        for (Map.Entry<Integer, Set<Integer>> bloque : bloques.entrySet()) {
+            Registry registro = LocateRegistry.createRegistry(bloque.getKey());
+            registros.add(registro);
+            registro.rebind(ServidorValvulasSimulado.NOMBRE, new ServidorValvulasSimulado(bloque.getValue(), metricas));
+        }
+        System.out.println("Publicadas " + cfg.valvulas() + " electroválvula(s)"
+                + (cfg.valvulaMaestra() ? " y la maestra" : "") + " en " + bloques.size() + " registro(s) RMI");
+    }
+}
@@ -0,0 +1,129 @@
+package carga;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias en microsegundos, seguro para varios hilos y sin locks.
+ *
+ * <p>Los valores se agrupan en escala logarítmica: cada potencia de dos se divide en
+ * {@link #SUBDIVISIONES} baldes iguales, así que un percentil se informa con un error
+ * relativo menor al 7 % en cualquier rango, desde microsegundos hasta horas, con un
+ * arreglo fijo de menos de mil contadores. Registrar es O(1).</p>
+ */
+public class Histograma {
+
+    private static final int BITS_SUBDIVISION = 4;
+    private static final int SUBDIVISIONES = 1 << BITS_SUBDIVISION;
+    private static final int BALDES = (64 - BITS_SUBDIVISION + 1) * SUBDIVISIONES;
+
+    private final String nombre;
+    private final AtomicLongArray cuentas = new AtomicLongArray(BALDES);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+
+    /**
+     * @param nombre nombre con el que aparece en el reporte.
+     */
+    public Histograma(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    /**
+     * Registra una latencia.
+     *
+     * @param nanos latencia en nanosegundos; los valores negativos se cuentan como 0.
+     */
+    public void registrarNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        cuentas.incrementAndGet(indice(micros));
+        total.increment();
+        suma.add(micros);
+        maximo.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * @return cantidad de valores registrados.
+     */
+    public long cantidad() {
+        return total.sum();
+    }
+
+    /**
+     * Valor por debajo del cual cae la fracción {@code p} de los registrados, redondeado
+     * hacia arriba al límite de su balde.
+     *
+     * @param p fracción entre 0 y 1.
+     * @return el percentil en microsegundos; 0 si no hay valores.
+     */
+    public long percentil(double p) {
+        long n = total.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(p * n));
+        long acumulado = 0;
+        for (int i = 0; i < BALDES; i++) {
+            acumulado += cuentas.get(i);
+            if (acumulado >= objetivo) {
+                return Math.min(limiteSuperior(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    /**
+     * @return resumen para el reporte: cantidad, media, p50, p90, p99 y máximo.
+     */
+    public String resumen() {
+        long n = total.sum();
+        if (n == 0) {
+            return String.format("%-22s sin datos", nombre);
+        }
+        return String.format("%-22s n=%d media=%s p50=%s p90=%s p99=%s máx=%s", nombre, n,
+                formatear(suma.sum() / n), formatear(percentil(0.50)), formatear(percentil(0.90)),
+                formatear(percentil(0.99)), formatear(maximo.get()));
+    }
+
+    /**
+     * Índice del balde de un valor: los menores que {@link #SUBDIVISIONES} tienen un balde
+     * cada uno; los demás, el de su potencia de dos y la subdivisión que marcan los bits
+     * siguientes al más alto.
+     */
+    static int indice(long valor) {
+        if (valor < SUBDIVISIONES) {
+            return (int) valor;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        int subdivision = (int) ((valor >>> (exponente - BITS_SUBDIVISION)) & (SUBDIVISIONES - 1));
+        return (exponente - BITS_SUBDIVISION + 1) * SUBDIVISIONES + subdivision;
+    }
+
+    /**
+     * Mayor valor que cae en el balde.
+     */
+    static long limiteSuperior(int indice) {
+        if (indice < SUBDIVISIONES) {
+            return indice;
+        }
+        int exponente = indice / SUBDIVISIONES + BITS_SUBDIVISION - 1;
+        int subdivision = indice % SUBDIVISIONES;
+        return ((SUBDIVISIONES + subdivision + 1L) << (exponente - BITS_SUBDIVISION)) - 1;
+    }
+
+    private static String formatear(long micros) {
+        if (micros < 1000) {
+            return micros + "us";
+        }
+        if (micros < 10_000_000) {
+            return String.format("%.1fms", micros / 1000.0);
+        }
+        return String.format("%.1fs", micros / 1_000_000.0);
+    }
+}
@@ -0,0 +1,126 @@
+package carga;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores y latencias de una corrida.
+ *
+ * <p>Como el generador simula a la vez la sonda, el temporizador y la electroválvula de
+ * cada parcela, puede medir cuánto tarda el controlador en reaccionar sin instrumentarlo:</p>
+ * <ul>
+ *     <li><b>muestra→apertura</b>: desde el envío de la última lectura de humedad de la
+ *     parcela hasta que su electroválvula recibe la orden de abrir. Si la orden tarda más
+ *     que un período de lectura, la lectura que la provocó ya no es la última y la medida
+ *     se queda corta.</li>
+ *     <li><b>vencimiento→cierre</b>: desde que el temporizador de la parcela envía
+ *     {@code VENCIDO} hasta que su electroválvula recibe la orden de cerrar.</li>
+ * </ul>
+ *
+ * <p>Además registra el atraso del propio generador respecto del instante programado
+ * para cada lectura, para distinguir un controlador lento de un generador saturado, y
+ * el tiempo que bloquea cada escritura en el socket.</p>
+ */
+public class Metricas {
+
+    final Histograma atraso = new Histograma("atraso del generador");
+    final Histograma escritura = new Histograma("escritura de lecturas");
+    final Histograma muestraApertura = new Histograma("muestra→apertura");
+    final Histograma vencimientoCierre = new Histograma("vencimiento→cierre");
+
+    final AtomicInteger sondasConectadas = new AtomicInteger();
+    final AtomicInteger temporizadoresConectados = new AtomicInteger();
+    final LongAdder lecturas = new LongAdder();
+    final LongAdder comandos = new LongAdder();
+    final LongAdder vencimientos = new LongAdder();
+    final LongAdder lotesValvulas = new LongAdder();
+    final LongAdder aperturas = new LongAdder();
+    final LongAdder cierres = new LongAdder();
+    final LongAdder errores = new LongAdder();
+
+    private final int primerId;
+
+    // Instante (System.nanoTime) del último evento de cada parcela; 0 si no hay uno pendiente
+    private final AtomicLongArray ultimaLectura;
+    private final AtomicLongArray ultimoVencimiento;
+
+    private final long inicio = System.nanoTime();
+    private long lecturasAnteriores;
+    private long reporteAnterior = inicio;
+
+    /**
+     * @param primerId id de la primera parcela simulada.
+     * @param parcelas cantidad de parcelas simuladas.
+     */
+    public Metricas(int primerId, int parcelas) {
+        this.primerId = primerId;
+        this.ultimaLectura = new AtomicLongArray(parcelas);
+        this.ultimoVencimiento = new AtomicLongArray(parcelas);
+    }
+
+    void lecturaEnviada(int id, long nanos) {
+        int i = id - primerId;
+        if (i >= 0 && i < ultimaLectura.length()) {
+            ultimaLectura.set(i, nanos);
+        }
+    }
+
+    void vencimientoEnviado(int id, long nanos) {
+        vencimientos.increment();
+        int i = id - primerId;
+        if (i >= 0 && i < ultimoVencimiento.length()) {
+            ultimoVencimiento.set(i, nanos);
+        }
+    }
+
+    void valvulaAbierta(int id, long nanos) {
+        aperturas.increment();
+        int i = id - primerId;
+        if (i >= 0 && i < ultimaLectura.length()) {
+            long lectura = ultimaLectura.get(i);
+            if (lectura != 0) {
+                muestraApertura.registrarNanos(nanos - lectura);
+            }
+        }
+    }
+
+    void valvulaCerrada(int id, long nanos) {
+        cierres.increment();
+        int i = id - primerId;
+        if (i >= 0 && i < ultimoVencimiento.length()) {
+            long vencimiento = ultimoVencimiento.getAndSet(i, 0); // Sólo el primer cierre tras el vencimiento
+            if (vencimiento != 0) {
+                vencimientoCierre.registrarNanos(nanos - vencimiento);
+            }
+        }
+    }
+
+    /**
+     * Arma el reporte con los totales y el ritmo de lecturas desde el reporte anterior.
+     *
+     * @param cfg configuración de la corrida, para mostrar cuántos dispositivos faltan conectar.
+     * @return el reporte, en varias líneas.
+     */
+    public synchronized String reporte(Configuracion cfg) {
+        long ahora = System.nanoTime();
+        long total = lecturas.sum();
+        double segundos = (ahora - reporteAnterior) / 1e9;
+        double ritmo = (segundos > 0) ? (total - lecturasAnteriores) / segundos : 0;
+        lecturasAnteriores = total;
+        reporteAnterior = ahora;
+
+        StringBuilder reporte = new StringBuilder(String.format(
+                "========== CARGA %ds ==========%n"
+                        + "  sondas=%d/%d temporizadores=%d/%d lecturas=%d (%.1f/s)%n"
+                        + "  comandos=%d vencimientos=%d lotes válvulas=%d aperturas=%d cierres=%d errores=%d%n",
+                (ahora - inicio) / 1_000_000_000L, sondasConectadas.get(), cfg.sondas(),
+                temporizadoresConectados.get(), cfg.temporizadores(), total, ritmo, comandos.sum(),
+                vencimientos.sum(), lotesValvulas.sum(), aperturas.sum(), cierres.sum(), errores.sum()));
+        for (Histograma histograma : List.of(muestraApertura, vencimientoCierre, escritura, atraso)) {
+            reporte.append("  ").append(histograma.resumen()).append(System.lineSeparator());
+        }
+        return reporte.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package carga;
+
+/**
+ * Cómo se reparten en el tiempo las conexiones de los dispositivos al arrancar.
+ */
+public enum PerfilRampa {
+
+    /** Todos se conectan al arrancar. */
+    INMEDIATA,
+
+    /** Uno tras otro, a intervalos iguales a lo largo de la rampa. */
+    LINEAL,
+
+    /** En grupos del mismo tamaño, a intervalos iguales a lo largo de la rampa. */
+    ESCALONES;
+
+    /**
+     * Interpreta el nombre de un perfil, sin distinguir mayúsculas.
+     *
+     * @param nombre {@code "inmediata"}, {@code "lineal"} o {@code "escalones"}.
+     * @return el perfil correspondiente.
+     * @throws IllegalArgumentException si el nombre no corresponde a ningún perfil.
+     */
+    public static PerfilRampa desde(String nombre) {
+        return PerfilRampa.valueOf(nombre.trim().toUpperCase());
+    }
+
+    /**
+     * Momento en que se conecta un dispositivo.
+     *
+     * @param indice     posición del dispositivo en el orden de conexión.
+     * @param total      cantidad de dispositivos.
+     * @param duracionMs duración de la rampa.
+     * @param escalones  cantidad de grupos, para {@link #ESCALONES}.
+     * @return milisegundos desde el arranque.
+     */
+    public long inicioMs(int indice, int total, long duracionMs, int escalones) {
+        if (total <= 1 || duracionMs <= 0) {
+            return 0;
+        }
+        return switch (this) {
+            case INMEDIATA -> 0;
+            case LINEAL -> indice * duracionMs / total;
+            case ESCALONES -> {
+                int grupos = Math.max(1, Math.min(escalones, total));
+                long grupo = (long) indice * grupos / total;
+                yield grupo * duracionMs / grupos;
+            }
+        };
+    }
+}
@@ -0,0 +1,143 @@
+package carga;
+
+import protocolo.LineaTexto;
+import protocolo.TramaBinaria;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sensor simulado: se conecta al controlador como un sensor real y le envía una
+ * lectura cada {@link Configuracion#periodoMs()}. Las sondas de humedad tienen el id de
+ * su parcela; los sensores de temperatura e iluminación son globales y no tienen id.
+ *
+ * <p>Habla el mismo protocolo que {@code EmisorLecturas} de los sensores: en texto, el
+ * saludo con el tipo (y el id en las sondas) y una {@link LineaTexto} por envío, con las
+ * lecturas de un lote y sus desfases; en binario, el saludo {@link TramaBinaria#MAGICO} y
+ * una trama de versión 1, o de versión 2 si hay lotes. Con
+ * {@link Configuracion#conEmision()} la línea termina en {@code @} y el instante de la
+ * lectura más reciente.</p>
+ *
+ * <p>Las lecturas se programan a intervalos fijos desde un desfase inicial propio, no
+ * un período después de la anterior, así que el ritmo no se degrada si una escritura
+ * demora; cada atraso se registra. Los valores salen de una {@link CaminataAleatoria}.</p>
+ */
+class SensorSimulado implements Runnable {
+
+    private final String tipo;
+    private final int id;
+    private final boolean sonda;
+    private final Configuracion cfg;
+    private final Metricas metricas;
+    private final GeneradorCarga generador;
+    private final CaminataAleatoria caminata;
+    private final long desfaseNanos;
+
+    /**
+     * @param tipo      tipo de sensor: {@code humedad}, {@code temperatura} o {@code iluminacion}.
+     * @param id        id de la parcela en las sondas de humedad; se ignora en los globales.
+     * @param caminata  origen de los valores.
+     * @param cfg       configuración de la corrida.
+     * @param metricas  destino de los contadores y latencias.
+     * @param generador generador al que pertenece.
+     */
+    SensorSimulado(String tipo, int id, CaminataAleatoria caminata, Configuracion cfg, Metricas metricas,
+                   GeneradorCarga generador) {
+        this.tipo = tipo;
+        this.sonda = tipo.equals("humedad");
+        this.id = sonda ? id : 0;
+        this.caminata = caminata;
+        this.cfg = cfg;
+        this.metricas = metricas;
+        this.generador = generador;
+        // Desfase reproducible, para no enviar todas las sondas en el mismo instante
+        this.desfaseNanos = (long) (caminata.uniforme() * TimeUnit.MILLISECONDS.toNanos(cfg.periodoMs()));
+    }
+
+    @Override
+    public void run() {
+        boolean conectada = false;
+        try (Socket socket = new Socket(cfg.controladorHost(), cfg.controladorPuerto())) {
+            generador.registrar(socket);
+            OutputStream salida = socket.getOutputStream();
+            PrintWriter pw = null;
+            DataOutputStream binaria = null;
+            if (cfg.binario()) {
+                binaria = new DataOutputStream(new BufferedOutputStream(salida));
+                TramaBinaria.escribirSaludo(binaria);
+            } else {
+                pw = new PrintWriter(salida, true);
+                pw.println(tipo);
+                if (sonda) {
+                    pw.println(id);
+                }
+            }
+            if (sonda) {
+                metricas.sondasConectadas.incrementAndGet();
+                conectada = true;
+            }
+
+            int codigo = TramaBinaria.codigoTipo(tipo);
+            int tamanoLote = Math.max(1, Math.min(TramaBinaria.MAX_LOTE, cfg.loteTamano()));
+            List<TramaBinaria> pendientes = new ArrayList<>(tamanoLote);
+            long periodoNanos = TimeUnit.MILLISECONDS.toNanos(cfg.periodoMs());
+            long secuencia = 0;
+            long proxima = System.nanoTime() + desfaseNanos;
+            while (generador.activo()) {
+                long espera = proxima - System.nanoTime();
+                if (espera > 0) {
+                    TimeUnit.NANOSECONDS.sleep(espera);
+                }
+                metricas.atraso.registrarNanos(System.nanoTime() - proxima);
+                proxima += periodoNanos;
+
+                // Como los sensores reales: el de humedad genera un float, los demás un double
+                double valor = sonda ? (float) caminata.siguiente() : caminata.siguiente();
+                pendientes.add(new TramaBinaria(codigo, id, secuencia++, System.currentTimeMillis(), valor));
+                if (pendientes.size() < tamanoLote) {
+                    continue;
+                }
+
+                long antes = System.nanoTime();
+                if (pw != null) {
+                    pw.println(LineaTexto.armar(pendientes, cfg.conEmision(), System.currentTimeMillis()));
+                    if (pw.checkError()) {
+                        throw new IOException("el controlador cerró la conexión");
+                    }
+                } else {
+                    if (pendientes.size() == 1) {
+                        pendientes.get(0).escribir(binaria);
+                    } else {
+                        TramaBinaria.escribirLote(binaria, pendientes);
+                    }
+                    binaria.flush();
+                }
+                long despues = System.nanoTime();
+                metricas.escritura.registrarNanos(despues - antes);
+                metricas.lecturas.add(pendientes.size());
+                if (sonda) {
+                    metricas.lecturaEnviada(id, despues);
+                }
+                pendientes.clear();
+            }
+        } catch (IOException e) {
+            if (generador.activo()) {
+                metricas.errores.increment();
+                System.err.println("Sensor " + tipo + (sonda ? " " + id : "") + ": " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (conectada) {
+                metricas.sondasConectadas.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package carga;
+
+import rmi.ComandoValvula;
+import rmi.EstadoLote;
+import rmi.IServidorValvulas;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Proceso electrovalvula simulado: expone un bloque de electroválvulas con la misma
+ * interfaz en lote que {@code ServidorValvulas} del componente electrovalvula, incluida
+ * la secuencia por cliente que descarta los lotes repetidos o atrasados.
+ *
+ * <p>No escribe nada por consola por cada válvula; en su lugar informa cada apertura y
+ * cada cierre a {@link Metricas}.</p>
+ */
+class ServidorValvulasSimulado extends UnicastRemoteObject implements IServidorValvulas {
+
+    /**
+     * Nombre con el que se publica en el registro RMI, el mismo que usa el controlador.
+     */
+    static final String NOMBRE = "ServidorValvulas";
+
+    private final Metricas metricas;
+
+    // Con el lock del servidor
+    private final Map<Integer, Boolean> abiertas = new TreeMap<>();
+    private final Map<String, Long> ultimaSecuencia = new HashMap<>();
+
+    /**
+     * @param ids      ids de las electroválvulas del bloque.
+     * @param metricas destino de las aperturas y cierres.
+     * @throws RemoteException si ocurre un error al exportar el objeto RMI.
+     */
+    ServidorValvulasSimulado(Collection<Integer> ids, Metricas metricas) throws RemoteException {
+        super();
+        this.metricas = metricas;
+        for (int id : ids) {
+            abiertas.put(id, false);
+        }
+    }
+
+    @Override
+    public synchronized EstadoLote aplicar(String cliente, long secuencia, List<ComandoValvula> comandos) throws RemoteException {
+        long ahora = System.nanoTime();
+        metricas.lotesValvulas.increment();
+        long ultima = ultimaSecuencia.getOrDefault(cliente, Long.MIN_VALUE);
+        if (secuencia <= ultima) {
+            return new EstadoLote(ultima, false, new HashMap<>(abiertas));
+        }
+        for (ComandoValvula comando : comandos) {
+            Boolean anterior = abiertas.get(comando.id());
+            if (anterior == null) {
+                metricas.errores.increment();
+            } else if (anterior != comando.abrir()) {
+                abiertas.put(comando.id(), comando.abrir());
+                if (comando.abrir()) {
+                    metricas.valvulaAbierta(comando.id(), ahora);
+                } else {
+                    metricas.valvulaCerrada(comando.id(), ahora);
+                }
+            }
+        }
+        ultimaSecuencia.put(cliente, secuencia);
+        return new EstadoLote(secuencia, true, new HashMap<>(abiertas));
+    }
+
+    @Override
+    public synchronized Map<Integer, Boolean> estados() throws RemoteException {
+        return new HashMap<>(abiertas);
+    }
+}
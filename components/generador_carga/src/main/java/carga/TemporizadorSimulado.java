@@ -0,0 +1,142 @@
+package carga;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Temporizador simulado: se conecta al controlador como el componente temporizador y
+ * responde a sus comandos con los mismos eventos.
+ *
+ * <p>Envía {@code LISTO 0} al conectarse, {@code INICIADO s} al recibir un comando
+ * {@code s > 0} (precedido de {@code CANCELADO r} si había una cuenta en curso),
+ * {@code CANCELADO r} al recibir {@code 0} y {@code VENCIDO 0} al terminar la cuenta.
+ * La cuenta dura {@code s} segundos multiplicados por
+ * {@link Configuracion#escalaTiempo()}, para probar muchos ciclos de riego sin esperar
+ * los minutos reales; los eventos siguen informando segundos sin escalar.</p>
+ *
+ * <p>Como el temporizador, repite al final de cada evento el número del comando
+ * ({@code s n}) al que responde: el que inició la cuenta, o el de detención en su
+ * {@code CANCELADO}.</p>
+ */
+class TemporizadorSimulado implements Runnable {
+
+    private final int id;
+    private final Configuracion cfg;
+    private final Metricas metricas;
+    private final GeneradorCarga generador;
+    private final ScheduledExecutorService plazos;
+
+    private PrintWriter pw;
+
+    // Con el lock del temporizador
+    private ScheduledFuture<?> vencimiento;
+    private long venceNanos;
+    private long generacion;
+    // Número del comando que inició la cuenta en curso; vacío si no trajo número
+    private String comandoActual = "";
+
+    TemporizadorSimulado(int id, Configuracion cfg, Metricas metricas, GeneradorCarga generador,
+                         ScheduledExecutorService plazos) {
+        this.id = id;
+        this.cfg = cfg;
+        this.metricas = metricas;
+        this.generador = generador;
+        this.plazos = plazos;
+    }
+
+    @Override
+    public void run() {
+        boolean conectado = false;
+        try (Socket socket = new Socket(cfg.controladorHost(), cfg.controladorPuerto())) {
+            generador.registrar(socket);
+            BufferedReader br = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            pw = new PrintWriter(socket.getOutputStream(), true);
+            pw.println("temporizador");
+            pw.println(id);
+            avisar("LISTO", 0, "");
+            metricas.temporizadoresConectados.incrementAndGet();
+            conectado = true;
+
+            String linea;
+            while ((linea = br.readLine()) != null) {
+                try {
+                    String[] campos = linea.trim().split(" +");
+                    if (campos.length > 2) {
+                        throw new NumberFormatException();
+                    }
+                    procesar(Integer.parseInt(campos[0]),
+                            (campos.length == 2) ? String.valueOf(Long.parseLong(campos[1])) : "");
+                } catch (NumberFormatException e) {
+                    metricas.errores.increment();
+                    System.err.println("Temporizador " + id + ": comando no válido: " + linea);
+                }
+            }
+        } catch (IOException e) {
+            if (generador.activo()) {
+                metricas.errores.increment();
+                System.err.println("Temporizador " + id + ": " + e.getMessage());
+            }
+        } finally {
+            synchronized (this) {
+                generacion++;
+                if (vencimiento != null) {
+                    vencimiento.cancel(false);
+                }
+            }
+            if (conectado) {
+                metricas.temporizadoresConectados.decrementAndGet();
+            }
+        }
+    }
+
+    private synchronized void procesar(int segundos, String comando) {
+        metricas.comandos.increment();
+        if (vencimiento != null) {
+            vencimiento.cancel(false);
+            vencimiento = null;
+            avisar("CANCELADO", restantes(), (segundos > 0) ? comandoActual : comando);
+        } else if (segundos <= 0) {
+            avisar("CANCELADO", 0, comando); // Se confirma aunque no estuviera contando
+        }
+        long numero = ++generacion;
+        if (segundos > 0) {
+            comandoActual = comando;
+            avisar("INICIADO", segundos, comando);
+            long duracionNanos = (long) (TimeUnit.SECONDS.toNanos(segundos) * cfg.escalaTiempo());
+            venceNanos = System.nanoTime() + duracionNanos;
+            try {
+                vencimiento = plazos.schedule(() -> vencer(numero), duracionNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // La corrida se está deteniendo
+            }
+        }
+    }
+
+    private synchronized void vencer(long numero) {
+        if (numero != generacion) {
+            return; // Reemplazada por un comando posterior
+        }
+        vencimiento = null;
+        avisar("VENCIDO", 0, comandoActual);
+        metricas.vencimientoEnviado(id, System.nanoTime());
+    }
+
+    /**
+     * Segundos sin escalar que le faltan a la cuenta en curso, redondeados hacia arriba.
+     */
+    private int restantes() {
+        double nanos = Math.max(0, venceNanos - System.nanoTime()) / cfg.escalaTiempo();
+        return (int) Math.ceil(nanos / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private void avisar(String evento, int segundos, String comando) {
+        pw.println(comando.isEmpty() ? evento + " " + segundos : evento + " " + segundos + " " + comando);
+    }
+}
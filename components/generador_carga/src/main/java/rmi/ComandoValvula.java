@@ -0,0 +1,12 @@
+package rmi;
+
+import java.io.Serializable;
+
+/**
+ * Orden para una electroválvula dentro de un lote.
+ *
+ * @param id    electroválvula a la que va dirigida.
+ * @param abrir {@code true} para abrirla, {@code false} para cerrarla.
+ */
+public record ComandoValvula(int id, boolean abrir) implements Serializable {
+}
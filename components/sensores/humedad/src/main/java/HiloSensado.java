@@ -1,4 +1,5 @@
-import java.io.PrintWriter;
+import protocolo.EmisorLecturas;
+
 import java.net.Socket;
 
 public class HiloSensado extends Thread {
@@ -13,7 +14,7 @@ public class HiloSensado extends Thread {
     private Socket cnxServidor;
 
     /** Flujo de salida para enviar datos al servidor */
-    private PrintWriter pw;
+    private EmisorLecturas emisor;
 
     private boolean isAuto = true;
 
@@ -21,13 +22,13 @@ public class HiloSensado extends Thread {
      * Constructor principal del sensor de humedad.
      *
      * @param s  Socket de conexión con el servidor
-     * @param pw PrintWriter para enviar los datos al servidor
+     * @param emisor emisor de lecturas hacia el servidor (texto o binario)
      */
-    public HiloSensado(Socket s, PrintWriter pw) {
+    public HiloSensado(Socket s, EmisorLecturas emisor) {
         this.on = true;
         this.humedad = 0;
         this.cnxServidor = s;
-        this.pw = pw;
+        this.emisor = emisor;
         this.isAuto = true;
     }
 
@@ -91,7 +92,7 @@ public class HiloSensado extends Thread {
             }
 
             // Enviar valor al servidor
-            pw.println(this.humedad);
+            emisor.enviar(this.humedad);
 
             // Mostrar valor por consola
             System.out.println("Humedad: " + leerHumedad());
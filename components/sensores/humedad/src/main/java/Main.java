@@ -1,5 +1,6 @@
+import protocolo.EmisorLecturas;
+
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
@@ -20,7 +21,7 @@ public class Main {
         String id = args[0];
 
         InetAddress ipServidor = null;
-        PrintWriter pw;
+        EmisorLecturas emisor;
 
         try {
             String controladorHost = System.getenv("CONTROLADOR_HOST");
@@ -35,15 +36,11 @@ public class Main {
             Socket cliente = new Socket(ipServidor, Integer.parseInt(controladorPort));
             System.out.println("Conectado al servidor: " + cliente);
 
-            // Flujo de salida con autoflush activado para enviar datos
-            pw = new PrintWriter(cliente.getOutputStream(), true);
-
-            // Enviar tipo de dispositivo e identificador al servidor
-            pw.println("humedad");
-            pw.println(id);
+            // Enviar tipo de dispositivo e identificador al servidor, en texto o binario según PROTOCOLO
+            emisor = EmisorLecturas.abrir(cliente, "humedad", id);
 
             // Crear e iniciar el hilo que simula el sensado de humedad
-            HiloSensado sensor = new HiloSensado(cliente, pw);
+            HiloSensado sensor = new HiloSensado(cliente, emisor);
             sensor.start();
 
             // --- Lógica RMI ---
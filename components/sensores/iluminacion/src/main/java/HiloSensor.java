@@ -5,10 +5,11 @@
  *
  * Funcionalidades principales:
  *  - Genera valores aleatorios de iluminación en un rango de 0 a 100.
- *  - Envía periódicamente los valores generados al servidor mediante un PrintWriter.
+ *  - Envía periódicamente los valores generados al servidor mediante un EmisorLecturas.
  *  - Permite encender y apagar el sensado de forma controlada.
  */
-import java.io.PrintWriter;
+import protocolo.EmisorLecturas;
+
 import java.net.Socket;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -30,7 +31,7 @@ public class HiloSensor extends Thread {
     private double iluminacion;
 
     /** Canal de salida para enviar datos al servidor. */
-    private PrintWriter pw;
+    private EmisorLecturas emisor;
 
     /** Conexión con el servidor. */
     private Socket s;
@@ -41,12 +42,12 @@ public class HiloSensor extends Thread {
      * Constructor principal.
      *
      * @param s  el socket de conexión con el servidor
-     * @param pw flujo de salida para enviar lecturas de iluminación
+     * @param emisor emisor de lecturas hacia el servidor (texto o binario)
      */
-    public HiloSensor(Socket s, PrintWriter pw) {
+    public HiloSensor(Socket s, EmisorLecturas emisor) {
         this.on = true;              // El sensor arranca encendido
         this.iluminacion = 0.0;
-        this.pw = pw;
+        this.emisor = emisor;
         this.s = s;
     }
 
@@ -114,7 +115,7 @@ public class HiloSensor extends Thread {
                     this.iluminacion = generarIluminacion();
                 }
                 System.out.println(getTiempo() + " | Iluminacion: " + String.format("%.2f", leerIluminacion()));
-                pw.println(iluminacion);
+                emisor.enviar(iluminacion);
                 Thread.sleep(1000);
             } catch (InterruptedException ex) {
                 System.getLogger(HiloSensor.class.getName())
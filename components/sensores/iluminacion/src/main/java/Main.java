@@ -1,7 +1,7 @@
+import protocolo.EmisorLecturas;
 import rmi.ISensorRMI;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.Socket;
@@ -36,7 +36,7 @@ public class Main {
      */
     public static void main(String[] args) throws IOException, RemoteException, MalformedURLException {
         InetAddress ipServidor;
-        PrintWriter pw;
+        EmisorLecturas emisor;
 
         try {
             String controladorHost = System.getenv("CONTROLADOR_HOST");
@@ -51,10 +51,9 @@ public class Main {
             Socket cliente = new Socket(ipServidor, Integer.parseInt(controladorPort));
             System.out.println("Conectado al servidor: " + cliente);
 
-            pw = new PrintWriter(cliente.getOutputStream(), true);
-            pw.println("iluminacion");
+            emisor = EmisorLecturas.abrir(cliente, "iluminacion", null);
 
-            HiloSensor sensor = new HiloSensor(cliente, pw);
+            HiloSensor sensor = new HiloSensor(cliente, emisor);
             sensor.start();
 
             // --- Lógica RMI ---
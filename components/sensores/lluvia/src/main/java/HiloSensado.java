@@ -1,4 +1,5 @@
-import java.io.PrintWriter;
+import protocolo.EmisorLecturas;
+
 import java.net.Socket;
 
 /**
@@ -6,7 +7,7 @@ import java.net.Socket;
  *
  * <p>Extiende de {@link Thread} y se encarga de generar de forma periódica
  * datos aleatorios que representan si está lloviendo o no. Los valores generados
- * se envían a través de un {@link PrintWriter} conectado a un servidor.</p>
+ * se envían a través de un {@link EmisorLecturas} conectado a un servidor.</p>
  *
  * <p>El sensor utiliza una probabilidad aleatoria para determinar si llueve:</p>
  * <ul>
@@ -29,7 +30,7 @@ public class HiloSensado extends Thread {
     /** Conexión con el servidor. */
     private Socket cnxServidor;
     /** Flujo de salida para enviar datos al servidor. */
-    PrintWriter pw;
+    EmisorLecturas emisor;
 
     boolean isAuto = false;
 
@@ -37,14 +38,14 @@ public class HiloSensado extends Thread {
      * Crea un nuevo hilo de sensado para el sensor de lluvia.
      *
      * @param s  el {@link Socket} conectado al servidor.
-     * @param pw el {@link PrintWriter} asociado al socket para enviar datos.
+     * @param emisor emisor de lecturas hacia el servidor (texto o binario)
      */
-    public HiloSensado(Socket s, PrintWriter pw) {
+    public HiloSensado(Socket s, EmisorLecturas emisor) {
         this.on = true;
         this.lluvia = 0;
         this.probabilidad = 0;
         this.cnxServidor = s;
-        this.pw = pw;
+        this.emisor = emisor;
     }
 
     /**
@@ -108,7 +109,7 @@ public class HiloSensado extends Thread {
     public void run() {
         while (on) {
             generarLluvia();
-            pw.println(this.lluvia);
+            emisor.enviar(this.lluvia);
             System.out.println("L=" + this.lluvia);
 
             try {
@@ -1,5 +1,6 @@
+import protocolo.EmisorLecturas;
+
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.rmi.Naming;
@@ -36,8 +37,8 @@ public class Main {
      * <ul>
      *   <li>Obtiene la dirección IP del servidor ({@code localhost}).</li>
      *   <li>Establece la conexión con el servidor en el puerto {@code 20000}.</li>
-     *   <li>Crea un {@link PrintWriter} con autoflush para enviar datos al servidor.</li>
-     *   <li>Envía la cadena {@code "lluvia"} como identificación del sensor.</li>
+     *   <li>Crea un {@link EmisorLecturas}, que envía la identificación {@code "lluvia"}
+     *       en texto o en binario según la variable {@code PROTOCOLO}.</li>
      *   <li>Inicia un hilo de tipo {@link HiloSensado} para simular el envío de datos periódicos.</li>
      * </ul>
      *
@@ -45,7 +46,7 @@ public class Main {
      */
     public static void main(String[] args) {
         InetAddress ipServidor;
-        PrintWriter pw;
+        EmisorLecturas emisor;
         try {
             String controladorHost = System.getenv("CONTROLADOR_HOST");
             if (controladorHost == null) {
@@ -58,12 +59,10 @@ public class Main {
             ipServidor = InetAddress.getByName(controladorHost);
             Socket cliente = new Socket(ipServidor, Integer.parseInt(controladorPort));
             System.out.println("Conectado al servidor: " + cliente);
-            // PrintWriter con autoflush activado
-            pw = new PrintWriter(cliente.getOutputStream(), true);
             // Identifica el sensor al servidor
-            pw.println("lluvia");
+            emisor = EmisorLecturas.abrir(cliente, "lluvia", null);
             // Arranca el hilo de sensado
-            HiloSensado sensor = new HiloSensado(cliente, pw);
+            HiloSensado sensor = new HiloSensado(cliente, emisor);
             sensor.start();
 
             // --- Lógica RMI ---
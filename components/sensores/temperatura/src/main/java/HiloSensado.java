@@ -1,6 +1,6 @@
+import protocolo.EmisorLecturas;
 import rmi.ISensorRMI;
 
-import java.io.PrintWriter;
 import java.net.Socket;
 import java.rmi.RemoteException;
 
@@ -14,7 +14,7 @@ import java.rmi.RemoteException;
  * Funcionalidades principales:
  *  - Genera valores de temperatura con fluctuaciones aleatorias.
  *  - Mantiene la temperatura dentro de los límites -40°C y 125°C.
- *  - Envía periódicamente los valores al servidor usando PrintWriter.
+ *  - Envía periódicamente los valores al servidor usando un EmisorLecturas.
  *  - Permite encender y apagar el sensor.
  */
 public class HiloSensado extends Thread implements ISensorRMI {
@@ -29,7 +29,7 @@ public class HiloSensado extends Thread implements ISensorRMI {
     private Socket cnxServidor;
 
     // Flujo de salida para enviar los valores de temperatura
-    private PrintWriter pw;
+    private EmisorLecturas emisor;
 
     // Bandera para saber si el sensor esta en modo manual o automatico
     private boolean isAuto = true;
@@ -39,13 +39,13 @@ public class HiloSensado extends Thread implements ISensorRMI {
      * Constructor de la clase HiloSensado.
      * 
      * @param s  Socket de conexión al servidor.
-     * @param pw PrintWriter asociado al socket para enviar datos.
+     * @param emisor emisor de lecturas hacia el servidor (texto o binario)
      */
-    public HiloSensado(Socket s, PrintWriter pw) {
+    public HiloSensado(Socket s, EmisorLecturas emisor) {
         this.on = true;             // El sensor inicia encendido
         this.temperatura = 40;      // Valor inicial de la temperatura
         this.cnxServidor = s;       // Referencia al socket del servidor
-        this.pw = pw;               // PrintWriter para enviar datos
+        this.emisor = emisor;       // Emisor para enviar datos
     }
 
     /**
@@ -92,7 +92,7 @@ public class HiloSensado extends Thread implements ISensorRMI {
     /**
      * Método principal del hilo. Mientras el sensor esté encendido:
      *  - Genera un nuevo valor de temperatura.
-     *  - Lo envía al servidor mediante el PrintWriter.
+     *  - Lo envía al servidor mediante el EmisorLecturas.
      *  - Lo muestra en consola para depuración.
      *  - Espera 1 segundo antes de repetir el ciclo.
      */
@@ -102,7 +102,7 @@ public class HiloSensado extends Thread implements ISensorRMI {
             if (isAuto) {
             generarTemperatura();           // Genera un nuevo valor si esta en automatico
             }
-            pw.println(this.temperatura);      // Envía al servidor
+            emisor.enviar(this.temperatura);      // Envía al servidor
             System.out.println(temperatura);   // Muestra en consola
 
             try {
@@ -1,5 +1,6 @@
+import protocolo.EmisorLecturas;
+
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.Socket;
@@ -31,7 +32,7 @@ public class Main {
      */
     public static void main(String[] args) {
         InetAddress ipServidor = null;   // Dirección IP del servidor
-        PrintWriter pw;                  // Flujo de salida para enviar datos
+        EmisorLecturas emisor;           // Emisor de lecturas hacia el servidor
 
         try {
             String controladorHost = System.getenv("CONTROLADOR_HOST");
@@ -46,14 +47,11 @@ public class Main {
             Socket cliente = new Socket(ipServidor, Integer.parseInt(controladorPort));
             System.out.println("Conectado al servidor: " + cliente);
 
-            // Prepara el PrintWriter con autoflush activado para enviar datos
-            pw = new PrintWriter(cliente.getOutputStream(), true);
-
-            // Envía un mensaje inicial indicando el tipo de sensor
-            pw.println("temperatura");
+            // Envía un mensaje inicial indicando el tipo de sensor, en texto o binario según PROTOCOLO
+            emisor = EmisorLecturas.abrir(cliente, "temperatura", null);
 
             // Crea e inicia el hilo que simula el sensor de temperatura
-            HiloSensado sensor = new HiloSensado(cliente, pw);
+            HiloSensado sensor = new HiloSensado(cliente, emisor);
 
             sensor.start();
 
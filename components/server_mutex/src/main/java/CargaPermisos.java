@@ -0,0 +1,110 @@
+import rmi.IClienteEM;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prueba de carga de la entrega de tokens del servidor de exclusión mutua.
+ *
+ * <p>Corre una réplica sola y, en el mismo proceso, {@code clientes} clientes repartidos
+ * entre {@code recursos} recursos. Cada cliente pide su recurso, espera el token y lo
+ * devuelve enseguida, en un bucle. La entrega ({@code RecibirToken}) demora
+ * {@code latenciaMs}, como un controlador lento o lejano. Al terminar imprime los
+ * ciclos pedido-entrega-devolución por segundo.</p>
+ *
+ * <p>Uso: {@code java -cp serverMutex.jar CargaPermisos [recursos] [clientes] [latenciaMs] [segundos]}
+ * (por defecto 100, 1000, 5 y 30).</p>
+ */
+public class CargaPermisos {
+
+    public static void main(String[] args) throws Exception {
+        int recursos = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+        int clientes = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+        long latenciaMs = (args.length > 2) ? Long.parseLong(args[2]) : 5;
+        int segundos = (args.length > 3) ? Integer.parseInt(args[3]) : 30;
+
+        // El servidor anota cada espera en la salida estándar: a este ritmo mediría la consola
+        PrintStream salida = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        DetectorFallo detector = new DetectorFallo(0, List.of(), 1000, 8.0, 3000);
+        ServerExclusionMutuaRMI servidor = new ServerExclusionMutuaRMI(60_000, Map.of(), detector);
+        detector.revisar(); // Sin otras réplicas asume como líder en el acto
+
+        LongAdder ciclos = new LongAdder();
+        List<Thread> hilos = new ArrayList<>();
+        for (int i = 0; i < clientes; i++) {
+            Cliente cliente = new Cliente("cliente-" + i, latenciaMs);
+            String recurso = "recurso-" + (i % recursos);
+            Thread hilo = new Thread(() -> cliente.repetir(servidor, recurso, ciclos), cliente.nombre);
+            hilo.setDaemon(true);
+            hilos.add(hilo);
+        }
+        hilos.forEach(Thread::start);
+
+        // Un segundo de calentamiento fuera de la ventana
+        Thread.sleep(1000);
+        long antes = ciclos.sum();
+        long inicio = System.nanoTime();
+        Thread.sleep(segundos * 1000L);
+        long total = ciclos.sum() - antes;
+        double duracionS = (System.nanoTime() - inicio) / 1e9;
+
+        salida.printf("recursos=%d clientes=%d latencia_ms=%d segundos=%d ciclos=%d ciclos_s=%.0f%n",
+                recursos, clientes, latenciaMs, segundos, total, total / duracionS);
+        System.exit(0);
+    }
+
+    /**
+     * Cliente local: el servidor lo invoca directamente, sin pasar por RMI.
+     */
+    private static final class Cliente implements IClienteEM {
+
+        private final String nombre;
+        private final long latenciaMs;
+        private final Semaphore token = new Semaphore(0);
+        private volatile long idToken;
+
+        Cliente(String nombre, long latenciaMs) {
+            this.nombre = nombre;
+            this.latenciaMs = latenciaMs;
+        }
+
+        void repetir(ServerExclusionMutuaRMI servidor, String recurso, LongAdder ciclos) {
+            try {
+                while (true) {
+                    servidor.ObtenerRecurso(recurso, this);
+                    token.acquire();
+                    servidor.DevolverRecurso(recurso, idToken);
+                    ciclos.increment();
+                }
+            } catch (RemoteException e) {
+                System.err.println(nombre + ": " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void RecibirToken(String nombreRecurso, long idToken, long duracionLeaseMs) throws RemoteException {
+            try {
+                Thread.sleep(latenciaMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.idToken = idToken;
+            token.release();
+        }
+
+        @Override
+        public String getNombreCliente() throws RemoteException {
+            return nombre;
+        }
+    }
+}
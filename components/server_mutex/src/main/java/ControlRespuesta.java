@@ -1,6 +1,7 @@
 import java.util.TimerTask;
 
 /**
+ * Tarea periódica que recalcula el nivel de sospecha de cada réplica y actualiza el líder.
  *
  * @author lesca
  */
@@ -14,9 +15,7 @@ public class ControlRespuesta extends TimerTask {
 
     @Override
     public void run() {
-        if (!detector.getNombre().equals("ServidorMaestro")) {
-            detector.chequearRespuesta();
-        }
+        detector.revisar();
     }
     
 }
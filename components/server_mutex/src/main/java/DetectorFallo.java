@@ -1,58 +1,299 @@
 import rmi.IDetectorFalla;
+import rmi.Latido;
+
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-
+/**
+ * Detector de fallos y elección de líder entre las réplicas del servidor de exclusión mutua.
+ *
+ * <p>Cada réplica intercambia latidos con las demás ({@link AveriguarEstado}). El
+ * detector es de acumulación (phi accrual): por cada réplica guarda una ventana con los
+ * intervalos entre sus respuestas ({@link VentanaLatidos}) y calcula un nivel de sospecha
+ * continuo, {@link #nivelSospecha}. {@link ControlRespuesta} pasa a sospechar de las
+ * réplicas cuyo nivel supera {@code umbralPhi}. El latido lleva además a quién reconoce
+ * cada una como líder y en qué época.</p>
+ *
+ * <p>Elección: si alguna réplica viva se declara líder, se la sigue (ante dos, gana la de
+ * mayor época y, a igual época, la de menor id). Si ninguna se declara, asume la réplica
+ * viva de menor id con una época nueva. Una réplica recién iniciada espera un plazo de
+ * sospecha antes de postularse, para enterarse antes de si ya hay un líder.</p>
+ *
+ * <p>Sólo hay líder con mayoría: una réplica asume o sigue siendo líder únicamente si ve
+ * vivas (contándose a sí misma) a más de la mitad de las réplicas de
+ * {@code EXCLUSION_REPLICAS}. Ante una partición, el lado en minoría se queda sin líder
+ * y deja de conceder; a lo sumo un lado puede tener mayoría.</p>
+ */
 public class DetectorFallo extends UnicastRemoteObject implements IDetectorFalla{
 
-    boolean llegoMensaje;
-    String estado;
-    
-    String nombre;
-    
-    public String getNombre() {
-        return nombre;
+    /**
+     * Nombre con el que se publica el detector en el registro RMI.
+     */
+    public static final String NOMBRE = "DetectorFallo";
+
+    /**
+     * Recibe los cambios que deciden el detector y la elección.
+     */
+    public interface Observador {
+
+        /**
+         * Esta réplica asumió como líder o dejó de serlo.
+         */
+        void cambioLider(boolean soyLider);
+
+        /**
+         * Una réplica de la que se sospechaba volvió a responder.
+         */
+        void replicaRecuperada(Replica replica);
     }
 
-    public void setNombre(String nombre) {
-        this.nombre = nombre;
+    /**
+     * Intervalos que se recuerdan por réplica.
+     */
+    private static final int TAMANO_VENTANA = 100;
+
+    private final int id;
+    private final List<Replica> pares;
+    private final long sospechaMs;
+    private final double umbralPhi;
+    private final long inicio;
+
+    /**
+     * Último latido recibido de cada réplica.
+     */
+    private final Map<Integer, Latido> ultimoLatido = new ConcurrentHashMap<>();
+
+    /**
+     * Intervalos entre las respuestas de cada réplica a nuestros latidos.
+     */
+    private final Map<Integer, VentanaLatidos> ventanas = new ConcurrentHashMap<>();
+
+    /**
+     * Envía los latidos sin que una réplica caída demore a las demás.
+     */
+    private final ExecutorService envios = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Estado de la elección, con el lock del detector
+    private int lider = -1;
+    private long epoca;
+    private List<Replica> vivos = List.of();
+
+    private volatile Observador observador;
+
+    /**
+     * @param latidoMs   período de los latidos; es el intervalo que se supone antes de medir.
+     * @param umbralPhi  nivel de sospecha a partir del cual una réplica se da por caída.
+     * @param sospechaMs espera inicial antes de postularse como líder.
+     */
+    public DetectorFallo(int id, List<Replica> pares, long latidoMs, double umbralPhi, long sospechaMs) throws RemoteException{
+        super();
+        this.id = id;
+        this.pares = List.copyOf(pares);
+        this.sospechaMs = sospechaMs;
+        this.umbralPhi = umbralPhi;
+        this.inicio = System.currentTimeMillis();
+        for (Replica par : pares) {
+            ventanas.put(par.getId(), new VentanaLatidos(TAMANO_VENTANA, latidoMs, Math.max(1, latidoMs / 10)));
+        }
     }
 
-    public String getEstado() {
-        return estado;
+    public int getId() {
+        return id;
     }
-    
-    
-    
-    public DetectorFallo() throws RemoteException{
-        super();
-        llegoMensaje = false;
-        estado = "no sospechoso";
+
+    public void setObservador(Observador observador) {
+        this.observador = observador;
+    }
+
+    public synchronized boolean esLider() {
+        return lider == id;
+    }
+
+    public synchronized int getLider() {
+        return lider;
+    }
+
+    public synchronized long getEpoca() {
+        return epoca;
     }
-    
+
+    /**
+     * Deja el liderazgo si otra réplica conoce una época posterior a la de esta: hay un
+     * líder más nuevo que todavía no llegó en los latidos. La elección siguiente lo
+     * reconoce como a cualquier otro.
+     *
+     * @param otraEpoca época informada por otra réplica.
+     */
+    public void epocaVista(long otraEpoca) {
+        boolean renuncia;
+        synchronized (this) {
+            renuncia = lider == id && otraEpoca > epoca;
+            if (renuncia) {
+                System.out.println("Réplica " + id + " deja de ser líder: otra réplica conoce la época " + otraEpoca);
+                lider = -1;
+                epoca = otraEpoca;
+            }
+        }
+        Observador o = observador;
+        if (renuncia && o != null) {
+            o.cambioLider(false);
+        }
+    }
+
+    /**
+     * @return las demás réplicas de las que no se sospecha.
+     */
+    public synchronized List<Replica> paresVivos() {
+        return vivos;
+    }
+
+    /**
+     * @return réplicas que forman mayoría, contando a ésta.
+     */
+    public int mayoria() {
+        return (pares.size() + 1) / 2 + 1;
+    }
+
+    /**
+     * Nivel de sospecha (phi) sobre una réplica: 0 si su latido acaba de llegar, y crece
+     * de forma continua con la demora. Es infinito si nunca respondió.
+     */
+    public double nivelSospecha(int idReplica) {
+        VentanaLatidos ventana = ventanas.get(idReplica);
+        return ventana == null ? Double.POSITIVE_INFINITY : ventana.phi(System.currentTimeMillis());
+    }
+
     @Override
-    public void DameMensaje(IDetectorFalla cliente, String mensaje) throws RemoteException {
-        
-        if (mensaje.equals("vivo?")){
-            cliente.DameMensaje(this, "si");
-            System.out.println("Respodiendo por si");
-        }
-        
-        if (mensaje.equals("si")){
-            llegoMensaje = true;    
-            System.out.println("Llego respuesta del servidor");
-        }
-        
-    }
-    
-    public void chequearRespuesta(){
-        if (llegoMensaje){
-            estado = "no sospechoso";
+    public Latido DameMensaje(Latido latido) throws RemoteException {
+        // Sólo se toma su vista del líder; los intervalos se miden con las respuestas, que
+        // siguen el período regular de nuestros latidos
+        ultimoLatido.put(latido.idReplica(), latido);
+        return latidoPropio();
+    }
+
+    private synchronized Latido latidoPropio() {
+        return new Latido(id, lider, epoca);
+    }
+
+    /**
+     * Envía un latido a cada réplica; la respuesta cuenta como latido de ella.
+     */
+    public void enviarLatidos() {
+        Latido propio = latidoPropio();
+        for (Replica par : pares) {
+            envios.execute(() -> {
+                try {
+                    Latido respuesta = par.detector().DameMensaje(propio);
+                    ultimoLatido.put(par.getId(), respuesta);
+                    ventanas.get(par.getId()).registrar(System.currentTimeMillis());
+                } catch (RemoteException e) {
+                    par.descartar(); // Se vuelve a buscar en el registro en el próximo latido
+                }
+            });
+        }
+    }
+
+    /**
+     * Actualiza las sospechas y el líder según los latidos recibidos, y avisa al
+     * observador de los cambios.
+     */
+    public void revisar() {
+        long ahora = System.currentTimeMillis();
+        List<Replica> recuperadas = new ArrayList<>();
+        boolean eraLider;
+        boolean esLider;
+
+        synchronized (this) {
+            List<Replica> nuevosVivos = new ArrayList<>();
+            for (Replica par : pares) {
+                double phi = ventanas.get(par.getId()).phi(ahora);
+                if (phi <= umbralPhi) {
+                    nuevosVivos.add(par);
+                    if (!vivos.contains(par)) {
+                        System.out.println("no sospechoso: " + par);
+                        recuperadas.add(par);
+                    }
+                } else if (vivos.contains(par)) {
+                    System.out.printf("sospechoso: %s (phi %.1f)%n", par, phi);
+                    // El tiempo que esté caída no es un intervalo normal entre latidos
+                    ventanas.get(par.getId()).reiniciar();
+                }
+            }
+            vivos = List.copyOf(nuevosVivos);
+
+            eraLider = lider == id;
+            elegir(ahora);
+            esLider = lider == id;
+        }
+
+        Observador o = observador;
+        if (o == null) {
+            return;
+        }
+        if (eraLider != esLider) {
+            o.cambioLider(esLider);
+        }
+        for (Replica par : recuperadas) {
+            o.replicaRecuperada(par);
+        }
+    }
+
+    /**
+     * Aplica la regla de elección. Se llama con el lock del detector tomado.
+     */
+    private void elegir(long ahora) {
+        if (vivos.size() + 1 < mayoria()) {
+            if (lider == id) {
+                System.out.println("Réplica " + id + " pierde la mayoría (" + (vivos.size() + 1) + " de "
+                        + (pares.size() + 1) + " réplicas vivas) y deja de ser líder");
+            }
+            lider = -1; // Sin mayoría no se sigue ni se asume ningún liderazgo
+            return;
+        }
+
+        // Candidatos: las réplicas vivas que se declaran líder, incluida ésta
+        int mejor = lider == id ? id : -1;
+        long mejorEpoca = lider == id ? epoca : -1;
+        long maxEpoca = epoca;
+        for (Replica par : vivos) {
+            Latido l = ultimoLatido.get(par.getId());
+            maxEpoca = Math.max(maxEpoca, l.epoca());
+            if (l.lider() == l.idReplica()
+                    && (l.epoca() > mejorEpoca || (l.epoca() == mejorEpoca && l.idReplica() < mejor))) {
+                mejor = l.idReplica();
+                mejorEpoca = l.epoca();
+            }
+        }
+
+        if (mejor >= 0) {
+            if (mejor != lider) {
+                System.out.println("Réplica " + id + ": el líder es la réplica " + mejor + " (época " + mejorEpoca + ")");
+            }
+            lider = mejor;
+            epoca = mejorEpoca;
+            return;
+        }
+
+        // Nadie se declara líder: asume la réplica viva de menor id
+        if (!pares.isEmpty() && ahora - inicio < sospechaMs) {
+            return; // Todavía puede llegar el latido de un líder existente
+        }
+        int menor = id;
+        for (Replica par : vivos) {
+            menor = Math.min(menor, par.getId());
+        }
+        if (menor == id) {
+            lider = id;
+            epoca = maxEpoca + 1;
+            System.out.println("Réplica " + id + " asume como líder (época " + epoca + ")");
         } else {
-            estado = "sospechoso";
+            lider = -1; // Se espera a que se declare la réplica de menor id
         }
-        
-        System.out.println(estado);
     }
-    
 }
@@ -5,6 +5,10 @@ import java.net.MalformedURLException;
 import java.rmi.Naming;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Timer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -15,6 +19,15 @@ import java.util.logging.Logger;
  */
 public class Main {
 
+    /**
+     * Arranca una réplica del servidor de exclusión mutua.
+     *
+     * <p>Sin {@code EXCLUSION_REPLICAS} corre una sola réplica en {@code EXCLUSION_PORT}.
+     * Con una lista {@code host:puerto,host:puerto,...} corre la réplica cuyo id (posición
+     * en la lista) se pasa como primer argumento o en {@code REPLICA_ID}, en el puerto de
+     * su entrada. Por ejemplo, en localhost:
+     * {@code EXCLUSION_REPLICAS=localhost:10000,localhost:10001,localhost:10002 java -jar serverMutex.jar 1}</p>
+     */
     public static void main(String[] args) {
 
         String hostname = System.getenv("HOSTNAME");
@@ -22,44 +35,73 @@ public class Main {
             hostname = "localhost";
         }
 
-        String nombreServidor = "ServidorMaestro";
-        String detectorPortEnv = System.getenv("DETECTOR_FALLOS_PORT");
-        int nroPuerto = (detectorPortEnv != null) ? Integer.parseInt(detectorPortEnv) : 9000;
-
         String exclusionPortEnv = System.getenv("EXCLUSION_PORT");
         int nroPuertoExcMutua = (exclusionPortEnv != null) ? Integer.parseInt(exclusionPortEnv) : 10000;
-        
-        Timer planificador = new Timer();
 
+        String leaseEnv = System.getenv("LEASE_MS");
+        long duracionLeaseMs = (leaseEnv != null) ? Long.parseLong(leaseEnv) : 10000;
+
+        // Recursos con más de un permiso, por ejemplo "BombaAgua=2,BombaFertilizante=3"
+        Map<String, Integer> capacidades = leerCapacidades(System.getenv("CAPACIDAD_RECURSOS"));
+
+        // Detector de fallos: período de latidos, nivel de sospecha (phi) para dar una réplica
+        // por caída y espera inicial antes de postularse como líder
+        String latidoEnv = System.getenv("LATIDO_MS");
+        long latidoMs = (latidoEnv != null) ? Long.parseLong(latidoEnv) : 1000;
+        String umbralEnv = System.getenv("UMBRAL_PHI");
+        double umbralPhi = (umbralEnv != null) ? Double.parseDouble(umbralEnv) : 8.0;
+        String sospechaEnv = System.getenv("SOSPECHA_MS");
+        long sospechaMs = (sospechaEnv != null) ? Long.parseLong(sospechaEnv) : 3000;
+
+        String replicaEnv = (args.length > 0) ? args[0] : System.getenv("REPLICA_ID");
+        int idReplica = (replicaEnv != null) ? Integer.parseInt(replicaEnv) : 0;
+
+        List<Replica> pares = new ArrayList<>();
+        String replicasEnv = System.getenv("EXCLUSION_REPLICAS");
+        if (replicasEnv != null && !replicasEnv.isBlank()) {
+            String[] replicas = replicasEnv.split(",");
+            for (int i = 0; i < replicas.length; i++) {
+                String hostPuerto = replicas[i].trim();
+                if (i == idReplica) {
+                    nroPuertoExcMutua = Integer.parseInt(hostPuerto.substring(hostPuerto.lastIndexOf(':') + 1));
+                } else {
+                    pares.add(new Replica(i, hostPuerto));
+                }
+            }
+        }
 
-        try {
+        // Una réplica caída no debe colgar los latidos ni la replicación más que el plazo de sospecha
+        System.setProperty("sun.rmi.transport.tcp.responseTimeout", String.valueOf(sospechaMs));
+        System.setProperty("sun.rmi.transport.proxy.connectTimeout", String.valueOf(sospechaMs));
 
-            //Obviar el detector de fallos
+        Timer planificador = new Timer();
 
-            /*
-            LocateRegistry.createRegistry(nroPuerto);
-            DetectorFallo detector = new DetectorFallo();
-            detector.setNombre(nombreServidor);
 
-            Naming.rebind("rmi://" + hostname + ":" + nroPuerto + "/" + nombreServidor, (IDetectorFalla) detector);
+        try {
 
+            LocateRegistry.createRegistry(nroPuertoExcMutua);
 
-            AveriguarEstado tareaAveriguarEstado = new AveriguarEstado(detector);
-            ControlRespuesta tareaControlRespuesta = new ControlRespuesta(detector);
-            planificador.schedule(tareaAveriguarEstado, 0, 5000);
-            planificador.schedule(tareaControlRespuesta, 0, 8000);
-             */
+            System.out.println("Puerto RMI creado en: " + nroPuertoExcMutua);
 
+            String base = "rmi://" + hostname + ":" + nroPuertoExcMutua + "/";
 
-            LocateRegistry.createRegistry(nroPuertoExcMutua);
+            DetectorFallo detector = new DetectorFallo(idReplica, pares, latidoMs, umbralPhi, sospechaMs);
+            Naming.rebind(base + DetectorFallo.NOMBRE, (IDetectorFalla) detector);
 
-            System.out.println("Puerto RMI creado en: " + nroPuertoExcMutua);
+            ServerExclusionMutuaRMI serverEM = new ServerExclusionMutuaRMI(duracionLeaseMs, capacidades, detector);
 
-            ServerExclusionMutuaRMI serverEM = new ServerExclusionMutuaRMI();
+            Naming.rebind(base + ServerExclusionMutuaRMI.NOMBRE, (IServicioExclusionMutua) serverEM);
+            // Las copias entre réplicas llegan por un objeto aparte, fuera del alcance de los clientes
+            Naming.rebind(base + ReplicaEM.NOMBRE, new ReplicaEM(serverEM));
 
-            Naming.rebind("rmi://" + hostname + ":" + nroPuertoExcMutua + "/servidorCentralEM", (IServicioExclusionMutua) serverEM);
+            AveriguarEstado tareaAveriguarEstado = new AveriguarEstado(detector);
+            ControlRespuesta tareaControlRespuesta = new ControlRespuesta(detector);
+            planificador.schedule(tareaAveriguarEstado, 0, latidoMs);
+            // El nivel de sospecha crece entre latidos: se revisa más seguido para detectar antes
+            planificador.schedule(tareaControlRespuesta, 0, Math.max(50, latidoMs / 4));
 
-            System.out.println("Inicado en "+ "rmi://" + hostname + ":" + nroPuertoExcMutua + "/servidorCentralEM");
+            System.out.println("Inicado en "+ base + ServerExclusionMutuaRMI.NOMBRE
+                    + " (réplica " + idReplica + ", " + pares.size() + " réplica(s) más)");
 
         } catch (RemoteException ex) {
             Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
@@ -70,6 +112,23 @@ public class Main {
 
     }
 
-}
-
+    /**
+     * Interpreta la lista de capacidades con el formato {@code nombre=permisos,...}.
+     */
+    private static Map<String, Integer> leerCapacidades(String valor) {
+        Map<String, Integer> capacidades = new HashMap<>();
+        if (valor == null || valor.isBlank()) {
+            return capacidades;
+        }
+        for (String par : valor.split(",")) {
+            String[] partes = par.split("=");
+            int permisos = Integer.parseInt(partes[1].trim());
+            if (permisos < 1) {
+                throw new IllegalArgumentException("Capacidad inválida para " + partes[0].trim() + ": " + permisos);
+            }
+            capacidades.put(partes[0].trim(), permisos);
+        }
+        return capacidades;
+    }
 
+}
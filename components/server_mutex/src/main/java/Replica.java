@@ -0,0 +1,72 @@
+import rmi.IDetectorFalla;
+import rmi.IReplicaEM;
+
+import java.net.MalformedURLException;
+import java.rmi.Naming;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+
+/**
+ * Otra réplica del servidor de exclusión mutua. Guarda sus stubs RMI y los vuelve a
+ * buscar en el registro después de un fallo.
+ */
+public class Replica {
+
+    private final int id;
+
+    /**
+     * Registro RMI de la réplica, por ejemplo {@code rmi://localhost:10001}.
+     */
+    private final String url;
+
+    private volatile IDetectorFalla detector;
+    private volatile IReplicaEM replica;
+
+    public Replica(int id, String hostPuerto) {
+        this.id = id;
+        this.url = "rmi://" + hostPuerto;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public IDetectorFalla detector() throws RemoteException {
+        IDetectorFalla d = detector;
+        if (d == null) {
+            d = (IDetectorFalla) buscar(DetectorFallo.NOMBRE);
+            detector = d;
+        }
+        return d;
+    }
+
+    public IReplicaEM replica() throws RemoteException {
+        IReplicaEM r = replica;
+        if (r == null) {
+            r = (IReplicaEM) buscar(ReplicaEM.NOMBRE);
+            replica = r;
+        }
+        return r;
+    }
+
+    /**
+     * Olvida los stubs, para buscarlos de nuevo en el próximo uso.
+     */
+    public void descartar() {
+        detector = null;
+        replica = null;
+    }
+
+    private Object buscar(String nombre) throws RemoteException {
+        try {
+            return Naming.lookup(url + "/" + nombre);
+        } catch (NotBoundException | MalformedURLException e) {
+            throw new RemoteException("Réplica " + id + " no disponible en " + url, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "réplica " + id + " (" + url + ")";
+    }
+}
@@ -0,0 +1,34 @@
+import rmi.EstadoRecurso;
+import rmi.IReplicaEM;
+import rmi.RespuestaCopia;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+
+/**
+ * Extremo de replicación de una réplica del servidor de exclusión mutua: recibe las
+ * copias de estado que envía el líder y las aplica en su {@link ServerExclusionMutuaRMI}.
+ *
+ * <p>Se publica como un objeto remoto aparte, con su propio nombre en el registro, igual
+ * que el {@link DetectorFallo}. Así el stub que obtienen los clientes del servicio sólo
+ * ofrece {@link rmi.IServicioExclusionMutua} y no pueden reemplazar el estado replicado.</p>
+ */
+public class ReplicaEM extends UnicastRemoteObject implements IReplicaEM {
+
+    /**
+     * Nombre con el que se publica en el registro RMI.
+     */
+    public static final String NOMBRE = "ReplicaEM";
+
+    private final ServerExclusionMutuaRMI servidor;
+
+    public ReplicaEM(ServerExclusionMutuaRMI servidor) throws RemoteException {
+        super();
+        this.servidor = servidor;
+    }
+
+    @Override
+    public RespuestaCopia ReplicarRecurso(EstadoRecurso estado) throws RemoteException {
+        return servidor.aplicarCopia(estado);
+    }
+}
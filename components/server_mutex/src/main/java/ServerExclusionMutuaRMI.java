@@ -1,82 +1,584 @@
+import rmi.EstadoRecurso;
 import rmi.IClienteEM;
 import rmi.IServicioExclusionMutua;
+import rmi.PermisosInvalidosException;
+import rmi.RespuestaCopia;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.ArrayDeque;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Implementación del servidor de exclusión mutua con múltiples recursos.
  * Cada recurso tiene su propio token y cola de espera.
+ *
+ * <p>El token se concede por un tiempo limitado (lease). Cada concesión tiene un id
+ * propio y un vencimiento; el titular la extiende con {@link #RenovarRecurso} y la
+ * devuelve con {@link #DevolverRecurso}. Si el titular se cae y deja de renovarla,
+ * al vencer el token pasa al siguiente cliente de la cola, en orden de llegada.</p>
+ *
+ * <p>Un recurso puede tener más de un permiso (capacidad N); cada concesión se lleva
+ * los k permisos que pidió con {@link #ObtenerPermisos}, y varias concesiones conviven
+ * mientras alcancen. La cola es estrictamente FIFO: si la primera solicitud no entra,
+ * las de atrás esperan aunque pidan menos, así una solicitud grande no queda
+ * postergada para siempre. Con capacidad 1 se comporta como el token binario.</p>
+ *
+ * <p>Cada recurso tiene su propio lock, por lo que las operaciones sobre recursos
+ * distintos no se esperan entre sí. Bajo el lock sólo se decide a quién le toca el
+ * token; la llamada remota {@code RecibirToken} la hace después un despachador, en un
+ * hilo virtual por entrega. Así un cliente lento sólo demora su propia entrega.</p>
+ *
+ * <p>Puede correr replicado. Sólo la réplica líder, elegida por el {@link DetectorFallo}
+ * con mayoría, atiende pedidos; después de cada cambio, incluidas las renovaciones, copia
+ * el estado del recurso a las demás réplicas vivas ({@link ReplicaEM}). Un token sólo se
+ * entrega, y una renovación sólo se confirma, si la copia llegó a una mayoría: un líder
+ * que quedó en minoría tras una partición no concede nada aunque todavía no lo haya
+ * notado. Una réplica rechaza las copias de una época anterior a la que conoce, y el
+ * líder que recibe ese rechazo deja de serlo: un líder depuesto no reúne mayoría con
+ * réplicas que ya siguen a otro. Si el líder cae, la réplica que asume conserva el tiempo restante de las
+ * concesiones copiadas y sigue atendiendo la cola, y los clientes reintentan contra ella.</p>
  */
-public class ServerExclusionMutuaRMI extends UnicastRemoteObject implements IServicioExclusionMutua {
+public class ServerExclusionMutuaRMI extends UnicastRemoteObject
+        implements IServicioExclusionMutua, DetectorFallo.Observador {
 
-    // Representa el estado de un recurso: token libre/ocupado + cola de clientes en espera
+    /**
+     * Nombre con el que se publica el servicio en el registro RMI.
+     */
+    public static final String NOMBRE = "servidorCentralEM";
+
+    // Representa el estado de un recurso: permisos libres, concesiones vigentes y cola de espera.
+    // Todos los campos se modifican con el lock del propio recurso; la capacidad sólo
+    // cambia al aplicar una copia del líder y se lee también sin el lock.
     private static class Recurso {
-        boolean token;
-        Queue<IClienteEM> cola;
+        final String nombre;
+        volatile int capacidad;
+        int libres;
+        // Época y versión de la última copia enviada o recibida
+        long epoca;
+        long version;
+        Queue<Solicitud> cola;
+        // Concesiones vigentes por id, en orden de concesión
+        Map<Long, Concesion> concesiones;
 
-        Recurso() {
-            this.token = true;
+        Recurso(String nombre, int capacidad) {
+            this.nombre = nombre;
+            this.capacidad = capacidad;
+            this.libres = capacidad;
             this.cola = new ArrayDeque<>();
+            this.concesiones = new LinkedHashMap<>();
+        }
+    }
+
+    // Cliente en espera, con el nombre ya obtenido para no consultarlo bajo el lock
+    private record Solicitud(IClienteEM cliente, String nombreCliente, int permisos) {
+    }
+
+    // Permisos en manos de un cliente; el vencimiento se accede con el lock del recurso
+    private static class Concesion {
+        final int permisos;
+        long vence;
+
+        Concesion(int permisos, long vence) {
+            this.permisos = permisos;
+            this.vence = vence;
         }
     }
 
+    // Concesión decidida bajo el lock y pendiente de entregar
+    private record Entrega(Recurso recurso, Solicitud solicitud, long idToken) {
+    }
+
     private final Map<String, Recurso> recursos;
 
-    public ServerExclusionMutuaRMI() throws RemoteException {
+    /**
+     * Cantidad de permisos de los recursos configurados; los demás tienen uno solo.
+     */
+    private final Map<String, Integer> capacidades;
+
+    /**
+     * Duración de cada concesión si no se renueva.
+     */
+    private final long duracionLeaseMs;
+
+    private final AtomicLong ultimoIdToken = new AtomicLong();
+
+    /**
+     * Despachador de las entregas del token, fuera de los locks de los recursos.
+     */
+    private final ExecutorService despachador = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Decide si esta réplica es la líder y cuáles réplicas están vivas.
+     */
+    private final DetectorFallo detector;
+
+    /**
+     * @param capacidades permisos de cada recurso por nombre; los que no figuran tienen uno.
+     * @param detector    detector de la réplica; sin otras réplicas, ésta es siempre la líder.
+     */
+    public ServerExclusionMutuaRMI(long duracionLeaseMs, Map<String, Integer> capacidades, DetectorFallo detector) throws RemoteException {
         super();
-        this.recursos = new HashMap<>();
+        this.recursos = new ConcurrentHashMap<>();
+        this.capacidades = Map.copyOf(capacidades);
+        this.duracionLeaseMs = duracionLeaseMs;
+        this.detector = detector;
+        detector.setObservador(this);
+
+        // Revisa los vencimientos varias veces por lease para reasignar pronto el token
+        long periodo = Math.max(100, duracionLeaseMs / 4);
+        Timer vencimientos = new Timer("vencimiento-leases", true);
+        vencimientos.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                revisarVencimientos();
+            }
+        }, periodo, periodo);
     }
 
     /**
      * Solicita acceso a un recurso. Si el token está libre, se entrega al cliente;
-     * si no, se lo pone en la cola.
+     * si no, se lo pone en la cola. La entrega llega luego por {@code RecibirToken}.
      */
     @Override
-    public synchronized void ObtenerRecurso(String nombreRecurso, IClienteEM cliente) throws RemoteException {
-        Recurso recurso = recursos.computeIfAbsent(nombreRecurso, k -> new Recurso());
+    public void ObtenerRecurso(String nombreRecurso, IClienteEM cliente) throws RemoteException {
+        try {
+            ObtenerPermisos(nombreRecurso, 1, cliente);
+        } catch (PermisosInvalidosException e) {
+            throw new IllegalStateException(e); // Todo recurso tiene al menos un permiso
+        }
+    }
 
-        if (recurso.token) {
-            recurso.token = false;
-            System.out.println("Token entregado a cliente \"" + cliente.getNombreCliente() + "\" para recurso: " + nombreRecurso);
-            cliente.RecibirToken();
-        } else {
-            System.out.println("Recurso ocupado, cliente \"" + cliente.getNombreCliente() + "\" en espera: " + nombreRecurso);
-            recurso.cola.add(cliente);
+    /**
+     * Solicita {@code permisos} de un recurso. Si hay permisos libres y nadie espera antes,
+     * se conceden en el acto; si no, el cliente queda en la cola.
+     */
+    @Override
+    public void ObtenerPermisos(String nombreRecurso, int permisos, IClienteEM cliente)
+            throws RemoteException, PermisosInvalidosException {
+        comprobarLider();
+        Recurso recurso = recursos.computeIfAbsent(nombreRecurso, this::crearRecurso);
+        if (permisos < 1 || permisos > recurso.capacidad) {
+            throw new PermisosInvalidosException("Se pidieron " + permisos + " permisos de " + nombreRecurso
+                    + ", que tiene " + recurso.capacidad);
         }
+        // Llamada remota antes de tomar el lock: si el cliente es lento, sólo se demora él
+        Solicitud solicitud = new Solicitud(cliente, cliente.getNombreCliente(), permisos);
+
+        List<Entrega> entregas;
+        EstadoRecurso copia;
+        synchronized (recurso) {
+            recurso.cola.add(solicitud);
+            entregas = atenderCola(recurso);
+            copia = copiar(recurso);
+        }
+        if (entregas.isEmpty()) {
+            System.out.println("Recurso ocupado, cliente \"" + solicitud.nombreCliente() + "\" en espera de "
+                    + permisos + " permiso(s): " + nombreRecurso);
+        }
+        replicarYDespachar(copia, entregas);
+    }
+
+    /**
+     * Extiende la concesión vigente de un recurso por otra duración de lease. La
+     * renovación se replica como cualquier cambio y sólo se confirma si llegó a una
+     * mayoría, para que un nuevo líder no venza antes de tiempo a un titular vivo.
+     */
+    @Override
+    public boolean RenovarRecurso(String nombreRecurso, long idToken) throws RemoteException {
+        comprobarLider();
+        Recurso recurso = recursos.get(nombreRecurso);
+        if (recurso == null) {
+            return false;
+        }
+        EstadoRecurso copia;
+        synchronized (recurso) {
+            Concesion concesion = recurso.concesiones.get(idToken);
+            if (concesion == null) {
+                return false; // Venció y ya se entregó a otro
+            }
+            concesion.vence = System.currentTimeMillis() + duracionLeaseMs;
+            copia = copiar(recurso);
+        }
+        return replicar(copia) && detector.esLider();
     }
 
     /**
-     * Devuelve el token de un recurso. Si hay clientes esperando, se le pasa al siguiente;
-     * si no, se marca el token como libre.
+     * Devuelve los permisos de una concesión. Si hay clientes esperando, se le pasan a los
+     * siguientes de la cola que entren; si no, quedan libres.
      */
     @Override
-    public synchronized void DevolverRecurso(String nombreRecurso) throws RemoteException {
+    public void DevolverRecurso(String nombreRecurso, long idToken) throws RemoteException {
+        comprobarLider();
         Recurso recurso = recursos.get(nombreRecurso);
         if (recurso == null) return; // recurso no registrado
 
-        if (!recurso.cola.isEmpty()) {
-            IClienteEM siguiente = recurso.cola.poll();
-            System.out.println("Token pasado al siguiente cliente en cola para recurso: " + nombreRecurso);
-            siguiente.RecibirToken();
-        } else {
-            recurso.token = true;
-            System.out.println("Token liberado para recurso: " + nombreRecurso);
+        List<Entrega> entregas;
+        EstadoRecurso copia;
+        synchronized (recurso) {
+            Concesion concesion = recurso.concesiones.remove(idToken);
+            if (concesion == null) {
+                System.out.println("Devolución ignorada de un token vencido para recurso: " + nombreRecurso);
+                return;
+            }
+            recurso.libres += concesion.permisos;
+            entregas = atenderCola(recurso);
+            copia = copiar(recurso);
         }
+        replicarYDespachar(copia, entregas);
+    }
+
+    /**
+     * Quita de la cola las solicitudes del cliente. Como la cola es FIFO estricta, si la
+     * quitada era la primera, las siguientes que entren en los permisos libres se
+     * conceden en el acto.
+     */
+    @Override
+    public boolean CancelarPedido(String nombreRecurso, IClienteEM cliente) throws RemoteException {
+        comprobarLider();
+        Recurso recurso = recursos.get(nombreRecurso);
+        if (recurso == null) return false; // recurso no registrado
+
+        List<Entrega> entregas;
+        EstadoRecurso copia;
+        synchronized (recurso) {
+            // Los stubs se comparan por el objeto remoto al que apuntan
+            if (!recurso.cola.removeIf(s -> s.cliente().equals(cliente))) {
+                return false;
+            }
+            entregas = atenderCola(recurso);
+            copia = copiar(recurso);
+        }
+        System.out.println("Pedido cancelado por un cliente para recurso: " + nombreRecurso);
+        replicarYDespachar(copia, entregas);
+        return true;
+    }
+
+    @Override
+    public boolean EsLider() throws RemoteException {
+        return detector.esLider();
+    }
+
+    /**
+     * Aplica la copia de un recurso enviada por el líder, si es más nueva que la local.
+     * La recibe {@link ReplicaEM}; no forma parte de la interfaz de los clientes.
+     *
+     * @return confirmada si la réplica queda con esta copia o con una posterior de la
+     * misma época, que ya la incluye; rechazada si viene de una época anterior.
+     */
+    RespuestaCopia aplicarCopia(EstadoRecurso estado) {
+        detector.epocaVista(estado.epoca()); // Si ésta se creía líder, hay uno más nuevo
+        long conocida = detector.getEpoca();
+        if (estado.epoca() < conocida) {
+            return new RespuestaCopia(false, conocida); // Viene de un líder depuesto
+        }
+        ultimoIdToken.accumulateAndGet(estado.ultimoIdToken(), Math::max);
+        Recurso recurso = recursos.computeIfAbsent(estado.nombre(), n -> new Recurso(n, estado.capacidad()));
+        synchronized (recurso) {
+            if (estado.esPosteriorA(recurso.epoca, recurso.version)) {
+                aplicar(recurso, estado);
+            }
+            return new RespuestaCopia(recurso.epoca == estado.epoca(), Math.max(conocida, recurso.epoca));
+        }
+    }
+
+    /**
+     * Reemplaza el estado del recurso por la copia. Se llama con el lock del recurso tomado.
+     */
+    private void aplicar(Recurso recurso, EstadoRecurso estado) {
+        recurso.epoca = estado.epoca();
+        recurso.version = estado.version();
+        recurso.capacidad = estado.capacidad();
+        recurso.libres = estado.capacidad();
+        recurso.concesiones.clear();
+        long ahora = System.currentTimeMillis();
+        for (EstadoRecurso.Concesion c : estado.concesiones()) {
+            recurso.concesiones.put(c.idToken(), new Concesion(c.permisos(), ahora + c.restanteMs()));
+            recurso.libres -= c.permisos();
+        }
+        recurso.cola.clear();
+        for (EstadoRecurso.Espera e : estado.cola()) {
+            recurso.cola.add(new Solicitud(e.cliente(), e.nombreCliente(), e.permisos()));
+        }
+    }
+
+    /**
+     * Al asumir como líder atiende las colas. Las concesiones copiadas conservan el tiempo
+     * restante que tenían en el líder anterior: sus titulares lo renuevan con el nuevo, y
+     * las de un titular caído vencen cuando les tocaba.
+     */
+    @Override
+    public void cambioLider(boolean soyLider) {
+        if (!soyLider) {
+            System.out.println("Réplica " + detector.getId() + " deja de ser líder");
+            return;
+        }
+        for (Recurso recurso : recursos.values()) {
+            List<Entrega> entregas;
+            EstadoRecurso copia;
+            synchronized (recurso) {
+                entregas = atenderCola(recurso);
+                copia = copiar(recurso);
+            }
+            replicarYDespachar(copia, entregas);
+        }
+    }
+
+    /**
+     * Le envía a una réplica que vuelve el estado de todos los recursos.
+     */
+    @Override
+    public void replicaRecuperada(Replica replica) {
+        if (!detector.esLider()) {
+            return;
+        }
+        despachador.execute(() -> {
+            try {
+                for (Recurso recurso : recursos.values()) {
+                    EstadoRecurso copia;
+                    synchronized (recurso) {
+                        copia = copiar(recurso);
+                    }
+                    RespuestaCopia respuesta = replica.replica().ReplicarRecurso(copia);
+                    if (respuesta.epoca() > copia.epoca()) {
+                        detector.epocaVista(respuesta.epoca());
+                        return; // Hay un líder más nuevo: él le enviará su estado
+                    }
+                }
+                System.out.println("Estado enviado a la " + replica);
+            } catch (RemoteException e) {
+                System.err.println("No se pudo enviar el estado a la " + replica + ": " + e.getMessage());
+                replica.descartar();
+            }
+        });
     }
 
     /**
      * Consulta el estado actual de un recurso: LIBRE o OCUPADO.
      */
-    public synchronized String consultarEstado(String nombreRecurso) throws RemoteException {
+    public String consultarEstado(String nombreRecurso) throws RemoteException {
         Recurso recurso = recursos.get(nombreRecurso);
-        if (recurso == null || recurso.token) {
+        if (recurso == null) {
             return "LIBRE";
-        } else {
-            return "OCUPADO";
         }
+        synchronized (recurso) {
+            return recurso.libres == recurso.capacidad ? "LIBRE" : "OCUPADO";
+        }
+    }
+
+    private Recurso crearRecurso(String nombre) {
+        return new Recurso(nombre, capacidades.getOrDefault(nombre, 1));
+    }
+
+    /**
+     * Quita los permisos a los titulares cuyo lease venció y los pasa a los siguientes en la cola.
+     */
+    private void revisarVencimientos() {
+        if (!detector.esLider()) {
+            return;
+        }
+        long ahora = System.currentTimeMillis();
+        for (Recurso recurso : recursos.values()) {
+            List<Entrega> entregas = List.of();
+            EstadoRecurso copia = null;
+            synchronized (recurso) {
+                boolean vencio = false;
+                Iterator<Map.Entry<Long, Concesion>> it = recurso.concesiones.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Long, Concesion> e = it.next();
+                    if (e.getValue().vence <= ahora) {
+                        System.out.println("Lease vencido (token " + e.getKey() + ") para recurso: " + recurso.nombre);
+                        recurso.libres += e.getValue().permisos;
+                        it.remove();
+                        vencio = true;
+                    }
+                }
+                if (vencio) {
+                    entregas = atenderCola(recurso);
+                    copia = copiar(recurso);
+                }
+            }
+            replicarYDespachar(copia, entregas);
+        }
+    }
+
+    /**
+     * Concede permisos a los primeros de la cola mientras alcancen, sin saltear a nadie.
+     * Se llama con el lock del recurso tomado.
+     *
+     * @return las entregas a despachar, vacía si nadie pudo pasar.
+     */
+    private List<Entrega> atenderCola(Recurso recurso) {
+        List<Entrega> entregas = new ArrayList<>();
+        Solicitud siguiente;
+        while ((siguiente = recurso.cola.peek()) != null && siguiente.permisos() <= recurso.libres) {
+            recurso.cola.poll();
+            entregas.add(conceder(recurso, siguiente));
+        }
+        if (recurso.libres == recurso.capacidad) {
+            System.out.println("Token liberado para recurso: " + recurso.nombre);
+        }
+        return entregas;
+    }
+
+    /**
+     * Crea una concesión nueva. Se llama con el lock del recurso tomado.
+     */
+    private Entrega conceder(Recurso recurso, Solicitud solicitud) {
+        long idToken = ultimoIdToken.incrementAndGet();
+        recurso.libres -= solicitud.permisos();
+        recurso.concesiones.put(idToken, new Concesion(solicitud.permisos(), System.currentTimeMillis() + duracionLeaseMs));
+        return new Entrega(recurso, solicitud, idToken);
+    }
+
+    private void comprobarLider() throws RemoteException {
+        if (!detector.esLider()) {
+            throw new RemoteException("La réplica " + detector.getId() + " no es el líder (líder actual: "
+                    + detector.getLider() + ")");
+        }
+    }
+
+    /**
+     * Toma una copia del recurso con una versión nueva. Se llama con el lock del recurso tomado.
+     */
+    private EstadoRecurso copiar(Recurso recurso) {
+        recurso.epoca = detector.getEpoca();
+        recurso.version++;
+        List<EstadoRecurso.Concesion> concesiones = new ArrayList<>();
+        long ahora = System.currentTimeMillis();
+        recurso.concesiones.forEach((id, c) -> concesiones.add(
+                new EstadoRecurso.Concesion(id, c.permisos, Math.max(0, c.vence - ahora))));
+        List<EstadoRecurso.Espera> cola = new ArrayList<>();
+        for (Solicitud s : recurso.cola) {
+            cola.add(new EstadoRecurso.Espera(s.cliente(), s.nombreCliente(), s.permisos()));
+        }
+        return new EstadoRecurso(recurso.nombre, recurso.capacidad, recurso.epoca, recurso.version,
+                ultimoIdToken.get(), concesiones, cola);
+    }
+
+    /**
+     * Envía la copia a las réplicas vivas y espera las respuestas, sin ningún lock tomado,
+     * para que una concesión no se entregue antes de estar copiada.
+     *
+     * Sólo cuentan las réplicas que confirman la copia; si alguna conoce una época
+     * posterior, esta réplica deja de ser líder.
+     *
+     * @return {@code true} si la copia quedó en una mayoría de réplicas, contando a ésta.
+     */
+    private boolean replicar(EstadoRecurso copia) {
+        if (copia == null) {
+            return true;
+        }
+        List<Replica> vivos = detector.paresVivos();
+        List<Future<Boolean>> envios = new ArrayList<>();
+        for (Replica par : vivos) {
+            envios.add(despachador.submit(() -> {
+                try {
+                    RespuestaCopia respuesta = par.replica().ReplicarRecurso(copia);
+                    if (respuesta.epoca() > copia.epoca()) {
+                        detector.epocaVista(respuesta.epoca());
+                    }
+                    if (!respuesta.confirmada()) {
+                        System.err.println("La " + par + " rechazó la copia de " + copia.nombre()
+                                + " (época " + copia.epoca() + ", conoce la " + respuesta.epoca() + ")");
+                    }
+                    return respuesta.confirmada();
+                } catch (RemoteException e) {
+                    System.err.println("No se pudo replicar " + copia.nombre() + " en la " + par + ": " + e.getMessage());
+                    par.descartar();
+                    return false;
+                }
+            }));
+        }
+        int copias = 1; // La propia
+        for (Future<Boolean> envio : envios) {
+            try {
+                if (envio.get()) {
+                    copias++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                System.err.println("Error al replicar " + copia.nombre() + ": " + e.getCause());
+            }
+        }
+        return copias >= detector.mayoria();
+    }
+
+    /**
+     * Replica la copia y, sólo si llegó a una mayoría y esta réplica sigue siendo líder,
+     * entrega los tokens. Si no, las concesiones quedan sin entregar: si esta réplica
+     * sigue siendo líder vencen solas, y si no, las reemplaza la copia del líder que la
+     * suceda.
+     */
+    private void replicarYDespachar(EstadoRecurso copia, List<Entrega> entregas) {
+        if (replicar(copia) && detector.esLider()) {
+            despachar(entregas);
+        } else if (!entregas.isEmpty()) {
+            System.err.println("La copia de " + copia.nombre() + " no quedó confirmada por una mayoría de réplicas: no se entregan "
+                    + entregas.size() + " token(s)");
+        }
+    }
+
+    private void despachar(List<Entrega> entregas) {
+        for (Entrega entrega : entregas) {
+            despachar(entrega);
+        }
+    }
+
+    /**
+     * Entrega el token en otro hilo, sin ningún lock tomado. Al confirmarse la entrega el
+     * lease vuelve a empezar, y ese vencimiento también se replica. Si el cliente no
+     * responde, sus permisos pasan a los siguientes de la cola.
+     */
+    private void despachar(Entrega entrega) {
+        despachador.execute(() -> {
+            Recurso recurso = entrega.recurso();
+            try {
+                System.out.println("Token " + entrega.idToken() + " (" + entrega.solicitud().permisos()
+                        + " permisos) entregado a cliente \""
+                        + entrega.solicitud().nombreCliente() + "\" para recurso: " + recurso.nombre);
+                entrega.solicitud().cliente().RecibirToken(recurso.nombre, entrega.idToken(), duracionLeaseMs);
+                EstadoRecurso copia = null;
+                synchronized (recurso) {
+                    // El lease corre desde que el cliente recibió el token
+                    Concesion concesion = recurso.concesiones.get(entrega.idToken());
+                    if (concesion != null) {
+                        concesion.vence = System.currentTimeMillis() + duracionLeaseMs;
+                        copia = copiar(recurso);
+                    }
+                }
+                // Se replica el nuevo vencimiento: si no, un líder nuevo tomaría el de la
+                // copia previa a la entrega y vencería antes al titular
+                replicar(copia);
+            } catch (RemoteException e) {
+                System.err.println("No se pudo entregar el token para recurso " + recurso.nombre + ": " + e.getMessage());
+                List<Entrega> siguientes = List.of();
+                EstadoRecurso copia = null;
+                synchronized (recurso) {
+                    // Si mientras tanto venció, ya se reasignó
+                    Concesion concesion = recurso.concesiones.remove(entrega.idToken());
+                    if (concesion != null) {
+                        recurso.libres += concesion.permisos;
+                        siguientes = atenderCola(recurso);
+                        copia = copiar(recurso);
+                    }
+                }
+                replicarYDespachar(copia, siguientes);
+            }
+        });
     }
 }
@@ -0,0 +1,83 @@
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Historial de latidos de una réplica para el detector de fallos por acumulación (phi accrual).
+ *
+ * <p>Guarda una ventana deslizante con los últimos intervalos entre latidos y, a partir de
+ * su media y desvío, calcula el nivel de sospecha phi = -log10(P(el próximo latido llegue
+ * todavía más tarde)). Phi crece de forma continua mientras no llega el latido: un phi de 8
+ * equivale a una probabilidad de 10^-8 de que la réplica siga viva. Como la ventana se
+ * adapta a la variación real de los intervalos, una red o un nodo con pausas frecuentes
+ * tarda más en volverse sospechoso, y uno regular se detecta antes.</p>
+ */
+public class VentanaLatidos {
+
+    private final int tamano;
+
+    /**
+     * Desvío mínimo, para que intervalos casi idénticos no vuelvan sospechoso cualquier retraso.
+     */
+    private final double desvioMinimoMs;
+
+    private final Deque<Long> intervalos = new ArrayDeque<>();
+    private double suma;
+    private double sumaCuadrados;
+    private long ultimo = -1;
+
+    /**
+     * @param tamano           cantidad de intervalos que se recuerdan.
+     * @param intervaloInicial intervalo esperado, con el que se arranca antes de medir.
+     * @param desvioMinimoMs   desvío mínimo supuesto.
+     */
+    public VentanaLatidos(int tamano, long intervaloInicial, double desvioMinimoMs) {
+        this.tamano = tamano;
+        this.desvioMinimoMs = desvioMinimoMs;
+        agregar(intervaloInicial);
+    }
+
+    public synchronized void registrar(long ahora) {
+        if (ultimo >= 0) {
+            agregar(ahora - ultimo);
+        }
+        ultimo = ahora;
+    }
+
+    /**
+     * Olvida el último latido, para que el próximo no cuente el hueco como intervalo.
+     * Hasta que llegue, phi es infinito.
+     */
+    public synchronized void reiniciar() {
+        ultimo = -1;
+    }
+
+    /**
+     * @return el nivel de sospecha en {@code ahora}; infinito si nunca llegó un latido.
+     */
+    public synchronized double phi(long ahora) {
+        if (ultimo < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        int n = intervalos.size();
+        double media = suma / n;
+        double varianza = Math.max(0, sumaCuadrados / n - media * media);
+        double desvio = Math.max(desvioMinimoMs, Math.sqrt(varianza));
+
+        // Aproximación logística de la normal acumulada
+        double y = (ahora - ultimo - media) / desvio;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        double masTarde = (ahora - ultimo > media) ? e / (1 + e) : 1 - 1 / (1 + e);
+        return -Math.log10(Math.max(masTarde, Double.MIN_VALUE));
+    }
+
+    private void agregar(long intervalo) {
+        intervalos.addLast(intervalo);
+        suma += intervalo;
+        sumaCuadrados += (double) intervalo * intervalo;
+        if (intervalos.size() > tamano) {
+            long viejo = intervalos.removeFirst();
+            suma -= viejo;
+            sumaCuadrados -= (double) viejo * viejo;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package rmi;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Copia del estado de un recurso que el líder envía a las demás réplicas.
+ * Los vencimientos viajan como tiempo restante, para no depender de que los relojes
+ * de las réplicas coincidan; quien asume como líder conserva ese tiempo, así un
+ * cambio de líder no extiende la concesión de un titular que ya se cayó.
+ *
+ * @param nombre        recurso.
+ * @param capacidad     permisos totales del recurso.
+ * @param epoca         época del líder que tomó la copia.
+ * @param version       número de cambio dentro del recurso; junto con la época ordena las copias.
+ * @param ultimoIdToken mayor id de concesión emitido, para no repetirlos tras una elección.
+ * @param concesiones   concesiones vigentes, en orden de concesión.
+ * @param cola          clientes en espera, en orden de llegada.
+ */
+public record EstadoRecurso(String nombre, int capacidad, long epoca, long version, long ultimoIdToken,
+                            List<Concesion> concesiones, List<Espera> cola) implements Serializable {
+
+    /**
+     * @param restanteMs tiempo que le quedaba al lease cuando se tomó la copia.
+     */
+    public record Concesion(long idToken, int permisos, long restanteMs) implements Serializable {
+    }
+
+    public record Espera(IClienteEM cliente, String nombreCliente, int permisos) implements Serializable {
+    }
+
+    /**
+     * @return {@code true} si esta copia reemplaza a otra de la época y versión dadas.
+     */
+    public boolean esPosteriorA(long otraEpoca, long otraVersion) {
+        return epoca > otraEpoca || (epoca == otraEpoca && version > otraVersion);
+    }
+}
@@ -9,7 +9,14 @@ import java.rmi.RemoteException;
  */
 public interface IClienteEM extends Remote{
 
-    public void RecibirToken() throws RemoteException;
+    /**
+     * Entrega el token de un recurso al cliente.
+     *
+     * @param nombreRecurso   recurso concedido.
+     * @param idToken         identificador de esta concesión; se usa para renovarla y devolverla.
+     * @param duracionLeaseMs tiempo que dura la concesión si no se renueva.
+     */
+    public void RecibirToken(String nombreRecurso, long idToken, long duracionLeaseMs) throws RemoteException;
 
     public String getNombreCliente() throws RemoteException;
 
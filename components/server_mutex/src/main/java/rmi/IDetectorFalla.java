@@ -9,5 +9,10 @@ import java.rmi.RemoteException;
 
 
 public interface IDetectorFalla extends Remote {
-    void DameMensaje(IDetectorFalla cliente, String mensaje) throws RemoteException;
+
+    /**
+     * Recibe el latido de otra réplica y responde con el propio, de modo que un solo
+     * intercambio le sirve a las dos para saber que la otra sigue viva.
+     */
+    Latido DameMensaje(Latido latido) throws RemoteException;
 }
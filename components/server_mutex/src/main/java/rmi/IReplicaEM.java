@@ -0,0 +1,20 @@
+package rmi;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Interfaz entre réplicas del servidor de exclusión mutua. El líder la usa para
+ * copiar a los seguidores el estado de cada recurso después de modificarlo.
+ */
+public interface IReplicaEM extends Remote {
+
+    /**
+     * Reemplaza el estado local de un recurso si {@code estado} es más nuevo que el que
+     * ya se tiene. Una copia de una época anterior a la que conoce la réplica viene de
+     * un líder depuesto y se rechaza.
+     *
+     * @return si la copia quedó confirmada y la mayor época que conoce la réplica.
+     */
+    public RespuestaCopia ReplicarRecurso(EstadoRecurso estado) throws RemoteException;
+}
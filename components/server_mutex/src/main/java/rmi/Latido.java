@@ -0,0 +1,13 @@
+package rmi;
+
+import java.io.Serializable;
+
+/**
+ * Latido que intercambian las réplicas del servidor de exclusión mutua.
+ *
+ * @param idReplica réplica que lo envía.
+ * @param lider     réplica que el emisor reconoce como líder, o -1 si todavía no hay.
+ * @param epoca     época de ese liderazgo; crece con cada elección.
+ */
+public record Latido(int idReplica, int lider, long epoca) implements Serializable {
+}
@@ -0,0 +1,20 @@
+package rmi;
+
+/**
+ * El cliente pidió una cantidad de permisos que el recurso no puede conceder nunca:
+ * menos de uno o más que su capacidad. Es un error de configuración del cliente, no de
+ * la conexión: reintentar el mismo pedido no sirve.
+ *
+ * <p>No deriva de {@link java.rmi.RemoteException}: RMI envuelve las que lanza el
+ * servidor en una {@link java.rmi.ServerException}, y el cliente no podría
+ * distinguirla de una falla de comunicación.</p>
+ */
+public class PermisosInvalidosException extends Exception {
+
+    /**
+     * @param mensaje descripción del pedido rechazado.
+     */
+    public PermisosInvalidosException(String mensaje) {
+        super(mensaje);
+    }
+}
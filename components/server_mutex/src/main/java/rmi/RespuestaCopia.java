@@ -0,0 +1,14 @@
+package rmi;
+
+import java.io.Serializable;
+
+/**
+ * Respuesta de una réplica a una copia de estado enviada por el líder.
+ *
+ * @param confirmada {@code true} si la réplica quedó con esta copia, o con una posterior
+ *                   del mismo líder que ya la incluye; sólo éstas cuentan para la mayoría.
+ * @param epoca      mayor época que conoce la réplica. Si supera la de la copia, hay un
+ *                   líder más nuevo y quien la envió debe dejar de serlo.
+ */
+public record RespuestaCopia(boolean confirmada, long epoca) implements Serializable {
+}
@@ -5,6 +5,8 @@ import java.rmi.Naming;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.Timer;
+import java.util.TimerTask;
 
 public class Main extends UnicastRemoteObject implements IClienteEM {
 
@@ -20,6 +22,22 @@ public class Main extends UnicastRemoteObject implements IClienteEM {
     // volatile es crucial para asegurar la visibilidad entre el hilo principal y el hilo RMI del callback.
     private volatile boolean tieneAccesoBomba = false;
 
+    /** Id de la concesión vigente del token, necesario para renovarla y devolverla. */
+    private volatile long idToken;
+    /** Duración del lease de la concesión vigente. */
+    private volatile long duracionLeaseMs;
+
+    /** Hilo que envía los latidos de renovación del lease mientras se usa la bomba. */
+    private final Timer latidos = new Timer("latidos-lease", true);
+
+    /** Réplica líder del servidor de exclusión mutua; se reemplaza si deja de responder. */
+    private volatile IServicioExclusionMutua exclusion;
+
+    /** Llamada al servidor de exclusión mutua que se puede repetir contra otra réplica. */
+    private interface LlamadaExclusion<T> {
+        T llamar(IServicioExclusionMutua servicio) throws RemoteException;
+    }
+
     /**
      * Constructor. Llama a super() para exportar este objeto como un objeto remoto,
      * permitiendo que el servidor de exclusión mutua pueda invocar `RecibirToken()`.
@@ -34,11 +52,57 @@ public class Main extends UnicastRemoteObject implements IClienteEM {
      * cuando nos conceda el acceso al recurso.
      */
     @Override
-    public void RecibirToken() throws RemoteException {
-        System.out.println("\n[" + CLIENTE_ID + "] -> Token RECIBIDO. Acceso a '" + RECURSO_BOMBA + "' CONCEDIDO.");
+    public void RecibirToken(String nombreRecurso, long idToken, long duracionLeaseMs) throws RemoteException {
+        System.out.println("\n[" + CLIENTE_ID + "] -> Token " + idToken + " RECIBIDO. Acceso a '" + nombreRecurso + "' CONCEDIDO.");
+        this.idToken = idToken;
+        this.duracionLeaseMs = duracionLeaseMs;
         this.tieneAccesoBomba = true;
     }
 
+    /**
+     * Renueva el lease cada un tercio de su duración mientras se usa la bomba.
+     * Si el servidor ya no reconoce el token, se pierde el acceso.
+     *
+     * @return la tarea de latidos, que se cancela al devolver el recurso.
+     */
+    private TimerTask iniciarLatidos() {
+        TimerTask latido = new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    if (!conFailover(s -> s.RenovarRecurso(RECURSO_BOMBA, idToken))) {
+                        System.err.println("[" + CLIENTE_ID + "] -> El lease del token " + idToken + " venció.");
+                        tieneAccesoBomba = false;
+                        cancel();
+                    }
+                } catch (RemoteException e) {
+                    System.err.println("[" + CLIENTE_ID + "] -> No se pudo renovar el lease: " + e.getMessage());
+                }
+            }
+        };
+        long periodo = Math.max(1, duracionLeaseMs / 3);
+        latidos.schedule(latido, periodo, periodo);
+        return latido;
+    }
+
+    /**
+     * Hace la llamada contra la réplica conocida y, si falla, busca la líder vigente y la
+     * repite una vez contra ella.
+     */
+    private <T> T conFailover(LlamadaExclusion<T> llamada) throws RemoteException {
+        try {
+            return llamada.llamar(exclusion);
+        } catch (RemoteException e) {
+            System.err.println("[" + CLIENTE_ID + "] -> Falló el servidor de exclusión mutua (" + e.getMessage() + "). Buscando al líder...");
+            IServicioExclusionMutua lider = conectarAlServidorExclusion();
+            if (lider == null) {
+                throw e;
+            }
+            exclusion = lider;
+            return llamada.llamar(lider);
+        }
+    }
+
     @Override
     public String getNombreCliente(){
         return "Sistema de Fertirrigacion";
@@ -49,7 +113,7 @@ public class Main extends UnicastRemoteObject implements IClienteEM {
      */
     public void ejecutarCiclo() {
         try {
-            IServicioExclusionMutua exclusion = conectarAlServidorExclusion();
+            exclusion = conectarAlServidorExclusion();
 
             // Si después de todos los intentos no se pudo conectar, el programa termina.
             if (exclusion == null) {
@@ -63,7 +127,10 @@ public class Main extends UnicastRemoteObject implements IClienteEM {
 
                 // Solicitar el recurso. La llamada es asíncrona.
                 // Pasamos 'this' como el cliente al que el servidor debe llamar de vuelta.
-                exclusion.ObtenerRecurso(RECURSO_BOMBA, this);
+                conFailover(s -> {
+                    s.ObtenerRecurso(RECURSO_BOMBA, this);
+                    return null;
+                });
 
                 // Esperar hasta que el callback 'RecibirToken' ponga la bandera en true.
                 // Usamos Thread.sleep para evitar un busy-wait que consuma 100% de CPU.
@@ -72,16 +139,27 @@ public class Main extends UnicastRemoteObject implements IClienteEM {
                     Thread.sleep(500); // Esperar medio segundo antes de volver a comprobar.
                 }
 
-                // Una vez que tenemos acceso, realizamos el trabajo.
+                // Una vez que tenemos acceso, realizamos el trabajo mientras se renueva el lease.
                 // Usamos un bloque try-finally para GARANTIZAR que el recurso se libera.
+                TimerTask latido = iniciarLatidos();
                 try {
                     System.out.println("[" + CLIENTE_ID + "] -> Proceso de fertirrigación en curso... (Duración: 10 segundos)");
-                    Thread.sleep(10000);
-                    System.out.println("[" + CLIENTE_ID + "] -> Proceso de fertirrigación FINALIZADO.");
+                    for (int segundo = 0; segundo < 10 && this.tieneAccesoBomba; segundo++) {
+                        Thread.sleep(1000);
+                    }
+                    if (this.tieneAccesoBomba) {
+                        System.out.println("[" + CLIENTE_ID + "] -> Proceso de fertirrigación FINALIZADO.");
+                    } else {
+                        System.err.println("[" + CLIENTE_ID + "] -> Proceso de fertirrigación INTERRUMPIDO: se perdió el token.");
+                    }
                 } finally {
                     // 4. Liberar el recurso para que otros puedan usarlo.
+                    latido.cancel();
                     System.out.println("[" + CLIENTE_ID + "] -> Recurso '" + RECURSO_BOMBA + "' LIBERADO.");
-                    exclusion.DevolverRecurso(RECURSO_BOMBA);
+                    conFailover(s -> {
+                        s.DevolverRecurso(RECURSO_BOMBA, this.idToken);
+                        return null;
+                    });
                     this.tieneAccesoBomba = false; // Resetear la bandera para el siguiente ciclo.
                 }
 
@@ -98,40 +176,51 @@ public class Main extends UnicastRemoteObject implements IClienteEM {
 
     /**
      * --- NUEVO MÉTODO ---
-     * Intenta conectar con el servidor de exclusión mutua RMI.
+     * Intenta conectar con la réplica líder del servidor de exclusión mutua RMI.
      * Realiza varios intentos si la conexión falla, esperando un tiempo entre cada uno.
      * @return El objeto remoto del servicio si la conexión es exitosa, o null si falla después de todos los intentos.
      */
     private IServicioExclusionMutua conectarAlServidorExclusion() {
-        String exclusionHost = System.getenv("EXCLUSION_HOST");
-        if (exclusionHost == null) exclusionHost = "localhost";
-
-        String exclusionPortEnv = System.getenv("EXCLUSION_PORT");
-        int exclusionPort = (exclusionPortEnv != null) ? Integer.parseInt(exclusionPortEnv) : 10000;
-
-        String url = "rmi://" + exclusionHost + ":" + exclusionPort + "/servidorCentralEM";
+        // Réplicas del servidor ("host:puerto,..."); sin la lista, el único servidor configurado
+        String replicasEnv = System.getenv("EXCLUSION_REPLICAS");
+        if (replicasEnv == null || replicasEnv.isBlank()) {
+            String exclusionHost = System.getenv("EXCLUSION_HOST");
+            if (exclusionHost == null) exclusionHost = "localhost";
+
+            String exclusionPortEnv = System.getenv("EXCLUSION_PORT");
+            int exclusionPort = (exclusionPortEnv != null) ? Integer.parseInt(exclusionPortEnv) : 10000;
+            replicasEnv = exclusionHost + ":" + exclusionPort;
+        }
+        String[] replicas = replicasEnv.split(",");
 
         for (int intento = 1; intento <= MAX_INTENTOS_CONEXION; intento++) {
-            try {
-                System.out.println("Intentando conectar con el servidor de Exclusión Mutua en '" + url + "' (Intento " + intento + "/" + MAX_INTENTOS_CONEXION + ")...");
-                IServicioExclusionMutua servicio = (IServicioExclusionMutua) Naming.lookup(url);
-                System.out.println("¡Conexión establecida con éxito!");
-                return servicio; // Si la conexión es exitosa, retornamos el objeto y salimos del metodo.
-            } catch (NotBoundException | RemoteException e) {
-                System.err.println("Fallo en la conexión: " + e.getMessage());
-                if (intento < MAX_INTENTOS_CONEXION) {
-                    try {
-                        System.out.println("Reintentando en " + (ESPERA_ENTRE_INTENTOS_MS / 1000) + " segundos...");
-                        Thread.sleep(ESPERA_ENTRE_INTENTOS_MS);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt(); // Buena práctica para manejar interrupciones.
-                        System.err.println("La espera fue interrumpida. Abortando conexión.");
-                        return null;
+            for (String replica : replicas) {
+                String url = "rmi://" + replica.trim() + "/servidorCentralEM";
+                try {
+                    System.out.println("Intentando conectar con el servidor de Exclusión Mutua en '" + url + "' (Intento " + intento + "/" + MAX_INTENTOS_CONEXION + ")...");
+                    IServicioExclusionMutua servicio = (IServicioExclusionMutua) Naming.lookup(url);
+                    // Sólo la réplica líder atiende pedidos
+                    if (servicio.EsLider()) {
+                        System.out.println("¡Conexión establecida con éxito!");
+                        return servicio; // Si la conexión es exitosa, retornamos el objeto y salimos del metodo.
                     }
+                    System.out.println("La réplica en '" + url + "' no es el líder.");
+                } catch (NotBoundException | RemoteException e) {
+                    System.err.println("Fallo en la conexión: " + e.getMessage());
+                } catch (Exception e) {
+                    System.err.println("Error inesperado durante el intento de conexión:");
+                    e.printStackTrace();
+                }
+            }
+            if (intento < MAX_INTENTOS_CONEXION) {
+                try {
+                    System.out.println("Reintentando en " + (ESPERA_ENTRE_INTENTOS_MS / 1000) + " segundos...");
+                    Thread.sleep(ESPERA_ENTRE_INTENTOS_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt(); // Buena práctica para manejar interrupciones.
+                    System.err.println("La espera fue interrumpida. Abortando conexión.");
+                    return null;
                 }
-            } catch (Exception e) {
-                System.err.println("Error inesperado durante el intento de conexión:");
-                e.printStackTrace();
             }
         }
 
@@ -3,23 +3,40 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.Socket;
+import util.RuedaTemporizadores;
 
 /**
  * Hilo principal de comunicación para el cliente Temporizador.
- * Gestiona el estado y la comunicación con el servidor en un único bucle.
+ * Recibe los comandos del servidor y le avisa cada cambio de estado en cuanto ocurre.
+ *
+ * <p>Cada aviso es una línea {@code EVENTO segundos}: {@code LISTO 0} al conectarse,
+ * {@code INICIADO s} al empezar una cuenta de {@code s} segundos, {@code VENCIDO 0} al
+ * terminar (lo envía el hilo de la rueda, sin esperar ningún comando) y
+ * {@code CANCELADO s} al detenerla con {@code s} segundos por contar.</p>
+ *
+ * <p>Si el comando trae un número ({@code segundos numero}), cada evento lo repite al
+ * final: el del comando que inició la cuenta en {@code INICIADO}, {@code VENCIDO} y en el
+ * {@code CANCELADO} de una cuenta reemplazada, y el del comando de detención en su
+ * {@code CANCELADO}. Con eso el servidor descarta los eventos de una cuenta vieja que se
+ * cruzan con un comando nuevo. Los comandos sin número se responden sin número.</p>
  */
 public class HiloTemporizado extends Thread {
 
     private final Socket cnxServidor;
     private final PrintWriter pw;
     private final BufferedReader br;
+    private final RuedaTemporizadores rueda;
 
     // Referencia al temporizador actualmente en ejecucion
     private Temporizador temporizadorActual = null;
 
-    public HiloTemporizado(Socket s, PrintWriter pw) {
+    // Número del comando que inició temporizadorActual; vacío si no trajo número
+    private String comandoActual = "";
+
+    public HiloTemporizado(Socket s, PrintWriter pw, RuedaTemporizadores rueda) {
         this.cnxServidor = s;
         this.pw = pw;
+        this.rueda = rueda;
         try {
             this.br = new BufferedReader(new InputStreamReader(s.getInputStream()));
         } catch (IOException e) {
@@ -30,18 +47,11 @@ public class HiloTemporizado extends Thread {
     @Override
     public void run() {
         try {
+            avisar("LISTO", 0, "");
+
             // Bucle de comunicación principal
             while (!Thread.currentThread().isInterrupted()) {
 
-                // Informar al servidor del estado actual
-                if (temporizadorActual != null && temporizadorActual.estaCorriendo()) {
-                    System.out.println("Temporizador en ejecución. Informando estado OCUPADO al servidor.");
-                    pw.println(0); // Estado: OCUPADO
-                } else {
-                    System.out.println("Temporizador inactivo. Informando estado LISTO al servidor.");
-                    pw.println(1); // Estado: LISTO
-                }
-
                 // Esperar un comando del servidor (bloqueante)
                 System.out.println("Esperando comando del servidor...");
                 String comandoStr = br.readLine();
@@ -52,8 +62,13 @@ public class HiloTemporizado extends Thread {
 
                 // Procesar el comando
                 try {
-                    int segundos = Integer.parseInt(comandoStr);
-                    procesarComando(segundos);
+                    String[] campos = comandoStr.trim().split(" +");
+                    if (campos.length > 2) {
+                        throw new NumberFormatException();
+                    }
+                    int segundos = Integer.parseInt(campos[0]);
+                    String numero = (campos.length == 2) ? String.valueOf(Long.parseLong(campos[1])) : "";
+                    procesarComando(segundos, numero);
                 } catch (NumberFormatException e) {
                     System.err.println("Comando no válido recibido del servidor: " + comandoStr);
                 }
@@ -68,28 +83,41 @@ public class HiloTemporizado extends Thread {
     /**
      * Lógica para actuar según el comando recibido.
      * @param segundos El valor numérico del comando.
+     * @param numero   número del comando, que repiten sus eventos; vacío si no trajo.
      */
-    private void procesarComando(int segundos) {
+    private void procesarComando(int segundos, String numero) {
         if (segundos > 0) {
             System.out.println("Recibido comando para iniciar temporizador de " + segundos + " segundos.");
 
             // Si hay un temporizador antiguo, lo detenemos primero.
             if (temporizadorActual != null && temporizadorActual.estaCorriendo()) {
-                temporizadorActual.parar();
+                avisar("CANCELADO", temporizadorActual.parar(), comandoActual);
             }
 
             // Creamos e iniciamos el nuevo temporizador.
-            temporizadorActual = new Temporizador(segundos);
+            temporizadorActual = new Temporizador(rueda, () -> avisar("VENCIDO", 0, numero));
+            comandoActual = numero;
+            avisar("INICIADO", segundos, numero); // Antes de iniciar: el vencimiento siempre sale después
             temporizadorActual.iniciar(segundos);
 
         } else {
             System.out.println("Recibido comando para detener el temporizador.");
-            if (temporizadorActual != null && temporizadorActual.estaCorriendo()) {
-                temporizadorActual.parar();
-            }
+            // Se confirma aunque no estuviera contando (o acabara de vencer)
+            avisar("CANCELADO", (temporizadorActual != null) ? temporizadorActual.parar() : 0, numero);
         }
     }
 
+    /**
+     * Envía un evento al servidor. Lo usan el hilo de la conexión y el de la rueda;
+     * {@link PrintWriter} sincroniza cada línea.
+     *
+     * @param numero número del comando al que responde; vacío si no hay.
+     */
+    private void avisar(String evento, int segundos, String numero) {
+        System.out.println("Informando " + evento + " al servidor.");
+        pw.println(numero.isEmpty() ? evento + " " + segundos : evento + " " + segundos + " " + numero);
+    }
+
     private void cerrarConexion() {
         if (temporizadorActual != null && temporizadorActual.estaCorriendo()) {
             temporizadorActual.parar();
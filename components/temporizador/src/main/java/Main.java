@@ -4,6 +4,7 @@ import java.io.PrintWriter;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import util.RuedaTemporizadores;
 
 public class Main {
 
@@ -75,7 +76,10 @@ public class Main {
         pw = new PrintWriter(outputStream, true);
         pw.println("temporizador");
         pw.println(id);
-        HiloTemporizado hiloTemporizado = new HiloTemporizado(socketCliente, pw);
+        // Una sola rueda atiende todas las cuentas regresivas del proceso
+        String tickEnv = System.getenv("TEMPORIZADOR_TICK_MS");
+        RuedaTemporizadores rueda = new RuedaTemporizadores((tickEnv != null) ? Long.parseLong(tickEnv) : 10, "rueda-temporizadores");
+        HiloTemporizado hiloTemporizado = new HiloTemporizado(socketCliente, pw, rueda);
         hiloTemporizado.start();
 
     }
@@ -1,59 +1,63 @@
-import java.util.Timer;
-import java.util.TimerTask;
+import util.RuedaTemporizadores;
 
 /**
  * Temporizador simplificado. Su única responsabilidad es contar hacia atrás.
  * Puede ser detenido desde el exterior.
+ *
+ * <p>No tiene un hilo propio: el vencimiento es una tarea de la
+ * {@link RuedaTemporizadores} del proceso, que no se despierta hasta entonces. El
+ * tiempo restante se calcula al consultarlo.</p>
+ *
+ * <p>Al vencer ejecuta {@code alVencer} con el lock del temporizador tomado, así que
+ * un {@link #parar()} concurrente espera a que termine y el aviso de vencimiento
+ * siempre sale antes que cualquier aviso posterior.</p>
  */
 public class Temporizador {
 
-    private final Timer timer;
+    private final RuedaTemporizadores rueda;
+    private final Runnable alVencer;
+    private RuedaTemporizadores.Tarea tarea;
     private volatile boolean isRunning = false; // volatile para visibilidad entre hilos
 
-    public Temporizador(int totalSegundos) {
-        this.timer = new Timer(true); // true para que sea un hilo daemon
+    public Temporizador(RuedaTemporizadores rueda, Runnable alVencer) {
+        this.rueda = rueda;
+        this.alVencer = alVencer;
     }
 
     /**
      * Inicia el conteo del temporizador.
-     * Esta tarea se ejecuta en el hilo del Timer.
+     * El vencimiento se ejecuta en el hilo de la rueda.
      */
-    public void iniciar(int totalSegundos) {
+    public synchronized void iniciar(int totalSegundos) {
         if (isRunning) {
             return;
         }
         isRunning = true;
+        System.out.printf("Tiempo restante: %02d:%02d\n", totalSegundos / 60, totalSegundos % 60);
+        tarea = rueda.programar(totalSegundos * 1000L, this::finalizar);
+    }
 
-        TimerTask tarea = new TimerTask() {
-            private int segundosRestantes = totalSegundos;
-
-            @Override
-            public void run() {
-                if (segundosRestantes > 0) {
-                    int minutos = segundosRestantes / 60;
-                    int segundos = segundosRestantes % 60;
-                    System.out.printf("Tiempo restante: %02d:%02d\n", minutos, segundos);
-                    segundosRestantes--;
-                } else {
-                    System.out.println("¡Tiempo finalizado!");
-                    parar(); // Detiene el timer y actualiza el estado
-                }
-            }
-        };
-
-        timer.scheduleAtFixedRate(tarea, 0, 1000); // Inicia inmediatamente, repite cada segundo
+    private synchronized void finalizar() {
+        if (isRunning) {
+            isRunning = false;
+            System.out.println("¡Tiempo finalizado!");
+            alVencer.run();
+        }
     }
 
     /**
      * Detiene el temporizador de forma forzada.
+     * @return segundos que le faltaban; 0 si no estaba contando.
      */
-    public synchronized void parar() {
-        if (isRunning) {
-            timer.cancel(); // Detiene todas las tareas programadas
-            timer.purge();  // Elimina las tareas canceladas
-            isRunning = false;
-            System.out.println("Temporizador detenido.");
+    public synchronized int parar() {
+        if (!isRunning) {
+            return 0;
         }
+        int restantes = segundosRestantes();
+        tarea.cancelar();
+        isRunning = false;
+        System.out.println("Temporizador detenido.");
+        return restantes;
     }
 
     /**
@@ -63,4 +67,11 @@ public class Temporizador {
     public boolean estaCorriendo() {
         return isRunning;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return segundos que faltan, redondeados hacia arriba; 0 si no está contando.
+     */
+    public synchronized int segundosRestantes() {
+        return isRunning ? (int) ((tarea.restanteMs() + 999) / 1000) : 0;
+    }
+}
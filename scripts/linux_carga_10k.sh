@@ -0,0 +1,56 @@
+#!/bin/bash
+# Prueba de 10.000 conexiones contra la ingesta NIO del controlador.
+# Inicia el servidor mutex y el controlador con CONTROLADOR_INGESTA=nio, y el generador
+# de carga con 5000 sondas de humedad y 5000 temporizadores (10.000 conexiones) mas
+# 5000 electrovalvulas. Cada 5 segundos anota los hilos, la memoria residente y los
+# descriptores abiertos del controlador en carga10k/muestras.log.
+# Requiere los .jar generados con mvn clean package (JDK 24).
+cd "$(dirname "$0")"
+cd ..
+
+SONDAS=${SONDAS:-5000}
+DURACION_S=${DURACION_S:-180}
+SALIDA=carga10k
+
+# Cada parcela abre un socket y los archivos de sus series en el historial
+ulimit -n $((SONDAS * 6)) || exit 1
+
+rm -rf $SALIDA
+mkdir -p $SALIDA
+export VALVULA_HOST=localhost VALVULA_MAESTRA_HOST=localhost VALVULAS_POR_PROCESO=500 LATENCIA_MEDIR=true
+
+echo "Iniciando Servidor Mutex..."
+java -jar components/server_mutex/serverMutex.jar > $SALIDA/mutex.log 2>&1 &
+MUTEX=$!
+sleep 3
+
+echo "Iniciando Controlador (ingesta NIO)..."
+CONTROLADOR_INGESTA=nio HISTORIAL_DIR=$SALIDA/historial \
+    java -jar components/controlador/controlador.jar > $SALIDA/controlador.log 2>&1 &
+CONTROLADOR=$!
+sleep 5
+
+(
+    inicio=$(date +%s)
+    while kill -0 $CONTROLADOR 2>/dev/null; do
+        echo "t=$(($(date +%s) - inicio))s $(grep -E '^(Threads|VmRSS)' /proc/$CONTROLADOR/status | tr -s ' \t' ' ' | tr '\n' ' ')fds=$(ls /proc/$CONTROLADOR/fd | wc -l)"
+        sleep 5
+    done
+) > $SALIDA/muestras.log &
+
+echo "Generando carga durante $DURACION_S segundos..."
+CARGA_SONDAS=$SONDAS CARGA_TEMPORIZADORES=$SONDAS CARGA_VALVULAS=$SONDAS CARGA_RAMPA_MS=60000 \
+    CARGA_DURACION_S=$DURACION_S CARGA_REPORTE_S=30 \
+    java -jar components/generador_carga/generadorCarga.jar > $SALIDA/generador.log 2>&1
+
+kill $CONTROLADOR $MUTEX
+wait
+
+echo
+echo "Controlador (hilos, memoria y descriptores):"
+tail -n 3 $SALIDA/muestras.log
+echo
+echo "Generador (ultimo reporte):"
+tail -n 20 $SALIDA/generador.log
+echo
+echo "Latencias del controlador: ver el bloque 'Latencias' al final de $SALIDA/controlador.log"
@@ -0,0 +1,28 @@
+#!/bin/bash
+# Compara la memoria y los cambios de contexto del controlador con hilos de plataforma
+# y con hilos virtuales, para 5, 500 y 50.000 parcelas (dos receptores por parcela).
+# Cada combinacion corre en una JVM propia y deja una linea en huella_hilos/resultados.log.
+# Requiere components/benchmarks/benchmarks.jar (mvn -P benchmarks clean package, JDK 24).
+cd "$(dirname "$0")"
+cd ..
+
+PARCELAS=${PARCELAS:-"5 500 50000"}
+SEGUNDOS=${SEGUNDOS:-30}
+SALIDA=huella_hilos
+
+# 50.000 parcelas con hilos de plataforma son 100.000 hilos del sistema
+ulimit -u unlimited 2>/dev/null || echo "Aviso: no se pudo elevar ulimit -u"
+
+rm -rf $SALIDA
+mkdir -p $SALIDA
+for parcelas in $PARCELAS; do
+    for modo in plataforma virtual; do
+        echo "Midiendo $modo con $parcelas parcelas..."
+        if ! java -Xss512k -cp components/benchmarks/benchmarks.jar mediciones.HuellaHilos \
+                $modo $parcelas $SEGUNDOS >> $SALIDA/resultados.log 2> $SALIDA/$modo-$parcelas.err; then
+            echo "modo=$modo parcelas=$parcelas fallo (ver $SALIDA/$modo-$parcelas.err)" >> $SALIDA/resultados.log
+        fi
+    done
+done
+
+column -t $SALIDA/resultados.log
@@ -0,0 +1,15 @@
+#!/bin/bash
+# Inicia 3 réplicas del servidor de exclusión mutua en localhost.
+# Los clientes deben usar la misma lista en EXCLUSION_REPLICAS para encontrar al líder.
+cd "$(dirname "$0")"
+cd ..
+
+export EXCLUSION_REPLICAS="localhost:10000,localhost:10001,localhost:10002"
+
+echo "Iniciando 3 replicas del Servidor Mutex..."
+for ((i=0; i<=2; i++)); do
+    xfce4-terminal -T "Mutex $i" -e "env EXCLUSION_REPLICAS=$EXCLUSION_REPLICAS java -jar components/server_mutex/serverMutex.jar $i"
+done
+
+echo
+echo "Para probar la conmutacion, cierre la ventana del lider: otra replica asume en SOSPECHA_MS (3 s por defecto)."